@@ -196,6 +196,10 @@ if [[ -n "${BACKEND_JDBC_CON_MAX_TOTAL:-}" ]]; then
   JAVA_OPTS="-Ddatabase.jdbc.connection.max-total=$BACKEND_JDBC_CON_MAX_TOTAL ${JAVA_OPTS:-}"
 fi
 
+if [[ -n "${BACKEND_JDBC_CON_POOL_STMT:-}" ]]; then
+  JAVA_OPTS="-Ddatabase.jdbc.connection.pool-prepared-statements=$BACKEND_JDBC_CON_POOL_STMT ${JAVA_OPTS:-}"
+fi
+
 if [[ -n "${BACKEND_JDBC_CON_MAX_OPEN_STMT:-}" ]]; then
   JAVA_OPTS="-Ddatabase.jdbc.connection.max-open-prepared-statements=$BACKEND_JDBC_CON_MAX_OPEN_STMT ${JAVA_OPTS:-}"
 fi
@@ -204,6 +208,34 @@ if [[ -n "${BACKEND_JDBC_ISO_LEVEL:-}" ]]; then
   JAVA_OPTS="-Ddatabase.jdbc.connection.isolation-level=$BACKEND_JDBC_ISO_LEVEL ${JAVA_OPTS:-}"
 fi
 
+if [[ -n "${BACKEND_JDBC_READ_URL:-}" ]]; then
+  JAVA_OPTS="-Ddatabase.jdbc.read-connection.url=$BACKEND_JDBC_READ_URL ${JAVA_OPTS:-}"
+fi
+
+if [[ -n "${BACKEND_JDBC_READ_USER:-}" ]]; then
+  JAVA_OPTS="-Ddatabase.jdbc.read-connection.user=$BACKEND_JDBC_READ_USER ${JAVA_OPTS:-}"
+fi
+
+if [[ -n "${BACKEND_JDBC_READ_PASSWORD:-}" ]]; then
+  JAVA_OPTS="-Ddatabase.jdbc.read-connection.password=$BACKEND_JDBC_READ_PASSWORD ${JAVA_OPTS:-}"
+fi
+
+if [[ -n "${BACKEND_JDBC_READ_CON_MIN_IDLE:-}" ]]; then
+  JAVA_OPTS="-Ddatabase.jdbc.read-connection.min-idle=$BACKEND_JDBC_READ_CON_MIN_IDLE ${JAVA_OPTS:-}"
+fi
+
+if [[ -n "${BACKEND_JDBC_READ_CON_MAX_IDLE:-}" ]]; then
+  JAVA_OPTS="-Ddatabase.jdbc.read-connection.max-idle=$BACKEND_JDBC_READ_CON_MAX_IDLE ${JAVA_OPTS:-}"
+fi
+
+if [[ -n "${BACKEND_JDBC_READ_CON_MAX_TOTAL:-}" ]]; then
+  JAVA_OPTS="-Ddatabase.jdbc.read-connection.max-total=$BACKEND_JDBC_READ_CON_MAX_TOTAL ${JAVA_OPTS:-}"
+fi
+
+if [[ -n "${BACKEND_JDBC_READ_ISO_LEVEL:-}" ]]; then
+  JAVA_OPTS="-Ddatabase.jdbc.read-connection.isolation-level=$BACKEND_JDBC_READ_ISO_LEVEL ${JAVA_OPTS:-}"
+fi
+
 if [[ -n "${BACKEND_TRANSACTION_TIMEOUT:-}" ]]; then
   JAVA_OPTS="-Dpersistence.transaction-timeout=$BACKEND_TRANSACTION_TIMEOUT ${JAVA_OPTS:-}"
 fi
@@ -228,6 +260,42 @@ if [[ -n "${BACKEND_PASS_ACTIVE_USERS_ONLY:-}" ]]; then
   JAVA_OPTS="-Dpersistence.pass-active-users-only=$BACKEND_PASS_ACTIVE_USERS_ONLY ${JAVA_OPTS:-}"
 fi
 
+if [[ -n "${BACKEND_QUERY_PLAN_CACHE_SIZE:-}" ]]; then
+  JAVA_OPTS="-Dpersistence.query-plan-cache-size=$BACKEND_QUERY_PLAN_CACHE_SIZE ${JAVA_OPTS:-}"
+fi
+
+if [[ -n "${BACKEND_BATCH_SIZE:-}" ]]; then
+  JAVA_OPTS="-Dpersistence.batch-size=$BACKEND_BATCH_SIZE ${JAVA_OPTS:-}"
+fi
+
+if [[ -n "${BACKEND_TRIGRAM_INDEX:-}" ]]; then
+  JAVA_OPTS="-Dpersistence.trigram-index=$BACKEND_TRIGRAM_INDEX ${JAVA_OPTS:-}"
+fi
+
+if [[ -n "${BACKEND_TRIGRAM_INDEX_DELAY:-}" ]]; then
+  JAVA_OPTS="-Dpersistence.trigram-index-delay=$BACKEND_TRIGRAM_INDEX_DELAY ${JAVA_OPTS:-}"
+fi
+
+if [[ -n "${BACKEND_RESULT_MEMORY_ROWS:-}" ]]; then
+  JAVA_OPTS="-Dpersistence.result-memory-rows=$BACKEND_RESULT_MEMORY_ROWS ${JAVA_OPTS:-}"
+fi
+
+if [[ -n "${BACKEND_RESULT_STRATEGY:-}" ]]; then
+  JAVA_OPTS="-Dpersistence.result-strategy=$BACKEND_RESULT_STRATEGY ${JAVA_OPTS:-}"
+fi
+
+if [[ -n "${BACKEND_RESULT_SPOOL_ROWS:-}" ]]; then
+  JAVA_OPTS="-Dpersistence.result-spool-rows=$BACKEND_RESULT_SPOOL_ROWS ${JAVA_OPTS:-}"
+fi
+
+if [[ -n "${BACKEND_SEARCH_FETCH_SIZE:-}" ]]; then
+  JAVA_OPTS="-Dpersistence.search-fetch-size=$BACKEND_SEARCH_FETCH_SIZE ${JAVA_OPTS:-}"
+fi
+
+if [[ -n "${BACKEND_SYNC_FETCH_SIZE:-}" ]]; then
+  JAVA_OPTS="-Dpersistence.sync-fetch-size=$BACKEND_SYNC_FETCH_SIZE ${JAVA_OPTS:-}"
+fi
+
 # wait for database
 
 if [[ "${WAIT_DATABASE:-}" == "true" ]] && [[ -n "${BACKEND_JDBC_URL:-}" ]]; then
@@ -27,18 +27,22 @@ import de.aservo.ldap.adapter.api.cursor.MappableCursor;
 import de.aservo.ldap.adapter.api.cursor.apacheds.EntryFilteringWrapperCursor;
 import de.aservo.ldap.adapter.api.cursor.apacheds.IterableEntryCursor;
 import de.aservo.ldap.adapter.api.database.Row;
-import de.aservo.ldap.adapter.api.database.exception.UnknownColumnException;
+import de.aservo.ldap.adapter.api.database.exception.UncheckedSQLException;
+import de.aservo.ldap.adapter.api.directory.DirectoryBackend;
 import de.aservo.ldap.adapter.api.entity.*;
 import de.aservo.ldap.adapter.api.query.AndLogicExpression;
 import de.aservo.ldap.adapter.api.query.BooleanValue;
 import de.aservo.ldap.adapter.api.query.EqualOperator;
 import de.aservo.ldap.adapter.api.query.QueryExpression;
+import de.aservo.ldap.adapter.api.query.SortCriterion;
 import org.apache.directory.api.ldap.model.constants.SchemaConstants;
 import org.apache.directory.api.ldap.model.cursor.EmptyCursor;
 import org.apache.directory.api.ldap.model.cursor.SingletonCursor;
 import org.apache.directory.api.ldap.model.entry.DefaultEntry;
 import org.apache.directory.api.ldap.model.entry.Entry;
 import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.exception.LdapTimeLimitExceededException;
+import org.apache.directory.api.ldap.model.message.controls.SortRequest;
 import org.apache.directory.api.ldap.model.name.Dn;
 import org.apache.directory.server.core.api.entry.ClonedServerEntry;
 import org.apache.directory.server.core.api.filtering.EntryFilteringCursor;
@@ -52,6 +56,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.util.*;
 
 
@@ -112,7 +118,9 @@ public class CommonPartition
         PartitionTxn transaction = context.getTransaction();
         QueryExpression expression = BooleanValue.trueValue();
         Set<String> attributes = LdapUtils.getAttributes(context);
-        MappableCursor<Entry> entries = findEntries(expression, context.getDn(), attributes, transaction, false);
+        MappableCursor<Entry> entries =
+                findEntries(expression, context.getDn(), attributes, transaction, false,
+                        Collections.emptyList(), null, 0, 0);
 
         if (!entries.next()) {
 
@@ -138,9 +146,36 @@ public class CommonPartition
                 context.getSession().getClientAddress(), context.getDn().getName());
 
         PartitionTxn transaction = context.getTransaction();
+        Dn groupsDn = LdapUtils.createDn(schemaManager, EntityType.GROUP_UNIT, getId());
+        Dn usersDn = LdapUtils.createDn(schemaManager, EntityType.USER_UNIT, getId());
+        Dn queryDn = context.getDn();
+
+        if (queryDn.getParent().equals(groupsDn)) {
+
+            String id = LdapUtils.getGroupIdFromDn(schemaManager, queryDn.getName(), getId());
+
+            if (id != null)
+                return directoryFactory.withSession(directory -> {
+
+                    return directory.hasEntity(getTransactionId(transaction), EntityType.GROUP, id);
+                });
+
+        } else if (queryDn.getParent().equals(usersDn)) {
+
+            String id = LdapUtils.getUserIdFromDn(schemaManager, queryDn.getName(), getId());
+
+            if (id != null)
+                return directoryFactory.withSession(directory -> {
+
+                    return directory.hasEntity(getTransactionId(transaction), EntityType.USER, id);
+                });
+        }
+
         QueryExpression expression = BooleanValue.trueValue();
         Set<String> attributes = Collections.emptySet();
-        MappableCursor<Entry> entries = findEntries(expression, context.getDn(), attributes, transaction, false);
+        MappableCursor<Entry> entries =
+                findEntries(expression, queryDn, attributes, transaction, false, Collections.emptyList(), null, 0,
+                        0);
 
         boolean exists = entries.next();
 
@@ -160,7 +195,9 @@ public class CommonPartition
         PartitionTxn transaction = context.getTransaction();
         QueryExpression expression = new EqualOperator(context.getOid(), context.getValue().getString());
         Set<String> attributes = Collections.emptySet();
-        MappableCursor<Entry> entries = findEntries(expression, context.getDn(), attributes, transaction, true);
+        MappableCursor<Entry> entries =
+                findEntries(expression, context.getDn(), attributes, transaction, true,
+                        Collections.emptyList(), null, 0, 0);
 
         boolean exists = entries.next();
 
@@ -179,7 +216,9 @@ public class CommonPartition
         PartitionTxn transaction = context.getTransaction();
         QueryExpression expression = LdapUtils.createQueryExpression(context.getFilter());
         Set<String> attributes = LdapUtils.getAttributes(context);
-        MappableCursor<Entry> entries = findEntries(expression, context.getDn(), attributes, transaction, false);
+        MappableCursor<Entry> entries =
+                findEntries(expression, context.getDn(), attributes, transaction, false,
+                        Collections.emptyList(), null, 0, 0);
 
         if (!entries.next()) {
 
@@ -205,7 +244,41 @@ public class CommonPartition
         PartitionTxn transaction = context.getTransaction();
         QueryExpression expression = LdapUtils.createQueryExpression(context.getFilter());
         Set<String> attributes = LdapUtils.getAttributes(context);
-        MappableCursor<Entry> entries = findEntries(expression, context.getDn(), attributes, transaction, true);
+        List<SortCriterion> sortCriteria = Collections.emptyList();
+        PagedSearchPosition position = null;
+        int limit = 0;
+
+        // sorted and paged searches of the common search request handler are ordered and limited by the database
+        if (context instanceof CommonSearchOperationContext) {
+
+            sortCriteria = ((CommonSearchOperationContext) context).getSortCriteria();
+            position = ((CommonSearchOperationContext) context).getPosition();
+            limit = ((CommonSearchOperationContext) context).getLimit();
+        }
+
+        long sizeLimit = getSizeLimit(context);
+        int timeLimit = getTimeLimit(context);
+
+        // one more entry than the size limit lets ApacheDS report an exceeded size limit;
+        // entries sorted in memory by ApacheDS are needed completely
+        if (sizeLimit > 0 && sizeLimit < Integer.MAX_VALUE && (limit <= 0 || sizeLimit + 1 < limit) &&
+                (!sortCriteria.isEmpty() || context.getRequestControl(SortRequest.OID) == null))
+            limit = (int) sizeLimit + 1;
+
+        MappableCursor<Entry> entries;
+
+        try {
+
+            entries = findEntries(expression, context.getDn(), attributes, transaction, true, sortCriteria, position,
+                    limit, timeLimit);
+
+        } catch (UncheckedSQLException e) {
+
+            if (isTimeout(e))
+                throw new LdapTimeLimitExceededException("Cannot finish search within the time limit.");
+
+            throw e;
+        }
 
         return new EntryFilteringWrapperCursor(new IterableEntryCursor(logger, entries), context);
     }
@@ -218,17 +291,49 @@ public class CommonPartition
         return findManyOnFirstLevel(context);
     }
 
-    private MappableCursor<Entry> findEntries(QueryExpression expression, Dn queryDn, Set<String> attributes,
-                                              PartitionTxn transaction, boolean multiple) {
+    /**
+     * Gets the position of an entry returned by this partition to continue a paged search after it.
+     *
+     * @param entry the entry
+     * @return the paged search position
+     */
+    public PagedSearchPosition getPagedSearchPosition(Entry entry) {
 
         Dn rootDn = LdapUtils.createDn(schemaManager, EntityType.DOMAIN, getId());
         Dn groupsDn = LdapUtils.createDn(schemaManager, EntityType.GROUP_UNIT, getId());
         Dn usersDn = LdapUtils.createDn(schemaManager, EntityType.USER_UNIT, getId());
+        Dn dn = entry.getDn();
 
-        if (!(transaction instanceof SimpleReadOnlyPartition.ReadTransaction))
-            throw new IllegalArgumentException("Cannot process unexpected transaction type");
+        if (dn.equals(rootDn))
+            return new PagedSearchPosition(EntityType.DOMAIN, null);
+
+        if (dn.equals(groupsDn))
+            return new PagedSearchPosition(EntityType.GROUP_UNIT, null);
+
+        if (dn.equals(usersDn))
+            return new PagedSearchPosition(EntityType.USER_UNIT, null);
+
+        if (dn.getParent().equals(groupsDn))
+            return new PagedSearchPosition(EntityType.GROUP,
+                    LdapUtils.getGroupIdFromDn(schemaManager, dn.getName(), getId()));
+
+        if (dn.getParent().equals(usersDn))
+            return new PagedSearchPosition(EntityType.USER,
+                    LdapUtils.getUserIdFromDn(schemaManager, dn.getName(), getId()));
+
+        throw new IllegalArgumentException("Cannot determine paged search position of unexpected entry.");
+    }
+
+    private MappableCursor<Entry> findEntries(QueryExpression expression, Dn queryDn, Set<String> attributes,
+                                              PartitionTxn transaction, boolean multiple,
+                                              List<SortCriterion> sortCriteria, PagedSearchPosition position,
+                                              int limit, int timeLimit) {
+
+        Dn rootDn = LdapUtils.createDn(schemaManager, EntityType.DOMAIN, getId());
+        Dn groupsDn = LdapUtils.createDn(schemaManager, EntityType.GROUP_UNIT, getId());
+        Dn usersDn = LdapUtils.createDn(schemaManager, EntityType.USER_UNIT, getId());
 
-        String txId = ((SimpleReadOnlyPartition.ReadTransaction) transaction).getId();
+        String txId = getTransactionId(transaction);
 
         return directoryFactory.withSession(directory -> {
 
@@ -236,59 +341,88 @@ public class CommonPartition
 
             if (queryDn.equals(groupsDn)) {
 
-                if (LdapUtils.evaluateExpression(LdapUtils.preEvaluateExpression(expression, groupUnitEntity)))
+                if (isFollowedBy(position, EntityType.GROUP_UNIT) &&
+                        LdapUtils.evaluateExpression(LdapUtils.preEvaluateExpression(expression, groupUnitEntity)))
                     cursors.add(MappableCursor.fromIterable(Collections.singleton(groupUnitEntity)));
 
                 if (multiple) {
 
-                    cursors.add(directory.runQueryExpression(txId, schemaManager, expression, EntityType.GROUP));
+                    cursors.add(runQueryExpression(directory, txId, expression, EntityType.GROUP, attributes,
+                            sortCriteria, position, limit, timeLimit));
                 }
 
             } else if (queryDn.getParent().equals(groupsDn)) {
 
-                String attribute = queryDn.getRdn().getType();
-                String value = queryDn.getRdn().getValue();
+                String id = LdapUtils.getGroupIdFromDn(schemaManager, queryDn.getName(), getId());
 
-                QueryExpression expr =
-                        new AndLogicExpression(Arrays.asList(new EqualOperator(attribute, value), expression));
+                if (id != null && isTautology(LdapUtils.preEvaluateExpressionForGroup(expression))) {
+
+                    cursors.add(directory.runQueryById(txId, schemaManager, EntityType.GROUP, id, attributes));
+
+                } else {
+
+                    String attribute = queryDn.getRdn().getType();
+                    String value = queryDn.getRdn().getValue();
 
-                cursors.add(directory.runQueryExpression(txId, schemaManager, expr, EntityType.GROUP));
+                    QueryExpression expr =
+                            new AndLogicExpression(Arrays.asList(new EqualOperator(attribute, value), expression));
+
+                    cursors.add(runQueryExpression(directory, txId, expr, EntityType.GROUP, attributes,
+                            sortCriteria, position, limit, timeLimit));
+                }
 
             } else if (queryDn.equals(usersDn)) {
 
-                if (LdapUtils.evaluateExpression(LdapUtils.preEvaluateExpression(expression, userUnitEntity)))
+                if (isFollowedBy(position, EntityType.USER_UNIT) &&
+                        LdapUtils.evaluateExpression(LdapUtils.preEvaluateExpression(expression, userUnitEntity)))
                     cursors.add(MappableCursor.fromIterable(Collections.singleton(userUnitEntity)));
 
                 if (multiple) {
 
-                    cursors.add(directory.runQueryExpression(txId, schemaManager, expression, EntityType.USER));
+                    cursors.add(runQueryExpression(directory, txId, expression, EntityType.USER, attributes,
+                            sortCriteria, position, limit, timeLimit));
                 }
 
             } else if (queryDn.getParent().equals(usersDn)) {
 
-                String attribute = queryDn.getRdn().getType();
-                String value = queryDn.getRdn().getValue();
+                String id = LdapUtils.getUserIdFromDn(schemaManager, queryDn.getName(), getId());
 
-                QueryExpression expr =
-                        new AndLogicExpression(Arrays.asList(new EqualOperator(attribute, value), expression));
+                if (id != null && isTautology(LdapUtils.preEvaluateExpressionForUser(expression))) {
+
+                    cursors.add(directory.runQueryById(txId, schemaManager, EntityType.USER, id, attributes));
+
+                } else {
+
+                    String attribute = queryDn.getRdn().getType();
+                    String value = queryDn.getRdn().getValue();
+
+                    QueryExpression expr =
+                            new AndLogicExpression(Arrays.asList(new EqualOperator(attribute, value), expression));
 
-                cursors.add(directory.runQueryExpression(txId, schemaManager, expr, EntityType.USER));
+                    cursors.add(runQueryExpression(directory, txId, expr, EntityType.USER, attributes,
+                            sortCriteria, position, limit, timeLimit));
+                }
 
             } else if (queryDn.equals(rootDn)) {
 
-                if (LdapUtils.evaluateExpression(LdapUtils.preEvaluateExpression(expression, domainEntity)))
+                if (isFollowedBy(position, EntityType.DOMAIN) &&
+                        LdapUtils.evaluateExpression(LdapUtils.preEvaluateExpression(expression, domainEntity)))
                     cursors.add(MappableCursor.fromIterable(Collections.singleton(domainEntity)));
 
                 if (multiple) {
 
-                    if (LdapUtils.evaluateExpression(LdapUtils.preEvaluateExpression(expression, groupUnitEntity)))
+                    if (isFollowedBy(position, EntityType.GROUP_UNIT) &&
+                            LdapUtils.evaluateExpression(LdapUtils.preEvaluateExpression(expression, groupUnitEntity)))
                         cursors.add(MappableCursor.fromIterable(Collections.singleton(groupUnitEntity)));
 
-                    if (LdapUtils.evaluateExpression(LdapUtils.preEvaluateExpression(expression, userUnitEntity)))
+                    if (isFollowedBy(position, EntityType.USER_UNIT) &&
+                            LdapUtils.evaluateExpression(LdapUtils.preEvaluateExpression(expression, userUnitEntity)))
                         cursors.add(MappableCursor.fromIterable(Collections.singleton(userUnitEntity)));
 
-                    cursors.add(directory.runQueryExpression(txId, schemaManager, expression, EntityType.GROUP));
-                    cursors.add(directory.runQueryExpression(txId, schemaManager, expression, EntityType.USER));
+                    cursors.add(runQueryExpression(directory, txId, expression, EntityType.GROUP, attributes,
+                            sortCriteria, position, limit, timeLimit));
+                    cursors.add(runQueryExpression(directory, txId, expression, EntityType.USER, attributes,
+                            sortCriteria, position, limit, timeLimit));
                 }
 
             } else if (queryDn.getParent().equals(rootDn) && multiple) {
@@ -299,18 +433,135 @@ public class CommonPartition
                 QueryExpression expr =
                         new AndLogicExpression(Arrays.asList(new EqualOperator(attribute, value), expression));
 
-                cursors.add(directory.runQueryExpression(txId, schemaManager, expr, EntityType.GROUP));
-                cursors.add(directory.runQueryExpression(txId, schemaManager, expr, EntityType.USER));
+                cursors.add(runQueryExpression(directory, txId, expr, EntityType.GROUP, attributes,
+                        sortCriteria, position, limit, timeLimit));
+                cursors.add(runQueryExpression(directory, txId, expr, EntityType.USER, attributes,
+                        sortCriteria, position, limit, timeLimit));
             }
 
-            return createEntries(MappableCursor.flatten(cursors), attributes);
+            if (sortCriteria.isEmpty())
+                return createEntries(MappableCursor.flatten(cursors), attributes);
+
+            // each entity type is ordered by the database; the ordered results are merged here
+            return createEntries(MappableCursor.merge(cursors, createComparator(sortCriteria)), attributes);
         });
     }
 
-    private Entry createEntry(Row entity, Set<String> attributes) {
+    private MappableCursor<Row> runQueryExpression(DirectoryBackend directory, String txId,
+                                                   QueryExpression expression, EntityType entityType,
+                                                   Set<String> attributes, List<SortCriterion> sortCriteria,
+                                                   PagedSearchPosition position, int limit, int timeLimit) {
+
+        if (sortCriteria.isEmpty() && limit <= 0 && timeLimit <= 0)
+            return directory.runQueryExpression(txId, schemaManager, expression, entityType, attributes);
+
+        if (!isFollowedBy(position, entityType))
+            return MappableCursor.fromIterable(Collections.emptyList());
+
+        String lowerBoundId = position == null ? null : position.getLowerBoundId(entityType);
+
+        return directory.runQueryExpression(txId, schemaManager, expression, entityType, attributes, sortCriteria,
+                lowerBoundId, limit, timeLimit);
+    }
+
+    private long getSizeLimit(SearchOperationContext context) {
+
+        long sizeLimit = context.getSizeLimit();
+        long maxSizeLimit = serverConfig.getResponseMaxSizeLimit();
+
+        // like ApacheDS, the limits of the server do not apply to administrators
+        if (!context.getSession().isAnAdministrator() && maxSizeLimit > 0 &&
+                (sizeLimit <= 0 || maxSizeLimit < sizeLimit))
+            sizeLimit = maxSizeLimit;
+
+        return sizeLimit;
+    }
+
+    private int getTimeLimit(SearchOperationContext context) {
+
+        int timeLimit = context.getTimeLimit();
+        int maxTimeLimit = serverConfig.getResponseMaxTimeLimit();
+
+        if (!context.getSession().isAnAdministrator() && maxTimeLimit > 0 &&
+                (timeLimit <= 0 || maxTimeLimit < timeLimit))
+            timeLimit = maxTimeLimit;
+
+        return timeLimit;
+    }
+
+    private boolean isTimeout(Throwable throwable) {
+
+        // drivers report a cancelled statement either by type or by the SQL state of a cancelled query
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause())
+            if (cause instanceof SQLTimeoutException ||
+                    cause instanceof SQLException && "57014".equals(((SQLException) cause).getSQLState()))
+                return true;
+
+        return false;
+    }
+
+    private Comparator<Row> createComparator(List<SortCriterion> sortCriteria) {
+
+        // like the database, missing values are ordered last and the ordering is reversed as a whole
+        Comparator<Row> comparator = (x, y) -> 0;
+
+        for (SortCriterion criterion : sortCriteria) {
+
+            Comparator<Row> next =
+                    Comparator.comparing(x -> getSortKey(x, criterion.getAttribute()),
+                            Comparator.nullsLast(Comparator.<String>naturalOrder()));
+
+            comparator = comparator.thenComparing(criterion.isReversed() ? next.reversed() : next);
+        }
+
+        return comparator;
+    }
+
+    private String getSortKey(Row entity, String attribute) {
 
         EntityType entityType = EntityType.fromString(entity.apply(ColumnNames.TYPE, String.class));
 
+        // the domain and the units are not stored in the database; their only sortable value is the description
+        if (entityType != EntityType.GROUP && entityType != EntityType.USER) {
+
+            if (!attribute.equals(SchemaConstants.DESCRIPTION_AT_OID))
+                return null;
+
+            String description = entity.apply(ColumnNames.DESCRIPTION, String.class);
+
+            return description == null ? null : description.toLowerCase();
+        }
+
+        String column = LdapUtils.getSortKeyColumn(entityType, attribute);
+
+        if (column == null)
+            return null;
+
+        return entity.apply(column, String.class);
+    }
+
+    private boolean isFollowedBy(PagedSearchPosition position, EntityType entityType) {
+
+        return position == null || position.isFollowedBy(entityType);
+    }
+
+    private String getTransactionId(PartitionTxn transaction) {
+
+        if (!(transaction instanceof SimpleReadOnlyPartition.ReadTransaction))
+            throw new IllegalArgumentException("Cannot process unexpected transaction type");
+
+        return ((SimpleReadOnlyPartition.ReadTransaction) transaction).getId();
+    }
+
+    private boolean isTautology(QueryExpression expression) {
+
+        QueryExpression result = LdapUtils.removeValueExpressions(expression);
+
+        return result instanceof BooleanValue && ((BooleanValue) result).getValue();
+    }
+
+    private Entry createEntry(Row entity, EntityType entityType, Set<String> attributes) {
+
         switch (entityType) {
 
             case DOMAIN: {
@@ -525,9 +776,8 @@ public class CommonPartition
         }
     }
 
-    private void addRelationshipToEntries(Entry entry, Row entity, Set<String> attributes) {
-
-        EntityType entityType = EntityType.fromString(entity.apply(ColumnNames.TYPE, String.class));
+    private void addRelationshipToEntries(Entry entry, Row entity, EntityType entityType, Set<String> columns,
+                                          Set<String> attributes) {
 
         try {
 
@@ -539,18 +789,8 @@ public class CommonPartition
 
                         if (!serverConfig.isFlatteningEnabled()) {
 
-                            String memberNameGroup = null;
-
-                            try {
-
-                                memberNameGroup = entity.apply("member_group_name", String.class);
-
-                            } catch (UnknownColumnException e) {
-
-                                logger.trace("Cannot find column member_group_name in group row.");
-                            }
-
-                            if (memberNameGroup != null) {
+                            for (String memberNameGroup :
+                                    getAggregatedValues(entity, columns, ColumnNames.MEMBER_GROUP_NAMES)) {
 
                                 Dn dn = LdapUtils.createDn(schemaManager, EntityType.GROUP, memberNameGroup, getId());
 
@@ -558,24 +798,12 @@ public class CommonPartition
                             }
                         }
 
-                        {
-                            String memberNameUser = null;
-
-                            try {
-
-                                memberNameUser = entity.apply("member_user_username", String.class);
-
-                            } catch (UnknownColumnException e) {
+                        for (String memberNameUser :
+                                getAggregatedValues(entity, columns, ColumnNames.MEMBER_USER_USERNAMES)) {
 
-                                logger.trace("Cannot find column member_user_username in group row.");
-                            }
-
-                            if (memberNameUser != null) {
-
-                                Dn dn = LdapUtils.createDn(schemaManager, EntityType.USER, memberNameUser, getId());
+                            Dn dn = LdapUtils.createDn(schemaManager, EntityType.USER, memberNameUser, getId());
 
-                                entry.add(SchemaConstants.MEMBER_AT, dn.getName());
-                            }
+                            entry.add(SchemaConstants.MEMBER_AT, dn.getName());
                         }
                     }
 
@@ -583,18 +811,8 @@ public class CommonPartition
 
                         if (!serverConfig.isFlatteningEnabled()) {
 
-                            String memberOfName = null;
-
-                            try {
-
-                                memberOfName = entity.apply("parent_group_name", String.class);
-
-                            } catch (UnknownColumnException e) {
-
-                                logger.trace("Cannot find column parent_group_name in group row.");
-                            }
-
-                            if (memberOfName != null) {
+                            for (String memberOfName :
+                                    getAggregatedValues(entity, columns, ColumnNames.PARENT_GROUP_NAMES)) {
 
                                 Dn dn = LdapUtils.createDn(schemaManager, EntityType.GROUP, memberOfName, getId());
 
@@ -610,18 +828,8 @@ public class CommonPartition
 
                     if (attributes.isEmpty() || attributes.contains(LdapUtils.MEMBER_OF_AT_OID)) {
 
-                        String memberOfName = null;
-
-                        try {
-
-                            memberOfName = entity.apply("parent_group_name", String.class);
-
-                        } catch (UnknownColumnException e) {
-
-                            logger.trace("Cannot find column parent_group_name in user row.");
-                        }
-
-                        if (memberOfName != null) {
+                        for (String memberOfName :
+                                getAggregatedValues(entity, columns, ColumnNames.PARENT_GROUP_NAMES)) {
 
                             Dn dn = LdapUtils.createDn(schemaManager, EntityType.GROUP, memberOfName, getId());
 
@@ -642,52 +850,58 @@ public class CommonPartition
         }
     }
 
-    private MappableCursor<Entry> createEntries(MappableCursor<Row> cursor, Set<String> attributes) {
+    /**
+     * Gets the values of an aggregated column.
+     *
+     * @param entity     the row of an entity
+     * @param columns    the columns of the row
+     * @param columnName the name of the aggregated column
+     * @return the values or an empty list if the column was not selected
+     */
+    static List<String> getAggregatedValues(Row entity, Set<String> columns, String columnName) {
 
-        return new MappableCursor<Entry>() {
+        // the aggregation plan selects relationships only if the attributes of a search need them
+        if (!columns.contains(columnName))
+            return Collections.emptyList();
 
-            private boolean initialized = false;
-            private String nextId;
-            private Entry nextEntry;
-            private Entry currentEntry;
+        String values = entity.apply(columnName, String.class);
 
-            @Override
-            public boolean next() {
+        if (values == null || values.isEmpty())
+            return Collections.emptyList();
 
-                if (!initialized) {
+        return Arrays.asList(values.split(ColumnNames.VALUE_SEPARATOR));
+    }
 
-                    initialized = true;
+    private MappableCursor<Entry> createEntries(MappableCursor<Row> cursor, Set<String> attributes) {
 
-                    if (cursor.next()) {
+        // every row contains a single entity together with its aggregated relationships
 
-                        nextId = cursor.get().apply(ColumnNames.ID, String.class);
-                        nextEntry = createEntry(cursor.get(), attributes);
-                        addRelationshipToEntries(nextEntry, cursor.get(), attributes);
-                    }
-                }
+        return new MappableCursor<Entry>() {
 
-                currentEntry = nextEntry;
+            private Entry currentEntry;
+            private List<String> currentShape;
+            private Set<String> currentColumns;
 
-                while (cursor.next()) {
+            @Override
+            public boolean next() {
 
-                    if (cursor.get().apply(ColumnNames.ID, String.class).equals(nextId)) {
+                if (cursor.next()) {
 
-                        addRelationshipToEntries(currentEntry, cursor.get(), attributes);
+                    Row entity = cursor.get();
+                    EntityType entityType = EntityType.fromString(entity.apply(ColumnNames.TYPE, String.class));
 
-                    } else {
+                    // rows of the same result share their column names; the set is only built per result
+                    if (entity.getColumns() != currentShape) {
 
-                        nextId = cursor.get().apply(ColumnNames.ID, String.class);
-                        nextEntry = createEntry(cursor.get(), attributes);
-                        addRelationshipToEntries(nextEntry, cursor.get(), attributes);
-                        break;
+                        currentShape = entity.getColumns();
+                        currentColumns = new HashSet<>(currentShape);
                     }
-                }
 
-                if (currentEntry == nextEntry) {
+                    currentEntry = createEntry(entity, entityType, attributes);
+                    addRelationshipToEntries(currentEntry, entity, entityType, currentColumns, attributes);
 
-                    nextId = null;
-                    nextEntry = null;
-                }
+                } else
+                    currentEntry = null;
 
                 return currentEntry != null;
             }
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2019 ASERVO Software GmbH
+ * contact@aservo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.aservo.ldap.adapter;
+
+import de.aservo.ldap.adapter.api.query.SortCriterion;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.server.core.api.CoreSession;
+import org.apache.directory.server.core.api.interceptor.context.SearchOperationContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * The operation context of searches answered by the common search request handler.
+ * It carries the order and the page of the requested entries so that common partitions can leave them to the database.
+ */
+public class CommonSearchOperationContext
+        extends SearchOperationContext {
+
+    private final List<SortCriterion> sortCriteria;
+    private final PagedSearchPosition position;
+    private final int limit;
+
+    /**
+     * Instantiates a new search operation context.
+     *
+     * @param session       the core session
+     * @param searchRequest the search request
+     * @param sortCriteria  the sort criteria with normalized attributes
+     * @param position      the position to continue a paged search after or null
+     * @param limit         the maximum number of entries or zero for no limit
+     */
+    public CommonSearchOperationContext(CoreSession session, SearchRequest searchRequest,
+                                        List<SortCriterion> sortCriteria, PagedSearchPosition position,
+                                        int limit) {
+
+        super(session, searchRequest);
+
+        this.sortCriteria = new ArrayList<>(sortCriteria);
+        this.position = position;
+        this.limit = limit;
+    }
+
+    /**
+     * Gets the sort criteria.
+     *
+     * @return the sort criteria
+     */
+    public List<SortCriterion> getSortCriteria() {
+
+        return Collections.unmodifiableList(sortCriteria);
+    }
+
+    /**
+     * Gets the position to continue a paged search after.
+     *
+     * @return the position or null
+     */
+    public PagedSearchPosition getPosition() {
+
+        return position;
+    }
+
+    /**
+     * Gets the maximum number of entries.
+     *
+     * @return the limit or zero for no limit
+     */
+    public int getLimit() {
+
+        return limit;
+    }
+}
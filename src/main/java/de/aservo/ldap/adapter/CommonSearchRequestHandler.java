@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2019 ASERVO Software GmbH
+ * contact@aservo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.aservo.ldap.adapter;
+
+import de.aservo.ldap.adapter.api.LdapUtils;
+import de.aservo.ldap.adapter.api.entity.EntityType;
+import de.aservo.ldap.adapter.api.query.SortCriterion;
+import org.apache.directory.api.ldap.model.cursor.Cursor;
+import org.apache.directory.api.ldap.model.entry.Entry;
+import org.apache.directory.api.ldap.model.exception.LdapException;
+import org.apache.directory.api.ldap.model.message.LdapResult;
+import org.apache.directory.api.ldap.model.message.ResultCodeEnum;
+import org.apache.directory.api.ldap.model.message.SearchRequest;
+import org.apache.directory.api.ldap.model.message.SearchResultEntry;
+import org.apache.directory.api.ldap.model.message.SearchResultEntryImpl;
+import org.apache.directory.api.ldap.model.message.SearchScope;
+import org.apache.directory.api.ldap.model.message.controls.PagedResults;
+import org.apache.directory.api.ldap.model.message.controls.PagedResultsImpl;
+import org.apache.directory.api.ldap.model.message.controls.SortKey;
+import org.apache.directory.api.ldap.model.message.controls.SortRequest;
+import org.apache.directory.api.ldap.model.message.controls.SortResponse;
+import org.apache.directory.api.ldap.model.message.controls.SortResponseImpl;
+import org.apache.directory.api.ldap.model.message.controls.SortResultCode;
+import org.apache.directory.server.core.api.CoreSession;
+import org.apache.directory.server.core.api.interceptor.context.SearchOperationContext;
+import org.apache.directory.server.core.api.partition.Partition;
+import org.apache.directory.server.ldap.LdapSession;
+import org.apache.directory.server.ldap.handlers.LdapRequestHandler;
+import org.apache.directory.server.ldap.handlers.SearchAbandonListener;
+import org.apache.directory.server.ldap.handlers.request.SearchRequestHandler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * A search request handler which answers paged searches (RFC 2696) and sorted searches (RFC 2891)
+ * on common partitions natively.
+ * The cookie of a paged search carries the position of the last returned entry, so that each page is read from
+ * the database with a keyset condition and a limit instead of keeping a cursor open between pages.
+ * Sorted searches are ordered by the database instead of being sorted in memory by ApacheDS.
+ * All other searches are delegated to the default search request handler of ApacheDS.
+ */
+public class CommonSearchRequestHandler
+        extends LdapRequestHandler<SearchRequest> {
+
+    private final SearchRequestHandler searchRequestHandler = new SearchRequestHandler();
+
+    public CommonSearchRequestHandler() {
+    }
+
+    public void handle(LdapSession session, SearchRequest searchRequest)
+            throws Exception {
+
+        PagedResults pagedResults = (PagedResults) searchRequest.getControl(PagedResults.OID);
+        SortRequest sortRequest = (SortRequest) searchRequest.getControl(SortRequest.OID);
+        List<SortCriterion> sortCriteria = null;
+        CommonPartition partition = null;
+
+        if (sortRequest != null)
+            sortCriteria = getSortCriteria(sortRequest);
+
+        // the keyset position of a paged search is only valid for entries ordered by ID;
+        // therefore, sorted paged searches are answered by ApacheDS
+        if (searchRequest.getScope() != SearchScope.OBJECT) {
+
+            if (pagedResults != null && sortRequest == null &&
+                    !isLimitedBelowPageSize(session, searchRequest, pagedResults))
+                partition = findPartition(session, searchRequest);
+            else if (pagedResults == null && sortCriteria != null)
+                partition = findPartition(session, searchRequest);
+        }
+
+        if (partition == null) {
+
+            searchRequestHandler.setLdapServer(getLdapServer());
+            searchRequestHandler.handle(session, searchRequest);
+
+            return;
+        }
+
+        // outstanding requests are abandoned by the client or when the client disconnects
+        session.registerOutstandingRequest(searchRequest);
+
+        try {
+
+            if (pagedResults != null)
+                doPagedSearch(session, searchRequest, pagedResults, partition);
+            else
+                doSortedSearch(session, searchRequest, sortCriteria);
+
+        } catch (Exception e) {
+
+            // the cursor of an abandoned search fails after it was closed; there is no one to respond to
+            if (!searchRequest.isAbandoned())
+                handleException(session, searchRequest, searchRequest.getResultResponse(), e);
+
+        } finally {
+
+            session.unregisterOutstandingRequest(searchRequest);
+        }
+    }
+
+    private void doPagedSearch(LdapSession session, SearchRequest searchRequest, PagedResults pagedResults,
+                               CommonPartition partition)
+            throws Exception {
+
+        LdapResult result = searchRequest.getResultResponse().getLdapResult();
+        PagedResults responseControl = new PagedResultsImpl();
+        byte[] cookie = new byte[0];
+
+        // a page size of zero abandons the paged search; there is no state to release
+        if (pagedResults.getSize() > 0) {
+
+            // one more entry than the page size indicates that another page follows
+            PagedSearchPosition position = PagedSearchPosition.fromCookie(pagedResults.getCookie());
+            Cursor<Entry> cursor =
+                    search(session, searchRequest, Collections.emptyList(), position, pagedResults.getSize() + 1);
+
+            try {
+
+                Entry lastEntry = null;
+                int count = 0;
+
+                cursor.beforeFirst();
+
+                while (!searchRequest.isAbandoned() && cursor.next()) {
+
+                    if (count == pagedResults.getSize()) {
+
+                        cookie = partition.getPagedSearchPosition(lastEntry).toCookie();
+
+                        break;
+                    }
+
+                    lastEntry = cursor.get();
+                    session.getIoSession().write(createResponse(searchRequest, lastEntry));
+                    count++;
+                }
+
+            } finally {
+
+                cursor.close();
+            }
+
+            if (searchRequest.isAbandoned())
+                return;
+        }
+
+        responseControl.setCookie(cookie);
+        responseControl.setSize(0);
+        responseControl.setCritical(false);
+        result.setResultCode(ResultCodeEnum.SUCCESS);
+        searchRequest.getResultResponse().addControl(responseControl);
+        session.getIoSession().write(searchRequest.getResultResponse());
+    }
+
+    private void doSortedSearch(LdapSession session, SearchRequest searchRequest, List<SortCriterion> sortCriteria)
+            throws Exception {
+
+        LdapResult result = searchRequest.getResultResponse().getLdapResult();
+        SortResponse responseControl = new SortResponseImpl();
+        Cursor<Entry> cursor = search(session, searchRequest, sortCriteria, null, 0);
+        long sizeLimit = getSizeLimit(session, searchRequest);
+
+        result.setResultCode(ResultCodeEnum.SUCCESS);
+
+        try {
+
+            int count = 0;
+
+            cursor.beforeFirst();
+
+            while (!searchRequest.isAbandoned() && cursor.next()) {
+
+                if (sizeLimit > 0 && count == sizeLimit) {
+
+                    result.setResultCode(ResultCodeEnum.SIZE_LIMIT_EXCEEDED);
+
+                    break;
+                }
+
+                session.getIoSession().write(createResponse(searchRequest, cursor.get()));
+                count++;
+            }
+
+        } finally {
+
+            cursor.close();
+        }
+
+        if (searchRequest.isAbandoned())
+            return;
+
+        responseControl.setSortResult(SortResultCode.SUCCESS);
+        responseControl.setCritical(false);
+        searchRequest.getResultResponse().addControl(responseControl);
+        session.getIoSession().write(searchRequest.getResultResponse());
+    }
+
+    private Cursor<Entry> search(LdapSession session, SearchRequest searchRequest, List<SortCriterion> sortCriteria,
+                                 PagedSearchPosition position, int limit)
+            throws LdapException {
+
+        CoreSession coreSession = session.getCoreSession();
+        SearchOperationContext context =
+                new CommonSearchOperationContext(coreSession, searchRequest, sortCriteria, position, limit);
+
+        Cursor<Entry> cursor;
+
+        // the operation manager is called directly; the core session would sort entries in memory
+        try {
+
+            cursor = coreSession.getDirectoryService().getOperationManager().search(context);
+
+        } finally {
+
+            searchRequest.getResultResponse().addAllControls(context.getResponseControls());
+        }
+
+        // like ApacheDS, the cursor is closed when the search is abandoned; running statements are cancelled
+        searchRequest.addAbandonListener(new SearchAbandonListener(getLdapServer(), cursor));
+
+        return cursor;
+    }
+
+    private SearchResultEntry createResponse(SearchRequest searchRequest, Entry entry) {
+
+        SearchResultEntry response = new SearchResultEntryImpl(searchRequest.getMessageId());
+
+        response.setEntry(entry);
+        response.setObjectName(entry.getDn());
+
+        return response;
+    }
+
+    private List<SortCriterion> getSortCriteria(SortRequest sortRequest) {
+
+        List<SortCriterion> sortCriteria = new ArrayList<>();
+
+        for (SortKey sortKey : sortRequest.getSortKeys()) {
+
+            String attribute = LdapUtils.normalizeAttribute(sortKey.getAttributeTypeDesc());
+
+            // the database orders by key columns; other attributes and matching rules are left to ApacheDS
+            if (sortKey.getMatchingRuleId() != null ||
+                    LdapUtils.getSortKeyColumn(EntityType.GROUP, attribute) == null &&
+                            LdapUtils.getSortKeyColumn(EntityType.USER, attribute) == null)
+                return null;
+
+            sortCriteria.add(new SortCriterion(attribute, sortKey.isReverseOrder()));
+        }
+
+        return sortCriteria;
+    }
+
+    private long getSizeLimit(LdapSession session, SearchRequest searchRequest) {
+
+        // like ApacheDS, the limits of the server do not apply to administrators
+        long sizeLimit = session.getCoreSession().isAnAdministrator() ? 0 : getLdapServer().getMaxSizeLimit();
+
+        if (searchRequest.getSizeLimit() > 0 && (sizeLimit <= 0 || searchRequest.getSizeLimit() < sizeLimit))
+            sizeLimit = searchRequest.getSizeLimit();
+
+        return sizeLimit;
+    }
+
+    private boolean isLimitedBelowPageSize(LdapSession session, SearchRequest searchRequest,
+                                           PagedResults pagedResults) {
+
+        long sizeLimit = getSizeLimit(session, searchRequest);
+
+        // like ApacheDS, a search is not paged if the size limit is reached within the first page
+        return sizeLimit > 0 && sizeLimit < pagedResults.getSize();
+    }
+
+    private CommonPartition findPartition(LdapSession session, SearchRequest searchRequest) {
+
+        try {
+
+            Partition partition =
+                    session.getCoreSession().getDirectoryService().getPartitionNexus()
+                            .getPartition(searchRequest.getBase());
+
+            if (partition instanceof CommonPartition)
+                return (CommonPartition) partition;
+
+        } catch (LdapException e) {
+
+            // searches outside of all partitions are answered by the default handler
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2019 ASERVO Software GmbH
+ * contact@aservo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.aservo.ldap.adapter;
+
+import de.aservo.ldap.adapter.api.entity.EntityType;
+
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * The position of the last entry returned by a paged search.
+ * Entries are returned in the order of entity types and then ordered by ID;
+ * therefore, the position is sufficient to continue a search without server side state.
+ */
+public class PagedSearchPosition {
+
+    private static final String COOKIE_PREFIX = "keyset:";
+
+    private final EntityType entityType;
+    private final String id;
+
+    /**
+     * Instantiates a new paged search position.
+     *
+     * @param entityType the entity type of the last entry
+     * @param id         the ID of the last entry or null for entries without ID
+     */
+    public PagedSearchPosition(EntityType entityType, String id) {
+
+        this.entityType = entityType;
+        this.id = id;
+    }
+
+    /**
+     * Gets the entity type of the last entry.
+     *
+     * @return the entity type
+     */
+    public EntityType getEntityType() {
+
+        return entityType;
+    }
+
+    /**
+     * Gets the ID of the last entry.
+     *
+     * @return the ID
+     */
+    public String getId() {
+
+        return id;
+    }
+
+    /**
+     * Indicates whether entries of an entity type follow this position.
+     *
+     * @param entityType the entity type
+     * @return the boolean
+     */
+    public boolean isFollowedBy(EntityType entityType) {
+
+        if (entityType == EntityType.GROUP || entityType == EntityType.USER)
+            return entityType.ordinal() >= this.entityType.ordinal();
+
+        return entityType.ordinal() > this.entityType.ordinal();
+    }
+
+    /**
+     * Gets the exclusive lower bound of IDs for entries of an entity type.
+     *
+     * @param entityType the entity type
+     * @return the ID or null if all entries follow this position
+     */
+    public String getLowerBoundId(EntityType entityType) {
+
+        return entityType == this.entityType ? id : null;
+    }
+
+    /**
+     * Creates the cookie of the paged results control.
+     *
+     * @return the cookie
+     */
+    public byte[] toCookie() {
+
+        String value = COOKIE_PREFIX + entityType + (id == null ? "" : ":" + id);
+
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the position from the cookie of a paged results control.
+     *
+     * @param cookie the cookie
+     * @return the position or null if the cookie is empty
+     */
+    public static PagedSearchPosition fromCookie(byte[] cookie) {
+
+        if (cookie == null || cookie.length == 0)
+            return null;
+
+        String value = new String(cookie, StandardCharsets.UTF_8);
+
+        if (!value.startsWith(COOKIE_PREFIX))
+            throw new IllegalArgumentException("Cannot process unexpected paged search cookie.");
+
+        String[] parts = value.substring(COOKIE_PREFIX.length()).split(":", 2);
+
+        return new PagedSearchPosition(EntityType.fromString(parts[0]), parts.length > 1 ? parts[1] : null);
+    }
+}
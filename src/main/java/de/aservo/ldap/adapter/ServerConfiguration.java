@@ -171,7 +171,7 @@ public class ServerConfiguration {
                 Integer.parseInt(serverProperties.getProperty(CONFIG_RESPONSE_MAX_SIZE_LIMIT, "50000"));
 
         responseMaxTimeLimit =
-                Integer.parseInt(serverProperties.getProperty(CONFIG_RESPONSE_MAX_SIZE_LIMIT, "1000"));
+                Integer.parseInt(serverProperties.getProperty(CONFIG_RESPONSE_MAX_TIME_LIMIT, "1000"));
 
         connectionBackLog =
                 Integer.parseInt(serverProperties.getProperty(CONFIG_CONNECTION_BACK_LOG, "100"));
@@ -17,6 +17,7 @@
 
 package de.aservo.ldap.adapter.api;
 
+import de.aservo.ldap.adapter.api.entity.ColumnNames;
 import de.aservo.ldap.adapter.api.entity.DomainEntity;
 import de.aservo.ldap.adapter.api.entity.EntityType;
 import de.aservo.ldap.adapter.api.entity.UnitEntity;
@@ -721,6 +722,49 @@ public class LdapUtils {
                     expression.getClass().getSimpleName());
     }
 
+    /**
+     * Gets the column used to order entities by an attribute.
+     * Values are ordered case-insensitive by the key column of the attribute.
+     *
+     * @param entityType the entity type
+     * @param attribute  the normalized attribute
+     * @return the column name or null if entities of this type are not ordered by the attribute
+     */
+    public static String getSortKeyColumn(EntityType entityType, String attribute) {
+
+        if (entityType == EntityType.GROUP) {
+
+            if (attribute.equals(SchemaConstants.CN_AT_OID))
+                return ColumnNames.NAME + ColumnNames.KEY_SUFFIX;
+
+            if (attribute.equals(SchemaConstants.DESCRIPTION_AT_OID))
+                return ColumnNames.DESCRIPTION + ColumnNames.KEY_SUFFIX;
+
+        } else if (entityType == EntityType.USER) {
+
+            // the ID is the lower case username
+            if (attribute.equals(SchemaConstants.UID_AT_OID))
+                return ColumnNames.ID;
+
+            if (attribute.equals(SchemaConstants.CN_AT_OID))
+                return ColumnNames.USERNAME + ColumnNames.KEY_SUFFIX;
+
+            if (attribute.equals(SchemaConstants.SN_AT_OID))
+                return ColumnNames.LAST_NAME + ColumnNames.KEY_SUFFIX;
+
+            if (attribute.equals(SchemaConstants.GN_AT_OID))
+                return ColumnNames.FIRST_NAME + ColumnNames.KEY_SUFFIX;
+
+            if (attribute.equals(SchemaConstants.DISPLAY_NAME_AT_OID))
+                return ColumnNames.DISPLAY_NAME + ColumnNames.KEY_SUFFIX;
+
+            if (attribute.equals(SchemaConstants.MAIL_AT_OID))
+                return ColumnNames.EMAIL + ColumnNames.KEY_SUFFIX;
+        }
+
+        return null;
+    }
+
     /**
      * Normalizes LDAP attributes.
      * Function is used for attributes of incoming queries.
@@ -175,4 +175,61 @@ public abstract class MappableCursor<T>
             }
         };
     }
+
+    public static <T, C extends Cursor<T>> MappableCursor<T> merge(Collection<C> cursors,
+                                                                Comparator<? super T> comparator) {
+
+        List<Cursor<T>> cursorList = new ArrayList<>(cursors);
+
+        // each cursor has to be ordered by the comparator; equal elements are taken from the first cursor
+        return new MappableCursor<T>() {
+
+            boolean[] available = null;
+            int index = -1;
+
+            @Override
+            public boolean next() {
+
+                if (available == null) {
+
+                    available = new boolean[cursorList.size()];
+
+                    for (int i = 0; i < cursorList.size(); i++)
+                        available[i] = cursorList.get(i).next();
+
+                } else if (index >= 0) {
+
+                    available[index] = cursorList.get(index).next();
+                }
+
+                index = -1;
+
+                for (int i = 0; i < cursorList.size(); i++) {
+
+                    if (available[i] && (index < 0 ||
+                            comparator.compare(cursorList.get(i).get(), cursorList.get(index).get()) < 0))
+                        index = i;
+                }
+
+                return index >= 0;
+            }
+
+            @Override
+            public T get() {
+
+                if (index < 0)
+                    throw new NoSuchElementException("There is no element for iterations.");
+
+                return cursorList.get(index).get();
+            }
+
+            @Override
+            public void close()
+                    throws IOException {
+
+                for (Cursor<T> cursor : cursorList)
+                    cursor.close();
+            }
+        };
+    }
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2019 ASERVO Software GmbH
+ * contact@aservo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.aservo.ldap.adapter.api.database;
+
+
+/**
+ * The batch definition used to execute a query many times with different arguments.
+ * Other than query definitions, a batch definition is mutable and collects its entries until it is executed.
+ */
+public interface BatchQueryDef {
+
+    /**
+     * Adds an argument to the current entry of the batch.
+     *
+     * @param key   the ID of the parameter
+     * @param value the value of the parameter
+     * @return the batch definition object
+     */
+    BatchQueryDef on(String key, Object value);
+
+    /**
+     * Completes the current entry of the batch; full batches are sent to the database immediately.
+     *
+     * @return the batch definition object
+     */
+    BatchQueryDef addBatch();
+
+    /**
+     * Executes all remaining entries of the batch and releases the statement.
+     *
+     * @return the number of executed entries
+     */
+    int execute();
+
+    /**
+     * Gets the number of rows changed by the executed entries.
+     * An entry is counted as one changed row if the database does not report its count.
+     *
+     * @return the number of changed rows
+     */
+    int getUpdateCount();
+}
@@ -44,6 +44,22 @@ public interface QueryDef {
      */
     QueryDef on(List<Object> arguments);
 
+    /**
+     * Limits the time the database may spend on executing the query.
+     *
+     * @param seconds the query timeout in seconds or zero for no timeout
+     * @return the query definition object
+     */
+    QueryDef withQueryTimeout(int seconds);
+
+    /**
+     * Sets the number of rows the driver fetches per round trip while a result is read.
+     *
+     * @param rows the fetch size or zero for the default of the driver
+     * @return the query definition object
+     */
+    QueryDef withFetchSize(int rows);
+
     /**
      * Executes a query.
      *
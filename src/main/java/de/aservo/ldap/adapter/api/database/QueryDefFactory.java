@@ -17,6 +17,8 @@
 
 package de.aservo.ldap.adapter.api.database;
 
+import java.util.List;
+
 
 /**
  * The factory class for query definitions.
@@ -38,4 +40,22 @@ public interface QueryDefFactory {
      * @return the query definition object
      */
     QueryDef query(String clause);
+
+    /**
+     * Creates a batch by an ID.
+     *
+     * @param clauseId the clause ID
+     * @return the batch definition object
+     */
+    BatchQueryDef batchById(String clauseId);
+
+    /**
+     * Creates a bulk load of rows into a table using the fastest path of the database dialect.
+     * The rows are inserted without conflict handling; therefore, the table is expected to be empty.
+     *
+     * @param table   the name of the table
+     * @param columns the names of the columns used as parameter IDs
+     * @return the batch definition object
+     */
+    BatchQueryDef bulkLoad(String table, List<String> columns);
 }
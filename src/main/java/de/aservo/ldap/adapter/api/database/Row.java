@@ -17,6 +17,8 @@
 
 package de.aservo.ldap.adapter.api.database;
 
+import java.util.List;
+
 
 /**
  * The database row used for type mapping.
@@ -31,4 +33,25 @@ public interface Row {
      * @return the value of a column
      */
     <T> T apply(String columnName, Class<T> clazz);
+
+    /**
+     * Gets the names of all columns in this row.
+     * Rows of the same result share the list; it identifies the shape of the result.
+     *
+     * @return the column names
+     */
+    List<String> getColumns();
+
+    /**
+     * Returns the value of a column in this row by its position in the result.
+     * It saves the lookup of the column name for rows read from the database.
+     *
+     * @param ordinal the zero based position of the column
+     * @param clazz   the type expected for a column
+     * @return the value of a column
+     */
+    default <T> T apply(int ordinal, Class<T> clazz) {
+
+        throw new UnsupportedOperationException("Cannot access columns of this row by position.");
+    }
 }
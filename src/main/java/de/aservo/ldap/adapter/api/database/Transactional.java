@@ -34,6 +34,16 @@ public interface Transactional {
      */
     <T> T withTransaction(Function<QueryDefFactory, T> block);
 
+    /**
+     * Creates a transaction for the lifetime of a code block.
+     * A read only transaction borrows its connection not before the first query definition is created.
+     *
+     * @param readOnly the flag to run the code block in a read only transaction
+     * @param block    the code block
+     * @return the return value of the code block
+     */
+    <T> T withTransaction(boolean readOnly, Function<QueryDefFactory, T> block);
+
     /**
      * Creates a transaction for the lifetime of a code block.
      *
@@ -42,7 +52,7 @@ public interface Transactional {
     void withTransaction(Consumer<QueryDefFactory> block);
 
     /**
-     * Creates a closeable transaction for undefined lifetime.
+     * Creates a closeable read only transaction for undefined lifetime.
      *
      * @return the closeable transaction
      */
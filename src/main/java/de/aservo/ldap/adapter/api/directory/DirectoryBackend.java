@@ -24,8 +24,10 @@ import de.aservo.ldap.adapter.api.entity.EntityType;
 import de.aservo.ldap.adapter.api.entity.GroupEntity;
 import de.aservo.ldap.adapter.api.entity.UserEntity;
 import de.aservo.ldap.adapter.api.query.QueryExpression;
+import de.aservo.ldap.adapter.api.query.SortCriterion;
 import org.apache.directory.api.ldap.model.schema.SchemaManager;
 
+import java.util.List;
 import java.util.Set;
 
 
@@ -58,10 +60,56 @@ public interface DirectoryBackend {
      * @param schemaManager the schema manager
      * @param expression    the query expression
      * @param entityType    the entity type
+     * @param attributes    the requested attributes
      * @return the query generator
      */
     MappableCursor<Row> runQueryExpression(String txId, SchemaManager schemaManager, QueryExpression expression,
-                                           EntityType entityType);
+                                           EntityType entityType, Set<String> attributes);
+
+    /**
+     * Runs a query expression for ordered entities.
+     * Entities are ordered by the sort criteria first and then by ID.
+     * A lower bound ID continues a paged search and requires entities ordered by ID only.
+     * The limits are applied by the database.
+     *
+     * @param txId          the transaction ID
+     * @param schemaManager the schema manager
+     * @param expression    the query expression
+     * @param entityType    the entity type
+     * @param attributes    the requested attributes
+     * @param sortCriteria  the sort criteria with normalized attributes
+     * @param lowerBoundId  the exclusive lower bound of entity IDs or null for the first page
+     * @param limit         the maximum number of entities or zero for no limit
+     * @param timeLimit     the maximum number of seconds spent on the query or zero for no limit
+     * @return the query result
+     */
+    MappableCursor<Row> runQueryExpression(String txId, SchemaManager schemaManager, QueryExpression expression,
+                                           EntityType entityType, Set<String> attributes,
+                                           List<SortCriterion> sortCriteria, String lowerBoundId, int limit,
+                                           int timeLimit);
+
+    /**
+     * Runs a query for a single entity by primary key.
+     *
+     * @param txId          the transaction ID
+     * @param schemaManager the schema manager
+     * @param entityType    the entity type
+     * @param id            the entity ID
+     * @param attributes    the requested attributes
+     * @return the query result
+     */
+    MappableCursor<Row> runQueryById(String txId, SchemaManager schemaManager, EntityType entityType, String id,
+                                     Set<String> attributes);
+
+    /**
+     * Checks the existence of a single entity by primary key.
+     *
+     * @param txId       the transaction ID
+     * @param entityType the entity type
+     * @param id         the entity ID
+     * @return the boolean
+     */
+    boolean hasEntity(String txId, EntityType entityType, String id);
 
     /**
      * Gets group info.
@@ -167,6 +167,57 @@ public interface NestedDirectoryBackend
     default void upsertMembership(MembershipEntity membership) {
     }
 
+    /**
+     * To reset the cache a full load is started; by default the cache is emptied.
+     * Entities loaded afterwards do not need to be visible before the full load is committed.
+     */
+    default void beginFullLoad() {
+
+        dropAllGroups();
+        dropAllUsers();
+    }
+
+    /**
+     * To reset the cache the entities of a full load are made visible at once.
+     */
+    default void commitFullLoad() {
+    }
+
+    /**
+     * To reset the cache all group entities are loaded as part of a full load.
+     *
+     * @param startIndex the start index for pagination
+     * @param maxResults the maximum number of results for pagination
+     * @return the number of handled entities
+     */
+    default int loadAllGroups(int startIndex, int maxResults) {
+
+        return upsertAllGroups(startIndex, maxResults);
+    }
+
+    /**
+     * To reset the cache all user entities are loaded as part of a full load.
+     *
+     * @param startIndex the start index for pagination
+     * @param maxResults the maximum number of results for pagination
+     * @return the number of handled entities
+     */
+    default int loadAllUsers(int startIndex, int maxResults) {
+
+        return upsertAllUsers(startIndex, maxResults);
+    }
+
+    /**
+     * To reset the cache all membership entities are loaded as part of a full load.
+     *
+     * @param memberships the cursor with membership elements
+     */
+    default void loadAllMemberships(MappableCursor<MembershipEntity> memberships) {
+
+        while (memberships.next())
+            upsertMembership(memberships.get());
+    }
+
     /**
      * To keep the cache up-to-date a group entity is dropped.
      *
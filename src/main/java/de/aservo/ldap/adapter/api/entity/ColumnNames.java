@@ -29,4 +29,17 @@ public interface ColumnNames {
     String DISPLAY_NAME = "display_name";
     String EMAIL = "email";
     String ACTIVE = "active";
+    String MEMBER_GROUP_NAMES = "member_group_names";
+    String MEMBER_USER_USERNAMES = "member_user_usernames";
+    String PARENT_GROUP_NAMES = "parent_group_names";
+
+    /**
+     * The suffix of indexed columns holding a lower case prefix of a value.
+     */
+    String KEY_SUFFIX = "_key";
+
+    /**
+     * The separator of aggregated values; a control character cannot be part of any entity name.
+     */
+    String VALUE_SEPARATOR = "\u001e";
 }
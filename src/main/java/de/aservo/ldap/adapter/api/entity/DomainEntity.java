@@ -19,6 +19,10 @@ package de.aservo.ldap.adapter.api.entity;
 
 import de.aservo.ldap.adapter.api.database.exception.UnknownColumnException;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 
 /**
  * The domain entity.
@@ -27,6 +31,12 @@ public class DomainEntity
         extends Entity
         implements DescribableEntity {
 
+    private static final List<String> COLUMNS =
+            Collections.unmodifiableList(Arrays.asList(
+                    ColumnNames.TYPE,
+                    ColumnNames.ID,
+                    ColumnNames.DESCRIPTION));
+
     private final String description;
 
     /**
@@ -61,6 +71,11 @@ public class DomainEntity
         return EntityType.DOMAIN;
     }
 
+    public List<String> getColumns() {
+
+        return COLUMNS;
+    }
+
     protected Object findColumn(String columnName) {
 
         switch (columnName) {
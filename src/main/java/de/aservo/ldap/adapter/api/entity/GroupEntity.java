@@ -19,6 +19,10 @@ package de.aservo.ldap.adapter.api.entity;
 
 import de.aservo.ldap.adapter.api.database.exception.UnknownColumnException;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 
 /**
  * The group entity.
@@ -27,6 +31,13 @@ public class GroupEntity
         extends Entity
         implements DescribableEntity {
 
+    private static final List<String> COLUMNS =
+            Collections.unmodifiableList(Arrays.asList(
+                    ColumnNames.TYPE,
+                    ColumnNames.ID,
+                    ColumnNames.NAME,
+                    ColumnNames.DESCRIPTION));
+
     private final String name;
     private final String description;
 
@@ -73,6 +84,11 @@ public class GroupEntity
         return EntityType.GROUP;
     }
 
+    public List<String> getColumns() {
+
+        return COLUMNS;
+    }
+
     protected Object findColumn(String columnName) {
 
         switch (columnName) {
@@ -19,7 +19,9 @@ package de.aservo.ldap.adapter.api.entity;
 
 import de.aservo.ldap.adapter.api.database.exception.UnknownColumnException;
 
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -82,6 +84,11 @@ public class MembershipEntity
         return null;
     }
 
+    public List<String> getColumns() {
+
+        return Collections.emptyList();
+    }
+
     @Override
     protected Object findColumn(String columnName) {
 
@@ -19,11 +19,21 @@ package de.aservo.ldap.adapter.api.entity;
 
 import de.aservo.ldap.adapter.api.database.exception.UnknownColumnException;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 
 public abstract class UnitEntity
         extends Entity
         implements DescribableEntity {
 
+    private static final List<String> COLUMNS =
+            Collections.unmodifiableList(Arrays.asList(
+                    ColumnNames.TYPE,
+                    ColumnNames.ID,
+                    ColumnNames.DESCRIPTION));
+
     private final String description;
 
     /**
@@ -48,6 +58,11 @@ public abstract class UnitEntity
         return description;
     }
 
+    public List<String> getColumns() {
+
+        return COLUMNS;
+    }
+
     protected Object findColumn(String columnName) {
 
         switch (columnName) {
@@ -19,6 +19,10 @@ package de.aservo.ldap.adapter.api.entity;
 
 import de.aservo.ldap.adapter.api.database.exception.UnknownColumnException;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 
 /**
  * The user entity.
@@ -26,6 +30,17 @@ import de.aservo.ldap.adapter.api.database.exception.UnknownColumnException;
 public class UserEntity
         extends Entity {
 
+    private static final List<String> COLUMNS =
+            Collections.unmodifiableList(Arrays.asList(
+                    ColumnNames.TYPE,
+                    ColumnNames.ID,
+                    ColumnNames.USERNAME,
+                    ColumnNames.LAST_NAME,
+                    ColumnNames.FIRST_NAME,
+                    ColumnNames.DISPLAY_NAME,
+                    ColumnNames.EMAIL,
+                    ColumnNames.ACTIVE));
+
     private final String username;
     private final String lastName;
     private final String firstName;
@@ -125,6 +140,11 @@ public class UserEntity
         return EntityType.USER;
     }
 
+    public List<String> getColumns() {
+
+        return COLUMNS;
+    }
+
     protected Object findColumn(String columnName) {
 
         switch (columnName) {
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2019 ASERVO Software GmbH
+ * contact@aservo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.aservo.ldap.adapter.api.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+
+public final class InOperator
+        implements OperatorExpression<InOperator> {
+
+    private final String attribute;
+    private final List<String> values;
+    private final boolean negated;
+    private final boolean ignoreCase;
+
+    public InOperator(String attribute, List<String> values, boolean negated, boolean ignoreCase) {
+
+        this.attribute = attribute;
+        this.values = new ArrayList<>(values);
+        this.negated = negated;
+        this.ignoreCase = ignoreCase;
+    }
+
+    public InOperator(String attribute, List<String> values) {
+
+        this(attribute, values, false, true);
+    }
+
+    public String getAttribute() {
+
+        return attribute;
+    }
+
+    public List<String> getValues() {
+
+        return Collections.unmodifiableList(values);
+    }
+
+    public boolean isNegated() {
+
+        return negated;
+    }
+
+    public boolean isIgnoreCase() {
+
+        return ignoreCase;
+    }
+
+    public InOperator negate() {
+
+        return new InOperator(getAttribute(), getValues(), !isNegated(), isIgnoreCase());
+    }
+
+    public boolean check(String value) {
+
+        if (isIgnoreCase())
+            return values.stream().anyMatch(x -> x.equalsIgnoreCase(value)) != isNegated();
+
+        return values.contains(value) != isNegated();
+    }
+
+    @Override
+    public boolean equals(Object that) {
+
+        if (this == that)
+            return true;
+
+        if (that == null)
+            return false;
+
+        if (this.getClass() != that.getClass())
+            return false;
+
+        InOperator other = (InOperator) that;
+
+        if (ignoreCase)
+            return getAttribute().equalsIgnoreCase(other.getAttribute()) && negated == other.negated &&
+                    lowerCase(values).equals(lowerCase(other.values));
+
+        return getAttribute().equals(other.getAttribute()) && negated == other.negated &&
+                values.equals(other.values);
+    }
+
+    @Override
+    public int hashCode() {
+
+        if (ignoreCase)
+            return Objects.hash(this.getClass().getSimpleName(), getAttribute().toLowerCase(), negated,
+                    lowerCase(values));
+
+        return Objects.hash(this.getClass().getSimpleName(), getAttribute(), negated, values);
+    }
+
+    private static List<String> lowerCase(List<String> values) {
+
+        return values.stream().map(String::toLowerCase).collect(Collectors.toList());
+    }
+}
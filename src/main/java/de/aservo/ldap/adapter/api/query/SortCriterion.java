@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2019 ASERVO Software GmbH
+ * contact@aservo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.aservo.ldap.adapter.api.query;
+
+import java.util.Objects;
+
+
+public final class SortCriterion {
+
+    private final String attribute;
+    private final boolean reversed;
+
+    public SortCriterion(String attribute, boolean reversed) {
+
+        this.attribute = attribute;
+        this.reversed = reversed;
+    }
+
+    public SortCriterion(String attribute) {
+
+        this(attribute, false);
+    }
+
+    public String getAttribute() {
+
+        return attribute;
+    }
+
+    public boolean isReversed() {
+
+        return reversed;
+    }
+
+    @Override
+    public boolean equals(Object that) {
+
+        if (this == that)
+            return true;
+
+        if (that == null)
+            return false;
+
+        if (this.getClass() != that.getClass())
+            return false;
+
+        SortCriterion other = (SortCriterion) that;
+
+        return getAttribute().equalsIgnoreCase(other.getAttribute()) && reversed == other.reversed;
+    }
+
+    @Override
+    public int hashCode() {
+
+        return Objects.hash(this.getClass().getSimpleName(), getAttribute().toLowerCase(), reversed);
+    }
+}
@@ -19,6 +19,7 @@ package de.aservo.ldap.adapter.api.query;
 
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.regex.Pattern;
 
@@ -108,6 +109,21 @@ public final class WildcardOperator
         return pattern;
     }
 
+    public String getInitialSegment() {
+
+        return initialSegment;
+    }
+
+    public String getFinalSegment() {
+
+        return finalSegment;
+    }
+
+    public List<String> getMiddleSegments() {
+
+        return Collections.unmodifiableList(middleSegments);
+    }
+
     public WildcardOperator negate() {
 
         return new WildcardOperator(getAttribute(), pattern, initialSegment, finalSegment, middleSegments,
@@ -19,6 +19,7 @@ package de.aservo.ldap.adapter.backend;
 
 import de.aservo.ldap.adapter.ServerConfiguration;
 import de.aservo.ldap.adapter.api.cursor.MappableCursor;
+import de.aservo.ldap.adapter.api.database.BatchQueryDef;
 import de.aservo.ldap.adapter.api.database.CloseableTransaction;
 import de.aservo.ldap.adapter.api.database.QueryDefFactory;
 import de.aservo.ldap.adapter.api.database.Row;
@@ -27,15 +28,23 @@ import de.aservo.ldap.adapter.api.database.result.IgnoredResult;
 import de.aservo.ldap.adapter.api.database.result.IndexedSeqResult;
 import de.aservo.ldap.adapter.api.database.result.SingleOptResult;
 import de.aservo.ldap.adapter.api.database.result.SingleResult;
+import de.aservo.ldap.adapter.api.database.result.UpdateCountResult;
 import de.aservo.ldap.adapter.api.directory.NestedDirectoryBackend;
 import de.aservo.ldap.adapter.api.directory.exception.EntityNotFoundException;
+import de.aservo.ldap.adapter.api.entity.ColumnNames;
 import de.aservo.ldap.adapter.api.entity.EntityType;
 import de.aservo.ldap.adapter.api.entity.GroupEntity;
 import de.aservo.ldap.adapter.api.entity.MembershipEntity;
 import de.aservo.ldap.adapter.api.entity.UserEntity;
+import de.aservo.ldap.adapter.api.query.BooleanValue;
 import de.aservo.ldap.adapter.api.query.QueryExpression;
+import de.aservo.ldap.adapter.api.query.SortCriterion;
+import de.aservo.ldap.adapter.sql.impl.ConnectionPool;
 import de.aservo.ldap.adapter.sql.impl.DatabaseService;
 import de.aservo.ldap.adapter.sql.impl.QueryGenerator;
+import de.aservo.ldap.adapter.sql.impl.QueryPlanCache;
+import de.aservo.ldap.adapter.sql.impl.ResultBuffer;
+import de.aservo.ldap.adapter.sql.impl.TrigramIndex;
 import org.apache.directory.api.ldap.model.schema.SchemaManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,6 +54,7 @@ import java.sql.Connection;
 import java.util.*;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -90,10 +100,42 @@ public class CachedWithPersistenceDirectoryBackend
      * The constant CONFIG_DB_MAX_OPEN_STMT.
      */
     public static final String CONFIG_DB_MAX_OPEN_STMT = "database.jdbc.connection.max-open-prepared-statements";
+    /**
+     * The constant CONFIG_DB_POOL_STMT.
+     */
+    public static final String CONFIG_DB_POOL_STMT = "database.jdbc.connection.pool-prepared-statements";
     /**
      * The constant CONFIG_DB_ISO_LEVEL.
      */
     public static final String CONFIG_DB_ISO_LEVEL = "database.jdbc.connection.isolation-level";
+    /**
+     * The constant CONFIG_DB_READ_URL.
+     */
+    public static final String CONFIG_DB_READ_URL = "database.jdbc.read-connection.url";
+    /**
+     * The constant CONFIG_DB_READ_USER.
+     */
+    public static final String CONFIG_DB_READ_USER = "database.jdbc.read-connection.user";
+    /**
+     * The constant CONFIG_DB_READ_PW.
+     */
+    public static final String CONFIG_DB_READ_PW = "database.jdbc.read-connection.password";
+    /**
+     * The constant CONFIG_DB_READ_MIN_IDLE.
+     */
+    public static final String CONFIG_DB_READ_MIN_IDLE = "database.jdbc.read-connection.min-idle";
+    /**
+     * The constant CONFIG_DB_READ_MAX_IDLE.
+     */
+    public static final String CONFIG_DB_READ_MAX_IDLE = "database.jdbc.read-connection.max-idle";
+    /**
+     * The constant CONFIG_DB_READ_MAX_TOTAL.
+     */
+    public static final String CONFIG_DB_READ_MAX_TOTAL = "database.jdbc.read-connection.max-total";
+    /**
+     * The constant CONFIG_DB_READ_ISO_LEVEL.
+     */
+    public static final String CONFIG_DB_READ_ISO_LEVEL = "database.jdbc.read-connection.isolation-level";
     /**
      * The constant CONFIG_TRANSACTION_TIMEOUT.
      */
@@ -118,18 +160,63 @@ public class CachedWithPersistenceDirectoryBackend
      * The constant CONFIG_ACQUIREDBLOCK_RECHECK_TIME.
      */
     public static final String CONFIG_ACQUIREDBLOCK_RECHECK_TIME = "persistence.acquiredblock-recheck-time";
+    /**
+     * The constant CONFIG_QUERY_PLAN_CACHE_SIZE.
+     */
+    public static final String CONFIG_QUERY_PLAN_CACHE_SIZE = "persistence.query-plan-cache-size";
+    /**
+     * The constant CONFIG_BATCH_SIZE.
+     */
+    public static final String CONFIG_BATCH_SIZE = "persistence.batch-size";
+    /**
+     * The constant CONFIG_TRIGRAM_INDEX.
+     */
+    public static final String CONFIG_TRIGRAM_INDEX = "persistence.trigram-index";
+    /**
+     * The constant CONFIG_TRIGRAM_INDEX_DELAY.
+     */
+    public static final String CONFIG_TRIGRAM_INDEX_DELAY = "persistence.trigram-index-delay";
+    /**
+     * The constant CONFIG_RESULT_STRATEGY.
+     */
+    public static final String CONFIG_RESULT_STRATEGY = "persistence.result-strategy";
+    /**
+     * The constant CONFIG_RESULT_MEMORY_ROWS.
+     */
+    public static final String CONFIG_RESULT_MEMORY_ROWS = "persistence.result-memory-rows";
+    /**
+     * The constant CONFIG_RESULT_SPOOL_ROWS.
+     */
+    public static final String CONFIG_RESULT_SPOOL_ROWS = "persistence.result-spool-rows";
+    /**
+     * The constant CONFIG_SEARCH_FETCH_SIZE.
+     */
+    public static final String CONFIG_SEARCH_FETCH_SIZE = "persistence.search-fetch-size";
+    /**
+     * The constant CONFIG_SYNC_FETCH_SIZE.
+     */
+    public static final String CONFIG_SYNC_FETCH_SIZE = "persistence.sync-fetch-size";
 
     private final Logger logger = LoggerFactory.getLogger(CachedWithPersistenceDirectoryBackend.class);
     private final Map<Long, QueryDefFactory> queryDefFactories = Collections.synchronizedMap(new HashMap<>());
     private final Map<String, CloseableTransactionWrapper> closeableTransactions = Collections.synchronizedMap(new HashMap<>());
+    private final Map<Long, Set<String>> sessionTransactionIds = Collections.synchronizedMap(new HashMap<>());
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
     private final DatabaseService dbService;
     private final int transactionTimeout;
     private final boolean applyNativeSql;
-    private final boolean useMaterializedViews;
     private final boolean activeUsersOnly;
     private final int acquireDbLockWaitTime;
     private final int acquireDbLockRecheckTime;
+    private final QueryPlanCache queryPlanCache;
+    private final ResultBuffer resultBuffer;
+    private final int searchFetchSize;
+    private final int syncFetchSize;
+    private final boolean useTrigramIndex;
+    private final int trigramIndexDelay;
+    private final TrigramIndex.Holder trigramIndexHolder = new TrigramIndex.Holder();
+    private final Object trigramIndexLock = new Object();
+    private ScheduledFuture<?> trigramIndexRebuild;
 
     /**
      * Instantiates a new directory backend.
@@ -152,6 +239,7 @@ public class CachedWithPersistenceDirectoryBackend
         String maxTotalValue = properties.getProperty(CONFIG_DB_MAX_TOTAL);
         String maxOpenPreparedStatementsValue = properties.getProperty(CONFIG_DB_MAX_OPEN_STMT);
         String isolationLevelValue = properties.getProperty(CONFIG_DB_ISO_LEVEL);
+        boolean poolPreparedStatements = Boolean.parseBoolean(properties.getProperty(CONFIG_DB_POOL_STMT, "true"));
         String transactionTimeoutValue = properties.getProperty(CONFIG_TRANSACTION_TIMEOUT);
 
         if (transactionTimeoutValue == null)
@@ -160,10 +248,34 @@ public class CachedWithPersistenceDirectoryBackend
         transactionTimeout = Integer.parseInt(transactionTimeoutValue);
 
         applyNativeSql = Boolean.parseBoolean(properties.getProperty(CONFIG_APPLY_NATIVE_SQL, "false"));
-        useMaterializedViews = Boolean.parseBoolean(properties.getProperty(CONFIG_USE_MATERIALIZED_VIEWS, "false"));
         activeUsersOnly = Boolean.parseBoolean(properties.getProperty(CONFIG_PASS_ACTIVE_USERS_ONLY, "true"));
         acquireDbLockWaitTime = Integer.parseInt(properties.getProperty(CONFIG_ACQUIREDBLOCK_WAIT_TIME, "3"));
         acquireDbLockRecheckTime = Integer.parseInt(properties.getProperty(CONFIG_ACQUIREDBLOCK_RECHECK_TIME, "1"));
+        queryPlanCache =
+                new QueryPlanCache(Integer.parseInt(properties.getProperty(CONFIG_QUERY_PLAN_CACHE_SIZE, "500")));
+        int batchSize = Integer.parseInt(properties.getProperty(CONFIG_BATCH_SIZE, "1000"));
+        useTrigramIndex = Boolean.parseBoolean(properties.getProperty(CONFIG_TRIGRAM_INDEX, "false"));
+        trigramIndexDelay = Integer.parseInt(properties.getProperty(CONFIG_TRIGRAM_INDEX_DELAY, "5"));
+        resultBuffer = new ResultBuffer(
+                ResultBuffer.Strategy.fromString(properties.getProperty(CONFIG_RESULT_STRATEGY, "stream")),
+                Integer.parseInt(properties.getProperty(CONFIG_RESULT_MEMORY_ROWS, "1000")),
+                Integer.parseInt(properties.getProperty(CONFIG_RESULT_SPOOL_ROWS, "50000")));
+
+        searchFetchSize = Integer.parseInt(properties.getProperty(CONFIG_SEARCH_FETCH_SIZE, "500"));
+        syncFetchSize = Integer.parseInt(properties.getProperty(CONFIG_SYNC_FETCH_SIZE, "1000"));
+
+        if (batchSize < 1)
+            throw new IllegalArgumentException("Expect a batch size greater than zero.");
+
+        if (searchFetchSize < 0 || syncFetchSize < 0)
+            throw new IllegalArgumentException("Expect fetch sizes not less than zero.");
+
+        if (trigramIndexDelay < 0)
+            throw new IllegalArgumentException("Expect a trigram index delay not less than zero.");
+
+        if (Boolean.parseBoolean(properties.getProperty(CONFIG_USE_MATERIALIZED_VIEWS, "false")))
+            logger.warn("The option {} is obsolete; transitive memberships are always kept in closure tables.",
+                    CONFIG_USE_MATERIALIZED_VIEWS);
 
         if (driver == null)
             throw new IllegalArgumentException("Missing value for " + CONFIG_DB_DRIVER);
@@ -197,26 +309,44 @@ public class CachedWithPersistenceDirectoryBackend
         int maxTotal = Integer.parseInt(maxTotalValue);
         int maxOpenPreparedStatements = Integer.parseInt(maxOpenPreparedStatementsValue);
 
-        if (minIdle < 1 || maxIdle < 1 || maxTotal < 1 || maxOpenPreparedStatements < 1)
-            throw new IllegalArgumentException("Expect connection pool limits greater than one.");
-
-        int isolationLevel;
-
-        if (isolationLevelValue.equalsIgnoreCase("NONE"))
-            isolationLevel = Connection.TRANSACTION_NONE;
-        else if (isolationLevelValue.equalsIgnoreCase("READ_UNCOMMITTED"))
-            isolationLevel = Connection.TRANSACTION_READ_UNCOMMITTED;
-        else if (isolationLevelValue.equalsIgnoreCase("READ_COMMITTED"))
-            isolationLevel = Connection.TRANSACTION_READ_COMMITTED;
-        else if (isolationLevelValue.equalsIgnoreCase("REPEATABLE_READ"))
-            isolationLevel = Connection.TRANSACTION_REPEATABLE_READ;
-        else if (isolationLevelValue.equalsIgnoreCase("SERIALIZABLE"))
-            isolationLevel = Connection.TRANSACTION_SERIALIZABLE;
+        // searches get their own pool, optionally on a read replica, to not wait for synchronization
+        String readUrl = properties.getProperty(CONFIG_DB_READ_URL, url);
+        String readUser = properties.getProperty(CONFIG_DB_READ_USER, user);
+        String readPassword = properties.getProperty(CONFIG_DB_READ_PW, password);
+        int readMinIdle = Integer.parseInt(properties.getProperty(CONFIG_DB_READ_MIN_IDLE, minIdleValue));
+        int readMaxIdle = Integer.parseInt(properties.getProperty(CONFIG_DB_READ_MAX_IDLE, maxIdleValue));
+        int readMaxTotal = Integer.parseInt(properties.getProperty(CONFIG_DB_READ_MAX_TOTAL, maxTotalValue));
+
+        if (minIdle < 1 || maxIdle < 1 || maxTotal < 1 || maxOpenPreparedStatements < 1 ||
+                readMinIdle < 1 || readMaxIdle < 1 || readMaxTotal < 1)
+            throw new IllegalArgumentException("Expect connection pool limits greater than zero.");
+
+        int isolationLevel = parseIsolationLevel(isolationLevelValue);
+        int readIsolationLevel =
+                parseIsolationLevel(properties.getProperty(CONFIG_DB_READ_ISO_LEVEL, isolationLevelValue));
+
+        ConnectionPool writePool = new ConnectionPool("write", driver, url, user, password, minIdle, maxIdle,
+                maxTotal, poolPreparedStatements, maxOpenPreparedStatements, isolationLevel);
+        ConnectionPool readPool = new ConnectionPool("read", driver, readUrl, readUser, readPassword, readMinIdle,
+                readMaxIdle, readMaxTotal, poolPreparedStatements, maxOpenPreparedStatements, readIsolationLevel);
+
+        dbService = new DatabaseService(logger, writePool, readPool, applyNativeSql, batchSize);
+    }
+
+    private static int parseIsolationLevel(String value) {
+
+        if (value.equalsIgnoreCase("NONE"))
+            return Connection.TRANSACTION_NONE;
+        else if (value.equalsIgnoreCase("READ_UNCOMMITTED"))
+            return Connection.TRANSACTION_READ_UNCOMMITTED;
+        else if (value.equalsIgnoreCase("READ_COMMITTED"))
+            return Connection.TRANSACTION_READ_COMMITTED;
+        else if (value.equalsIgnoreCase("REPEATABLE_READ"))
+            return Connection.TRANSACTION_REPEATABLE_READ;
+        else if (value.equalsIgnoreCase("SERIALIZABLE"))
+            return Connection.TRANSACTION_SERIALIZABLE;
         else
             throw new IllegalArgumentException("Expect valid isolation level.");
-
-        dbService = new DatabaseService(logger, driver, url, user, password, minIdle, maxIdle, maxTotal,
-                maxOpenPreparedStatements, isolationLevel, applyNativeSql);
     }
 
     @Override
@@ -225,11 +355,17 @@ public class CachedWithPersistenceDirectoryBackend
         super.startup();
         dbService.startup();
         scheduler.scheduleAtFixedRate(this::clearCloseableTransaction, 3, 4, TimeUnit.SECONDS);
+
+        if (useTrigramIndex)
+            scheduleTrigramIndexRebuild(0);
     }
 
     @Override
     public void shutdown() {
 
+        logger.info("Query plan cache statistics: hits={} misses={} size={}",
+                queryPlanCache.getHitCount(), queryPlanCache.getMissCount(), queryPlanCache.size());
+
         dbService.shutdown();
         super.shutdown();
     }
@@ -253,29 +389,23 @@ public class CachedWithPersistenceDirectoryBackend
     @Override
     public <T> T withWriteAccess(Supplier<T> block) {
 
-        return processTransaction(false, () -> {
-
-            T result = block.get();
+        if (!useTrigramIndex)
+            return processTransaction(false, block);
 
-            if (useMaterializedViews) {
+        // the trigram index is not used while it might be outdated
+        trigramIndexHolder.beginWrite();
 
-                QueryDefFactory factory = getCurrentQueryDefFactory();
-
-                logger.debug("Starting materialized views refresh.");
+        try {
 
-                factory
-                        .queryById("refresh_materialized_view_for_transitive_group_memberships")
-                        .execute(IgnoredResult.class);
+            return processTransaction(false, block);
 
-                factory
-                        .queryById("refresh_materialized_view_for_transitive_user_memberships")
-                        .execute(IgnoredResult.class);
+        } finally {
 
-                logger.debug("Finished materialized views refresh.");
-            }
+            trigramIndexHolder.endWrite();
 
-            return result;
-        });
+            // a series of write transactions during synchronization is followed by a single rebuild
+            scheduleTrigramIndexRebuild(trigramIndexDelay);
+        }
     }
 
     @Override
@@ -325,17 +455,7 @@ public class CachedWithPersistenceDirectoryBackend
 
         Set<GroupEntity> entities = directoryBackend.getAllGroups(startIndex, maxResults);
 
-        entities.forEach(entity -> {
-
-            QueryDefFactory factory = getCurrentQueryDefFactory();
-
-            factory
-                    .queryById("create_or_update_group")
-                    .on("id", entity.getId())
-                    .on("name", entity.getName())
-                    .on("description", Optional.ofNullable(entity.getDescription()))
-                    .execute(IgnoredResult.class);
-        });
+        upsertGroupEntities(entities);
 
         return entities.size();
     }
@@ -347,17 +467,7 @@ public class CachedWithPersistenceDirectoryBackend
 
         Set<GroupEntity> entities = directoryBackend.getAllGroups();
 
-        entities.forEach(entity -> {
-
-            QueryDefFactory factory = getCurrentQueryDefFactory();
-
-            factory
-                    .queryById("create_or_update_group")
-                    .on("id", entity.getId())
-                    .on("name", entity.getName())
-                    .on("description", Optional.ofNullable(entity.getDescription()))
-                    .execute(IgnoredResult.class);
-        });
+        upsertGroupEntities(entities);
 
         return entities.size();
     }
@@ -398,15 +508,24 @@ public class CachedWithPersistenceDirectoryBackend
         upsertUser(id);
 
         QueryDefFactory factory = getCurrentQueryDefFactory();
+        BatchQueryDef batch = factory.batchById("create_user_membership_if_not_exists");
+        BatchQueryDef closureBatch = factory.batchById("add_user_closure");
 
         getDirectGroupsOfUser(idOther).forEach(group -> {
 
-            factory
-                    .queryById("create_user_membership_if_not_exists")
+            batch
                     .on("parent_group_id", group.getName())
                     .on("member_user_id", id)
-                    .execute(IgnoredResult.class);
+                    .addBatch();
+
+            closureBatch
+                    .on("parent_group_id", group.getName())
+                    .on("member_user_id", id)
+                    .addBatch();
         });
+
+        batch.execute();
+        closureBatch.execute();
     }
 
     @Override
@@ -416,21 +535,7 @@ public class CachedWithPersistenceDirectoryBackend
 
         Set<UserEntity> entities = directoryBackend.getAllUsers(startIndex, maxResults);
 
-        entities.forEach(entity -> {
-
-            QueryDefFactory factory = getCurrentQueryDefFactory();
-
-            factory
-                    .queryById("create_or_update_user")
-                    .on("id", entity.getId())
-                    .on("username", entity.getUsername())
-                    .on("last_name", Optional.ofNullable(entity.getLastName()))
-                    .on("first_name", Optional.ofNullable(entity.getFirstName()))
-                    .on("display_name", Optional.ofNullable(entity.getDisplayName()))
-                    .on("email", Optional.ofNullable(entity.getEmail()))
-                    .on("active", entity.isActive())
-                    .execute(IgnoredResult.class);
-        });
+        upsertUserEntities(entities);
 
         return entities.size();
     }
@@ -442,12 +547,134 @@ public class CachedWithPersistenceDirectoryBackend
 
         Set<UserEntity> entities = directoryBackend.getAllUsers();
 
+        upsertUserEntities(entities);
+
+        return entities.size();
+    }
+
+    @Override
+    public void upsertMembership(MembershipEntity membership) {
+
+        super.upsertMembership(membership);
+
+        QueryDefFactory factory = getCurrentQueryDefFactory();
+        BatchQueryDef groupBatch = factory.batchById("create_group_membership_if_not_exists");
+        BatchQueryDef userBatch = factory.batchById("create_user_membership_if_not_exists");
+        BatchQueryDef groupClosureBatch = factory.batchById("add_group_closure");
+        BatchQueryDef userClosureOfGroupBatch = factory.batchById("add_user_closure_of_group");
+        BatchQueryDef userClosureBatch = factory.batchById("add_user_closure");
+
+        membership.getMemberGroupIds().forEach(id -> {
+
+            groupBatch
+                    .on("parent_group_id", membership.getParentGroupId())
+                    .on("member_group_id", id)
+                    .addBatch();
+
+            groupClosureBatch
+                    .on("parent_group_id", membership.getParentGroupId())
+                    .on("member_group_id", id)
+                    .addBatch();
+
+            userClosureOfGroupBatch
+                    .on("parent_group_id", membership.getParentGroupId())
+                    .on("member_group_id", id)
+                    .addBatch();
+        });
+
+        membership.getMemberUserIds().forEach(id -> {
+
+            userBatch
+                    .on("parent_group_id", membership.getParentGroupId())
+                    .on("member_user_id", id)
+                    .addBatch();
+
+            userClosureBatch
+                    .on("parent_group_id", membership.getParentGroupId())
+                    .on("member_user_id", id)
+                    .addBatch();
+        });
+
+        groupBatch.execute();
+        userBatch.execute();
+
+        // the group closure must be complete before users are propagated to the ancestors of a group
+        groupClosureBatch.execute();
+        userClosureOfGroupBatch.execute();
+        userClosureBatch.execute();
+    }
+
+    @Override
+    public void beginFullLoad() {
+
+        super.beginFullLoad();
+
+        // the live tables stay untouched until the staged entities are published
+        clearStagingTables(getCurrentQueryDefFactory());
+    }
+
+    @Override
+    public void commitFullLoad() {
+
+        super.commitFullLoad();
+
+        QueryDefFactory factory = getCurrentQueryDefFactory();
+        long start = System.currentTimeMillis();
+
+        // memberships are removed by cascading deletes
+        factory.queryById("remove_all_groups").execute(IgnoredResult.class);
+        factory.queryById("remove_all_users").execute(IgnoredResult.class);
+
+        factory.queryById("publish_staged_groups").execute(IgnoredResult.class);
+        factory.queryById("publish_staged_users").execute(IgnoredResult.class);
+        factory.queryById("publish_staged_group_memberships").execute(IgnoredResult.class);
+        factory.queryById("publish_staged_user_memberships").execute(IgnoredResult.class);
+        factory.queryById("rebuild_group_closure").execute(IgnoredResult.class);
+        factory.queryById("rebuild_user_closure").execute(IgnoredResult.class);
+
+        clearStagingTables(factory);
+
+        long end = System.currentTimeMillis();
+
+        logger.info("The staged entities of a full load were published in {} ms.", end - start == 0 ? 1 : end - start);
+    }
+
+    @Override
+    public int loadAllGroups(int startIndex, int maxResults) {
+
+        super.loadAllGroups(startIndex, maxResults);
+
+        Set<GroupEntity> entities = directoryBackend.getAllGroups(startIndex, maxResults);
+        BatchQueryDef loader =
+                getCurrentQueryDefFactory().bulkLoad("_Group_Staging", Arrays.asList("id", "name", "description"));
+
         entities.forEach(entity -> {
 
-            QueryDefFactory factory = getCurrentQueryDefFactory();
+            loader
+                    .on("id", entity.getId())
+                    .on("name", entity.getName())
+                    .on("description", Optional.ofNullable(entity.getDescription()))
+                    .addBatch();
+        });
 
-            factory
-                    .queryById("create_or_update_user")
+        loader.execute();
+
+        return entities.size();
+    }
+
+    @Override
+    public int loadAllUsers(int startIndex, int maxResults) {
+
+        super.loadAllUsers(startIndex, maxResults);
+
+        Set<UserEntity> entities = directoryBackend.getAllUsers(startIndex, maxResults);
+        BatchQueryDef loader =
+                getCurrentQueryDefFactory().bulkLoad("_User_Staging", Arrays.asList("id", "username", "last_name",
+                        "first_name", "display_name", "email", "active"));
+
+        entities.forEach(entity -> {
+
+            loader
                     .on("id", entity.getId())
                     .on("username", entity.getUsername())
                     .on("last_name", Optional.ofNullable(entity.getLastName()))
@@ -455,36 +682,48 @@ public class CachedWithPersistenceDirectoryBackend
                     .on("display_name", Optional.ofNullable(entity.getDisplayName()))
                     .on("email", Optional.ofNullable(entity.getEmail()))
                     .on("active", entity.isActive())
-                    .execute(IgnoredResult.class);
+                    .addBatch();
         });
 
+        loader.execute();
+
         return entities.size();
     }
 
     @Override
-    public void upsertMembership(MembershipEntity membership) {
+    public void loadAllMemberships(MappableCursor<MembershipEntity> memberships) {
 
-        super.upsertMembership(membership);
+        // the cursor can be consumed only once; therefore, it is not passed to the nested backend
 
         QueryDefFactory factory = getCurrentQueryDefFactory();
+        BatchQueryDef groupLoader =
+                factory.bulkLoad("_Group_Membership_Staging", Arrays.asList("parent_group_id", "member_group_id"));
+        BatchQueryDef userLoader =
+                factory.bulkLoad("_User_Membership_Staging", Arrays.asList("parent_group_id", "member_user_id"));
 
-        membership.getMemberGroupIds().forEach(id -> {
+        while (memberships.next()) {
 
-            factory
-                    .queryById("create_group_membership_if_not_exists")
-                    .on("parent_group_id", membership.getParentGroupId())
-                    .on("member_group_id", id)
-                    .execute(IgnoredResult.class);
-        });
+            MembershipEntity membership = memberships.get();
 
-        membership.getMemberUserIds().forEach(id -> {
+            membership.getMemberGroupIds().forEach(id -> {
 
-            factory
-                    .queryById("create_user_membership_if_not_exists")
-                    .on("parent_group_id", membership.getParentGroupId())
-                    .on("member_user_id", id)
-                    .execute(IgnoredResult.class);
-        });
+                groupLoader
+                        .on("parent_group_id", membership.getParentGroupId())
+                        .on("member_group_id", id)
+                        .addBatch();
+            });
+
+            membership.getMemberUserIds().forEach(id -> {
+
+                userLoader
+                        .on("parent_group_id", membership.getParentGroupId())
+                        .on("member_user_id", id)
+                        .addBatch();
+            });
+        }
+
+        groupLoader.execute();
+        userLoader.execute();
     }
 
     @Override
@@ -494,10 +733,15 @@ public class CachedWithPersistenceDirectoryBackend
 
         QueryDefFactory factory = getCurrentQueryDefFactory();
 
+        // the ancestors are collected before the closure rows of the group are removed by cascade
+        addAncestorGroupsToClosureRebuild(factory, id);
+
         factory
                 .queryById("remove_group_if_exists")
                 .on("id", id)
                 .execute(IgnoredResult.class);
+
+        rebuildClosureOfGroups(factory);
     }
 
     @Override
@@ -543,38 +787,204 @@ public class CachedWithPersistenceDirectoryBackend
         super.dropMembership(membership);
 
         QueryDefFactory factory = getCurrentQueryDefFactory();
+        BatchQueryDef groupBatch = factory.batchById("remove_group_membership_if_exists");
+        BatchQueryDef userBatch = factory.batchById("remove_user_membership_if_exists");
 
         membership.getMemberGroupIds().forEach(id -> {
 
-            factory
-                    .queryById("remove_group_membership_if_exists")
+            groupBatch
                     .on("parent_group_id", membership.getParentGroupId())
                     .on("member_group_id", id)
-                    .execute(IgnoredResult.class);
+                    .addBatch();
         });
 
         membership.getMemberUserIds().forEach(id -> {
 
-            factory
-                    .queryById("remove_user_membership_if_exists")
+            userBatch
                     .on("parent_group_id", membership.getParentGroupId())
                     .on("member_user_id", id)
-                    .execute(IgnoredResult.class);
+                    .addBatch();
         });
+
+        groupBatch.execute();
+        userBatch.execute();
+
+        // removed group memberships can shorten the paths of all ancestors; their closures are rebuilt entirely
+        if (groupBatch.getUpdateCount() > 0) {
+
+            addAncestorGroupsToClosureRebuild(factory, membership.getParentGroupId());
+            rebuildClosureOfGroups(factory);
+
+        } else {
+
+            // the statement is only prepared if the closure of the parent group is not rebuilt anyway
+            BatchQueryDef userClosureBatch = factory.batchById("remove_user_closure");
+
+            membership.getMemberUserIds().forEach(id -> {
+
+                userClosureBatch
+                        .on("parent_group_id", membership.getParentGroupId())
+                        .on("member_user_id", id)
+                        .addBatch();
+            });
+
+            userClosureBatch.execute();
+        }
+    }
+
+    private void addAncestorGroupsToClosureRebuild(QueryDefFactory factory, String id) {
+
+        factory.queryById("remove_all_groups_of_closure_rebuild").execute(IgnoredResult.class);
+        factory.queryById("add_ancestor_groups_to_closure_rebuild").on("group_id", id).execute(IgnoredResult.class);
+    }
+
+    private void rebuildClosureOfGroups(QueryDefFactory factory) {
+
+        // the closures of all other groups are unaffected and are copied for direct members
+        factory.queryById("remove_group_closure_of_rebuild").execute(IgnoredResult.class);
+        factory.queryById("init_group_closure_of_rebuild").execute(IgnoredResult.class);
+
+        int updateCount;
+
+        // each round joins the closures of rebuilt groups until no new descendants are found
+        do {
+
+            updateCount = factory
+                    .queryById("extend_group_closure_of_rebuild")
+                    .execute(UpdateCountResult.class)
+                    .getUpdateCount();
+
+        } while (updateCount > 0);
+
+        factory.queryById("remove_user_closure_of_rebuild").execute(IgnoredResult.class);
+        factory.queryById("init_user_closure_of_rebuild").execute(IgnoredResult.class);
+        factory.queryById("remove_all_groups_of_closure_rebuild").execute(IgnoredResult.class);
+    }
+
+    private void clearStagingTables(QueryDefFactory factory) {
+
+        factory.queryById("remove_all_staged_group_memberships").execute(IgnoredResult.class);
+        factory.queryById("remove_all_staged_user_memberships").execute(IgnoredResult.class);
+        factory.queryById("remove_all_staged_groups").execute(IgnoredResult.class);
+        factory.queryById("remove_all_staged_users").execute(IgnoredResult.class);
+    }
+
+    private void upsertGroupEntities(Collection<GroupEntity> entities) {
+
+        BatchQueryDef batch = getCurrentQueryDefFactory().batchById("create_or_update_group");
+
+        entities.forEach(entity -> {
+
+            batch
+                    .on("id", entity.getId())
+                    .on("name", entity.getName())
+                    .on("description", Optional.ofNullable(entity.getDescription()))
+                    .addBatch();
+        });
+
+        batch.execute();
+    }
+
+    private void upsertUserEntities(Collection<UserEntity> entities) {
+
+        BatchQueryDef batch = getCurrentQueryDefFactory().batchById("create_or_update_user");
+
+        entities.forEach(entity -> {
+
+            batch
+                    .on("id", entity.getId())
+                    .on("username", entity.getUsername())
+                    .on("last_name", Optional.ofNullable(entity.getLastName()))
+                    .on("first_name", Optional.ofNullable(entity.getFirstName()))
+                    .on("display_name", Optional.ofNullable(entity.getDisplayName()))
+                    .on("email", Optional.ofNullable(entity.getEmail()))
+                    .on("active", entity.isActive())
+                    .addBatch();
+        });
+
+        batch.execute();
     }
 
     @Override
     public MappableCursor<Row> runQueryExpression(String txId, SchemaManager schemaManager, QueryExpression expression,
-                                                  EntityType entityType) {
+                                                  EntityType entityType, Set<String> attributes) {
+
+        return runQueryExpression(txId, schemaManager, expression, entityType, attributes, Collections.emptyList(),
+                null, 0, 0);
+    }
+
+    @Override
+    public MappableCursor<Row> runQueryExpression(String txId, SchemaManager schemaManager, QueryExpression expression,
+                                                  EntityType entityType, Set<String> attributes,
+                                                  List<SortCriterion> sortCriteria, String lowerBoundId, int limit,
+                                                  int timeLimit) {
+
+        QueryGenerator generator =
+                new QueryGenerator(schemaManager, getId(), config.isFlatteningEnabled(), activeUsersOnly,
+                        applyNativeSql, queryPlanCache, trigramIndexHolder.get());
+
+        QueryExpression preparedExpression = generator.prepare(entityType, expression);
+
+        // contradicting filters are answered without a round trip to the database
+        if (preparedExpression instanceof BooleanValue && !((BooleanValue) preparedExpression).getValue())
+            return MappableCursor.fromIterable(Collections.emptyList());
+
+        CursorResult result =
+                generator.generate(entityType, getCloseableTransaction(txId).getQueryDefFactory(),
+                                preparedExpression, attributes, sortCriteria, lowerBoundId, limit)
+                        .withQueryTimeout(timeLimit)
+                        .withFetchSize(searchFetchSize)
+                        .execute(CursorResult.class);
+
+        return bufferRows(txId, result);
+    }
+
+    @Override
+    public MappableCursor<Row> runQueryById(String txId, SchemaManager schemaManager, EntityType entityType, String id,
+                                            Set<String> attributes) {
 
         QueryGenerator generator =
                 new QueryGenerator(schemaManager, getId(), config.isFlatteningEnabled(), activeUsersOnly,
-                        useMaterializedViews);
+                        applyNativeSql, queryPlanCache, trigramIndexHolder.get());
+
+        CursorResult result =
+                generator.generateById(entityType, getCloseableTransaction(txId).getQueryDefFactory(), id, attributes)
+                        .execute(CursorResult.class);
+
+        return bufferRows(txId, result);
+    }
 
-        return addCursorCleanup(txId, generator.generate(entityType, getCloseableTransaction(txId).getQueryDefFactory(),
-                        expression)
-                .execute(CursorResult.class)
-                .transform(Function.identity()));
+    @Override
+    public boolean hasEntity(String txId, EntityType entityType, String id) {
+
+        if (entityType != EntityType.GROUP && entityType != EntityType.USER)
+            throw new IllegalArgumentException("Expect supported entity type.");
+
+        QueryDefFactory factory = getCloseableTransaction(txId).getQueryDefFactory();
+
+        // the probe reads its single row at once; unlike a search it leaves no cursor behind to release the transaction
+        try {
+
+            if (entityType == EntityType.GROUP)
+                return factory
+                        .queryById("exists_group")
+                        .on("id", id)
+                        .execute(SingleOptResult.class)
+                        .transform(Function.identity())
+                        .isPresent();
+
+            return factory
+                    .queryById("exists_user")
+                    .on("id", id)
+                    .on("active_only", activeUsersOnly)
+                    .execute(SingleOptResult.class)
+                    .transform(Function.identity())
+                    .isPresent();
+
+        } finally {
+
+            releaseCloseableTransaction(txId);
+        }
     }
 
     @Override
@@ -613,6 +1023,7 @@ public class CachedWithPersistenceDirectoryBackend
 
         return new HashSet<>(factory
                 .queryById("find_all_groups")
+                .withFetchSize(syncFetchSize)
                 .execute(IndexedSeqResult.class)
                 .transform(this::mapGroupEntity));
     }
@@ -625,6 +1036,7 @@ public class CachedWithPersistenceDirectoryBackend
         return new HashSet<>(factory
                 .queryById("find_all_users")
                 .on("active_only", activeUsersOnly)
+                .withFetchSize(syncFetchSize)
                 .execute(IndexedSeqResult.class)
                 .transform(this::mapUserEntity));
     }
@@ -689,24 +1101,12 @@ public class CachedWithPersistenceDirectoryBackend
 
         QueryDefFactory factory = getCurrentQueryDefFactory();
 
-        if (useMaterializedViews) {
-
-            return new HashSet<>(factory
-                    .queryById("find_transitive_users_of_group")
-                    .on("group_id", id)
-                    .on("active_only", activeUsersOnly)
-                    .execute(IndexedSeqResult.class)
-                    .transform(this::mapUserEntity));
-
-        } else {
-
-            return new HashSet<>(factory
-                    .queryById("find_transitive_users_of_group_non_materialized")
-                    .on("group_id", id)
-                    .on("active_only", activeUsersOnly)
-                    .execute(IndexedSeqResult.class)
-                    .transform(this::mapUserEntity));
-        }
+        return new HashSet<>(factory
+                .queryById("find_transitive_users_of_group")
+                .on("group_id", id)
+                .on("active_only", activeUsersOnly)
+                .execute(IndexedSeqResult.class)
+                .transform(this::mapUserEntity));
     }
 
     @Override
@@ -715,24 +1115,12 @@ public class CachedWithPersistenceDirectoryBackend
 
         QueryDefFactory factory = getCurrentQueryDefFactory();
 
-        if (useMaterializedViews) {
-
-            return new HashSet<>(factory
-                    .queryById("find_transitive_groups_of_user")
-                    .on("user_id", id)
-                    .on("active_only", activeUsersOnly)
-                    .execute(IndexedSeqResult.class)
-                    .transform(this::mapGroupEntity));
-
-        } else {
-
-            return new HashSet<>(factory
-                    .queryById("find_transitive_groups_of_user_non_materialized")
-                    .on("user_id", id)
-                    .on("active_only", activeUsersOnly)
-                    .execute(IndexedSeqResult.class)
-                    .transform(this::mapGroupEntity));
-        }
+        return new HashSet<>(factory
+                .queryById("find_transitive_groups_of_user")
+                .on("user_id", id)
+                .on("active_only", activeUsersOnly)
+                .execute(IndexedSeqResult.class)
+                .transform(this::mapGroupEntity));
     }
 
     @Override
@@ -741,22 +1129,11 @@ public class CachedWithPersistenceDirectoryBackend
 
         QueryDefFactory factory = getCurrentQueryDefFactory();
 
-        if (useMaterializedViews) {
-
-            return new HashSet<>(factory
-                    .queryById("find_transitive_child_groups_of_group")
-                    .on("group_id", id)
-                    .execute(IndexedSeqResult.class)
-                    .transform(this::mapGroupEntity));
-
-        } else {
-
-            return new HashSet<>(factory
-                    .queryById("find_transitive_child_groups_of_group_non_materialized")
-                    .on("group_id", id)
-                    .execute(IndexedSeqResult.class)
-                    .transform(this::mapGroupEntity));
-        }
+        return new HashSet<>(factory
+                .queryById("find_transitive_child_groups_of_group")
+                .on("group_id", id)
+                .execute(IndexedSeqResult.class)
+                .transform(this::mapGroupEntity));
     }
 
     @Override
@@ -765,22 +1142,11 @@ public class CachedWithPersistenceDirectoryBackend
 
         QueryDefFactory factory = getCurrentQueryDefFactory();
 
-        if (useMaterializedViews) {
-
-            return new HashSet<>(factory
-                    .queryById("find_transitive_parent_groups_of_group")
-                    .on("group_id", id)
-                    .execute(IndexedSeqResult.class)
-                    .transform(this::mapGroupEntity));
-
-        } else {
-
-            return new HashSet<>(factory
-                    .queryById("find_transitive_parent_groups_of_group_non_materialized")
-                    .on("group_id", id)
-                    .execute(IndexedSeqResult.class)
-                    .transform(this::mapGroupEntity));
-        }
+        return new HashSet<>(factory
+                .queryById("find_transitive_parent_groups_of_group")
+                .on("group_id", id)
+                .execute(IndexedSeqResult.class)
+                .transform(this::mapGroupEntity));
     }
 
     @Override
@@ -824,7 +1190,8 @@ public class CachedWithPersistenceDirectoryBackend
 
     private <T> T processTransaction(boolean readOnly, Supplier<T> block) {
 
-        return dbService.withTransaction(factory -> {
+        // read access borrows from the read pool and only if the session queries outside of closeable transactions
+        return dbService.withTransaction(readOnly, factory -> {
 
             long id = Thread.currentThread().getId();
             T result;
@@ -832,6 +1199,7 @@ public class CachedWithPersistenceDirectoryBackend
             logger.debug("[Thread ID {}] - Bind query definition factory to thread.", id);
 
             queryDefFactories.put(id, factory);
+            sessionTransactionIds.put(id, new HashSet<>());
 
             try {
 
@@ -843,12 +1211,114 @@ public class CachedWithPersistenceDirectoryBackend
             } finally {
 
                 queryDefFactories.remove(id);
+
+                // closeable transactions outlive the session as long as their cursors are not closed
+                sessionTransactionIds.remove(id).forEach(this::releaseCloseableTransaction);
             }
 
             return result;
         });
     }
 
+    /**
+     * Gets the database service.
+     *
+     * @return the database service
+     */
+    public DatabaseService getDatabaseService() {
+
+        return dbService;
+    }
+
+    /**
+     * Gets the cache of compiled query plans.
+     *
+     * @return the query plan cache
+     */
+    public QueryPlanCache getQueryPlanCache() {
+
+        return queryPlanCache;
+    }
+
+    private void scheduleTrigramIndexRebuild(int delay) {
+
+        synchronized (trigramIndexLock) {
+
+            if (trigramIndexRebuild != null)
+                trigramIndexRebuild.cancel(false);
+
+            trigramIndexRebuild = scheduler.schedule(this::rebuildTrigramIndex, delay, TimeUnit.SECONDS);
+        }
+    }
+
+    private void rebuildTrigramIndex() {
+
+        long generation = trigramIndexHolder.startRebuild();
+
+        if (generation < 0)
+            return;
+
+        try {
+
+            long start = System.currentTimeMillis();
+            TrigramIndex.Builder builder = new TrigramIndex.Builder();
+
+            dbService.withTransaction(true, factory -> {
+
+                MappableCursor<Row> groups =
+                        factory
+                                .queryById("find_all_groups")
+                                .withFetchSize(syncFetchSize)
+                                .execute(CursorResult.class)
+                                .transform(Function.identity());
+
+                while (groups.next()) {
+
+                    Row row = groups.get();
+                    Map<String, String> values = new HashMap<>();
+
+                    values.put(ColumnNames.NAME, row.apply(ColumnNames.NAME, String.class));
+
+                    builder.add(EntityType.GROUP, row.apply(ColumnNames.ID, String.class), values);
+                }
+
+                MappableCursor<Row> users =
+                        factory
+                                .queryById("find_all_users")
+                                .on("active_only", false)
+                                .withFetchSize(syncFetchSize)
+                                .execute(CursorResult.class)
+                                .transform(Function.identity());
+
+                while (users.next()) {
+
+                    Row row = users.get();
+                    Map<String, String> values = new HashMap<>();
+
+                    values.put(ColumnNames.USERNAME, row.apply(ColumnNames.USERNAME, String.class));
+                    values.put(ColumnNames.LAST_NAME, row.apply(ColumnNames.LAST_NAME, String.class));
+                    values.put(ColumnNames.FIRST_NAME, row.apply(ColumnNames.FIRST_NAME, String.class));
+                    values.put(ColumnNames.DISPLAY_NAME, row.apply(ColumnNames.DISPLAY_NAME, String.class));
+                    values.put(ColumnNames.EMAIL, row.apply(ColumnNames.EMAIL, String.class));
+
+                    builder.add(EntityType.USER, row.apply(ColumnNames.ID, String.class), values);
+                }
+
+                return null;
+            });
+
+            // the index is dropped if the directory was changed during the rebuild
+            if (!trigramIndexHolder.publish(generation, builder.build()))
+                return;
+
+            logger.info("The trigram index was rebuilt in {} ms.", System.currentTimeMillis() - start);
+
+        } catch (Exception e) {
+
+            logger.error("Could not rebuild the trigram index.", e);
+        }
+    }
+
     private void clearCloseableTransaction() {
 
         (new HashMap<>(closeableTransactions)).forEach((txId, transaction) -> {
@@ -878,18 +1348,53 @@ public class CachedWithPersistenceDirectoryBackend
         else
             closeableTransactions.put(txId, new CloseableTransactionWrapper(dbService.getCloseableTransaction()));
 
+        Set<String> txIds = sessionTransactionIds.get(Thread.currentThread().getId());
+
+        // the session keeps the transaction open for all of its queries even if a cursor is exhausted before
+        if (txIds != null && txIds.add(txId))
+            closeableTransactions.get(txId).counter.incrementAndGet();
+
         return closeableTransactions.get(txId);
     }
 
+    private void releaseCloseableTransaction(String txId) {
+
+        CloseableTransactionWrapper transaction = closeableTransactions.get(txId);
+
+        // the transaction might have been terminated after timeout
+        if (transaction == null || transaction.counter.decrementAndGet() > 0)
+            return;
+
+        logger.debug("[Thread ID {}] - Close async transaction.", Thread.currentThread().getId());
+
+        try {
+
+            transaction.closeUnchecked();
+
+        } finally {
+
+            closeableTransactions.remove(txId);
+        }
+    }
+
     private QueryDefFactory getCurrentQueryDefFactory() {
 
         return queryDefFactories.get(Thread.currentThread().getId());
     }
 
+    private MappableCursor<Row> bufferRows(String txId, CursorResult result) {
+
+        // the transaction is closed with the streamed rows of the last query of a session
+        // read ahead rows keep a slow client from holding it
+        return resultBuffer.buffer(result.getColumns(), addCursorCleanup(txId, result.transform(Function.identity())));
+    }
+
     private MappableCursor<Row> addCursorCleanup(String txId, MappableCursor<Row> rows) {
 
         return new MappableCursor<Row>() {
 
+            boolean closed = false;
+
             @Override
             public boolean next() {
 
@@ -903,26 +1408,22 @@ public class CachedWithPersistenceDirectoryBackend
             }
 
             @Override
-            public void close()
+            public synchronized void close()
                     throws IOException {
 
-                CloseableTransactionWrapper transaction = closeableTransactions.get(txId);
-                int count = transaction.counter.decrementAndGet();
-
-                rows.close();
+                // an abandoned search is closed by ApacheDS and afterwards by the thread performing the search
+                if (closed)
+                    return;
 
-                if (count == 0) {
+                closed = true;
 
-                    logger.debug("[Thread ID {}] - Close async transaction.", Thread.currentThread().getId());
-
-                    try {
+                try {
 
-                        transaction.close();
+                    rows.close();
 
-                    } finally {
+                } finally {
 
-                        closeableTransactions.remove(txId);
-                    }
+                    releaseCloseableTransaction(txId);
                 }
             }
         };
@@ -43,11 +43,13 @@ import de.aservo.ldap.adapter.api.query.AndLogicExpression;
 import de.aservo.ldap.adapter.api.query.EqualOperator;
 import de.aservo.ldap.adapter.api.query.OrLogicExpression;
 import de.aservo.ldap.adapter.api.query.QueryExpression;
+import de.aservo.ldap.adapter.api.query.SortCriterion;
 import org.apache.directory.api.ldap.model.constants.SchemaConstants;
 import org.apache.directory.api.ldap.model.schema.SchemaManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -112,7 +114,26 @@ public class CrowdDirectoryBackend
     }
 
     public MappableCursor<Row> runQueryExpression(String txId, SchemaManager schemaManager, QueryExpression expression,
-                                                  EntityType entityType) {
+                                                  EntityType entityType, Set<String> attributes) {
+
+        throw new UnsupportedOperationException("Query generation not supported for Crowd directory backend.");
+    }
+
+    public MappableCursor<Row> runQueryExpression(String txId, SchemaManager schemaManager, QueryExpression expression,
+                                                  EntityType entityType, Set<String> attributes,
+                                                  List<SortCriterion> sortCriteria, String lowerBoundId, int limit,
+                                                  int timeLimit) {
+
+        throw new UnsupportedOperationException("Query generation not supported for Crowd directory backend.");
+    }
+
+    public MappableCursor<Row> runQueryById(String txId, SchemaManager schemaManager, EntityType entityType, String id,
+                                            Set<String> attributes) {
+
+        throw new UnsupportedOperationException("Query generation not supported for Crowd directory backend.");
+    }
+
+    public boolean hasEntity(String txId, EntityType entityType, String id) {
 
         throw new UnsupportedOperationException("Query generation not supported for Crowd directory backend.");
     }
@@ -33,6 +33,7 @@ import de.aservo.ldap.adapter.api.entity.GroupEntity;
 import de.aservo.ldap.adapter.api.entity.MembershipEntity;
 import de.aservo.ldap.adapter.api.entity.UserEntity;
 import de.aservo.ldap.adapter.api.query.QueryExpression;
+import de.aservo.ldap.adapter.api.query.SortCriterion;
 import org.apache.directory.api.ldap.model.schema.SchemaManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,6 +44,7 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -169,7 +171,26 @@ public class JsonDirectoryBackend
     }
 
     public MappableCursor<Row> runQueryExpression(String txId, SchemaManager schemaManager, QueryExpression expression,
-                                                  EntityType entityType) {
+                                                  EntityType entityType, Set<String> attributes) {
+
+        throw new UnsupportedOperationException("Query generation not supported for JSON directory backend.");
+    }
+
+    public MappableCursor<Row> runQueryExpression(String txId, SchemaManager schemaManager, QueryExpression expression,
+                                                  EntityType entityType, Set<String> attributes,
+                                                  List<SortCriterion> sortCriteria, String lowerBoundId, int limit,
+                                                  int timeLimit) {
+
+        throw new UnsupportedOperationException("Query generation not supported for JSON directory backend.");
+    }
+
+    public MappableCursor<Row> runQueryById(String txId, SchemaManager schemaManager, EntityType entityType, String id,
+                                            Set<String> attributes) {
+
+        throw new UnsupportedOperationException("Query generation not supported for JSON directory backend.");
+    }
+
+    public boolean hasEntity(String txId, EntityType entityType, String id) {
 
         throw new UnsupportedOperationException("Query generation not supported for JSON directory backend.");
     }
@@ -379,8 +379,7 @@ public class MirroredCrowdDirectoryBackend
 
             auditLogProcessor.updateConcurrent(() -> {
 
-                directoryBackend.dropAllGroups();
-                directoryBackend.dropAllUsers();
+                directoryBackend.beginFullLoad();
 
                 MappableCursor<MembershipEntity> memberships = directoryBackend.getMemberships();
                 int groupPage = 0;
@@ -392,7 +391,7 @@ public class MirroredCrowdDirectoryBackend
 
                     if (groupPage >= 0) {
 
-                        int groups = directoryBackend.upsertAllGroups(groupPage++ * pageSize, pageSize);
+                        int groups = directoryBackend.loadAllGroups(groupPage++ * pageSize, pageSize);
                         groupCount += groups;
                         if ( groups < pageSize)
                             groupPage = -1;
@@ -400,7 +399,7 @@ public class MirroredCrowdDirectoryBackend
 
                     if (userPage >= 0) {
 
-                        int users = directoryBackend.upsertAllUsers(userPage++ * pageSize, pageSize); 
+                        int users = directoryBackend.loadAllUsers(userPage++ * pageSize, pageSize);
                         userCount += users;
                         if (users < pageSize)
                             userPage = -1;
@@ -408,8 +407,8 @@ public class MirroredCrowdDirectoryBackend
                 }
                 logger.info("FullUpdate: received {} users and {} groups", userCount, groupCount);
 
-                while (memberships.next())
-                    directoryBackend.upsertMembership(memberships.get());
+                directoryBackend.loadAllMemberships(memberships);
+                directoryBackend.commitFullLoad();
 
                 return false;
             });
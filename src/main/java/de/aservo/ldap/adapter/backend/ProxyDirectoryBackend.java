@@ -27,8 +27,10 @@ import de.aservo.ldap.adapter.api.entity.GroupEntity;
 import de.aservo.ldap.adapter.api.entity.MembershipEntity;
 import de.aservo.ldap.adapter.api.entity.UserEntity;
 import de.aservo.ldap.adapter.api.query.QueryExpression;
+import de.aservo.ldap.adapter.api.query.SortCriterion;
 import org.apache.directory.api.ldap.model.schema.SchemaManager;
 
+import java.util.List;
 import java.util.Set;
 import java.util.function.Supplier;
 
@@ -141,6 +143,36 @@ public abstract class ProxyDirectoryBackend
         directoryBackend.upsertMembership(membership);
     }
 
+    @Override
+    public void beginFullLoad() {
+
+        directoryBackend.beginFullLoad();
+    }
+
+    @Override
+    public void commitFullLoad() {
+
+        directoryBackend.commitFullLoad();
+    }
+
+    @Override
+    public int loadAllGroups(int startIndex, int maxResults) {
+
+        return directoryBackend.loadAllGroups(startIndex, maxResults);
+    }
+
+    @Override
+    public int loadAllUsers(int startIndex, int maxResults) {
+
+        return directoryBackend.loadAllUsers(startIndex, maxResults);
+    }
+
+    @Override
+    public void loadAllMemberships(MappableCursor<MembershipEntity> memberships) {
+
+        directoryBackend.loadAllMemberships(memberships);
+    }
+
     @Override
     public void dropGroup(String id) {
 
@@ -173,9 +205,32 @@ public abstract class ProxyDirectoryBackend
 
     @Override
     public MappableCursor<Row> runQueryExpression(String txId, SchemaManager schemaManager, QueryExpression expression,
-                                                  EntityType entityType) {
+                                                  EntityType entityType, Set<String> attributes) {
+
+        return directoryBackend.runQueryExpression(txId, schemaManager, expression, entityType, attributes);
+    }
+
+    @Override
+    public MappableCursor<Row> runQueryExpression(String txId, SchemaManager schemaManager, QueryExpression expression,
+                                                  EntityType entityType, Set<String> attributes,
+                                                  List<SortCriterion> sortCriteria, String lowerBoundId, int limit,
+                                                  int timeLimit) {
+
+        return directoryBackend.runQueryExpression(txId, schemaManager, expression, entityType, attributes,
+                sortCriteria, lowerBoundId, limit, timeLimit);
+    }
+
+    @Override
+    public MappableCursor<Row> runQueryById(String txId, SchemaManager schemaManager, EntityType entityType, String id,
+                                            Set<String> attributes) {
+
+        return directoryBackend.runQueryById(txId, schemaManager, entityType, id, attributes);
+    }
+
+    @Override
+    public boolean hasEntity(String txId, EntityType entityType, String id) {
 
-        return directoryBackend.runQueryExpression(txId, schemaManager, expression, entityType);
+        return directoryBackend.hasEntity(txId, entityType, id);
     }
 
     @Override
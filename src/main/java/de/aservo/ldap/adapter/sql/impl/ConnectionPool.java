@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2019 ASERVO Software GmbH
+ * contact@aservo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.aservo.ldap.adapter.sql.impl;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A pool of database connections which records how long callers wait to get a connection.
+ */
+public class ConnectionPool {
+
+    private final String name;
+    private final BasicDataSource dataSource;
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * Instantiates a new connection pool.
+     *
+     * @param name                      the name of the pool used for statistics
+     * @param driver                    the database driver
+     * @param url                       the URL to the endpoint of the database
+     * @param user                      the name of the database user
+     * @param password                  the password of the database user
+     * @param minIdle                   the minimum number of idle connections
+     * @param maxIdle                   the maximum number of idle connections
+     * @param maxTotal                  the maximum number of total connections
+     * @param poolPreparedStatements    the flag to enable or disable pooling of prepared statements
+     * @param maxOpenPreparedStatements the maximum number of open prepared statements per connection
+     * @param isolationLevel            the isolation level used for transactions
+     */
+    public ConnectionPool(String name, String driver, String url, String user, String password, int minIdle,
+                          int maxIdle, int maxTotal, boolean poolPreparedStatements, int maxOpenPreparedStatements,
+                          int isolationLevel) {
+
+        this.name = name;
+
+        dataSource = new BasicDataSource();
+
+        dataSource.setDriverClassName(driver);
+        dataSource.setUrl(url);
+        dataSource.setUsername(user);
+        dataSource.setPassword(password);
+        dataSource.setMinIdle(minIdle);
+        dataSource.setMaxIdle(maxIdle);
+        dataSource.setMaxTotal(maxTotal);
+        dataSource.setPoolPreparedStatements(poolPreparedStatements);
+        dataSource.setMaxOpenPreparedStatements(maxOpenPreparedStatements);
+        dataSource.setDefaultTransactionIsolation(isolationLevel);
+        dataSource.setDefaultReadOnly(false);
+    }
+
+    /**
+     * Gets the name of the pool.
+     *
+     * @return the name
+     */
+    public String getName() {
+
+        return name;
+    }
+
+    /**
+     * Gets a connection and records the time spent waiting for it.
+     *
+     * @return the connection
+     * @throws SQLException the SQL exception
+     */
+    public Connection getConnection()
+            throws SQLException {
+
+        long start = System.nanoTime();
+
+        try {
+
+            return dataSource.getConnection();
+
+        } finally {
+
+            long waitNanos = System.nanoTime() - start;
+
+            borrowCount.incrementAndGet();
+            totalWaitNanos.addAndGet(waitNanos);
+            maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        }
+    }
+
+    /**
+     * Closes all connections of the pool.
+     *
+     * @throws SQLException the SQL exception
+     */
+    public void close()
+            throws SQLException {
+
+        dataSource.close();
+    }
+
+    /**
+     * Gets the number of connections handed out so far.
+     *
+     * @return the borrow count
+     */
+    public long getBorrowCount() {
+
+        return borrowCount.get();
+    }
+
+    /**
+     * Gets the mean time callers waited for a connection.
+     *
+     * @return the mean wait time in milliseconds
+     */
+    public double getMeanWaitMillis() {
+
+        long count = borrowCount.get();
+
+        return count == 0 ? 0 : (double) totalWaitNanos.get() / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Gets the longest time a caller waited for a connection.
+     *
+     * @return the maximum wait time in milliseconds
+     */
+    public long getMaxWaitMillis() {
+
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    /**
+     * Gets the number of connections in use.
+     *
+     * @return the number of active connections
+     */
+    public int getNumActive() {
+
+        return dataSource.getNumActive();
+    }
+}
@@ -18,13 +18,14 @@
 package de.aservo.ldap.adapter.sql.impl;
 
 import com.google.common.collect.ImmutableList;
+import de.aservo.ldap.adapter.api.database.BatchQueryDef;
 import de.aservo.ldap.adapter.api.database.CloseableTransaction;
+import de.aservo.ldap.adapter.api.database.QueryDef;
 import de.aservo.ldap.adapter.api.database.QueryDefFactory;
 import de.aservo.ldap.adapter.api.database.Transactional;
 import de.aservo.ldap.adapter.api.database.exception.UncheckedSQLException;
 import de.aservo.ldap.adapter.api.database.result.IgnoredResult;
 import de.aservo.ldap.adapter.api.database.result.IndexedSeqResult;
-import org.apache.commons.dbcp2.BasicDataSource;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.slf4j.Logger;
@@ -41,6 +42,7 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -51,49 +53,52 @@ public class DatabaseService
         implements Transactional {
 
     private final Logger logger;
-    private final BasicDataSource dataSource;
+    private final ConnectionPool writePool;
+    private final ConnectionPool readPool;
     private boolean updatedSchema = false;
     private final boolean applyNativeSql;
+    private final int batchSize;
+    private final SqlTranslationCache translationCache = new SqlTranslationCache(SQL_TRANSLATION_CACHE_SIZE);
+    private final StatementPoolStatistics statementPoolStatistics = new StatementPoolStatistics();
+    private Map<String, String> queryClauses;
 
     private static final String QUERIES_CLAUSES = "de/aservo/ldap/adapter/db/queries.sql";
     private static final String VERSIONING_SCHEMA_CLAUSES = "de/aservo/ldap/adapter/db/versioning-schema.sql";
     private static final String CREATE_SCHEMA_CLAUSES = "de/aservo/ldap/adapter/db/create-schema.sql";
     private static final String DROP_SCHEMA_CLAUSES = "de/aservo/ldap/adapter/db/drop-schema.sql";
+    private static final int SQL_TRANSLATION_CACHE_SIZE = 1000;
 
     /**
-     * Instantiates a new DatabaseService.
+     * Instantiates a new DatabaseService with a single connection pool.
      *
-     * @param logger                    the logger instance
-     * @param driver                    the database driver
-     * @param url                       the URL to the endpoint of the database
-     * @param user                      the name of the database user
-     * @param password                  the password of the database user
-     * @param minIdle                   the minimum number of idle connections used for connection pooling
-     * @param maxIdle                   the maximum number of idle connections used for connection pooling
-     * @param maxTotal                  the maximum number of total connections used for connection pooling
-     * @param maxOpenPreparedStatements the maximum number of open prepared statements
-     * @param isolationLevel            the isolation level used for transactions
-     * @param applyNativeSql            the flag to enable or disable native SQL for batch processing
+     * @param logger         the logger instance
+     * @param pool           the connection pool
+     * @param applyNativeSql the flag to enable or disable native SQL for batch processing
+     * @param batchSize      the maximum number of statements sent to the database in one batch
      */
-    public DatabaseService(Logger logger, String driver, String url, String user, String password, int minIdle,
-                           int maxIdle, int maxTotal, int maxOpenPreparedStatements, int isolationLevel,
-                           boolean applyNativeSql) {
-
-        this.logger = logger;
+    public DatabaseService(Logger logger, ConnectionPool pool, boolean applyNativeSql, int batchSize) {
 
-        dataSource = new BasicDataSource();
+        this(logger, pool, pool, applyNativeSql, batchSize);
+    }
 
-        dataSource.setDriverClassName(driver);
-        dataSource.setUrl(url);
-        dataSource.setUsername(user);
-        dataSource.setPassword(password);
-        dataSource.setMinIdle(minIdle);
-        dataSource.setMaxIdle(maxIdle);
-        dataSource.setMaxTotal(maxTotal);
-        dataSource.setMaxOpenPreparedStatements(maxOpenPreparedStatements);
-        dataSource.setDefaultTransactionIsolation(isolationLevel);
+    /**
+     * Instantiates a new DatabaseService.
+     * Read only and closeable transactions use the read pool; all other transactions use the write pool.
+     *
+     * @param logger         the logger instance
+     * @param writePool      the connection pool for schema evolution, synchronization and other transactions
+     * @param readPool       the connection pool for read only transactions
+     * @param applyNativeSql the flag to enable or disable native SQL for batch processing
+     * @param batchSize      the maximum number of statements sent to the database in one batch
+     */
+    public DatabaseService(Logger logger, ConnectionPool writePool, ConnectionPool readPool, boolean applyNativeSql,
+                           int batchSize) {
 
+        this.logger = logger;
+        this.writePool = writePool;
+        this.readPool = readPool;
         this.applyNativeSql = applyNativeSql;
+        this.batchSize = batchSize;
 
         System.setProperty("org.jooq.no-logo", "true");
     }
@@ -107,16 +112,37 @@ public class DatabaseService
 
         try {
 
-            connection = dataSource.getConnection();
+            connection = writePool.getConnection();
 
         } catch (SQLException e) {
 
             throw new UncheckedSQLException("Could not create connection from pool.", e);
         }
 
-        Executor executor = new Executor(logger, connection, VERSIONING_SCHEMA_CLAUSES);
+        try {
+
+            Executor executor =
+                    new Executor(logger, connection, Executor.parseSqlFile(VERSIONING_SCHEMA_CLAUSES),
+                            translationCache, statementPoolStatistics, batchSize);
+
+            performSchemaEvolution(executor.newQueryDefFactory());
 
-        performSchemaEvolution(executor.newQueryDefFactory());
+            queryClauses = Executor.parseSqlFile(QUERIES_CLAUSES);
+
+            createExecutor(connection).validateClauses();
+
+        } finally {
+
+            // the connection is returned to not occupy a pool of a single connection
+            try {
+
+                connection.close();
+
+            } catch (SQLException e) {
+
+                logger.error("Cannot close database connection.", e);
+            }
+        }
     }
 
     /**
@@ -124,9 +150,23 @@ public class DatabaseService
      */
     public void shutdown() {
 
+        logger.info("SQL translation cache statistics: hits={} misses={}",
+                translationCache.getHitCount(), translationCache.getMissCount());
+
+        logger.info("Prepared statement pool statistics: hits={} misses={}",
+                statementPoolStatistics.getHitCount(), statementPoolStatistics.getMissCount());
+
+        logPoolStatistics(writePool);
+
+        if (readPool != writePool)
+            logPoolStatistics(readPool);
+
         try {
 
-            dataSource.close();
+            writePool.close();
+
+            if (readPool != writePool)
+                readPool.close();
 
         } catch (SQLException e) {
 
@@ -134,6 +174,26 @@ public class DatabaseService
         }
     }
 
+    /**
+     * Gets the connection pool for schema evolution, synchronization and other transactions.
+     *
+     * @return the write pool
+     */
+    public ConnectionPool getWritePool() {
+
+        return writePool;
+    }
+
+    /**
+     * Gets the connection pool for read only transactions.
+     *
+     * @return the read pool
+     */
+    public ConnectionPool getReadPool() {
+
+        return readPool;
+    }
+
     /**
      * Check if the schema was updated.
      *
@@ -147,34 +207,27 @@ public class DatabaseService
     @Override
     public <T> T withTransaction(Function<QueryDefFactory, T> block) {
 
-        Connection connection;
-
-        try {
-
-            connection = dataSource.getConnection();
-
-        } catch (SQLException e) {
+        return withTransaction(false, block);
+    }
 
-            throw new UncheckedSQLException("Could not create connection from pool.", e);
-        }
+    @Override
+    public <T> T withTransaction(boolean readOnly, Function<QueryDefFactory, T> block) {
 
-        Executor executor = new Executor(logger, connection, QUERIES_CLAUSES);
+        TransactionScope scope = new TransactionScope(readOnly);
         long start = System.currentTimeMillis();
         T result;
 
         try {
 
-            executor.getConnection().setAutoCommit(false);
-
-            result = block.apply(executor.newQueryDefFactory());
+            result = block.apply(scope);
 
-            executor.getConnection().commit();
+            scope.commit();
 
         } catch (Exception e1) {
 
             try {
 
-                executor.getConnection().rollback();
+                scope.rollback();
 
                 throw e1;
 
@@ -185,14 +238,7 @@ public class DatabaseService
 
         } finally {
 
-            try {
-
-                executor.getConnection().close();
-
-            } catch (SQLException e) {
-
-                logger.error("Cannot close database connection.", e);
-            }
+            scope.close();
         }
 
         long end = System.currentTimeMillis();
@@ -214,36 +260,7 @@ public class DatabaseService
 
     public CloseableTransaction getCloseableTransaction() {
 
-        Connection connection;
-
-        try {
-
-            connection = dataSource.getConnection();
-
-        } catch (SQLException e) {
-
-            throw new UncheckedSQLException("Could not create connection from pool.", e);
-        }
-
-        Executor executor = new Executor(logger, connection, QUERIES_CLAUSES);
-
-        try {
-
-            executor.getConnection().setAutoCommit(false);
-
-        } catch (SQLException e) {
-
-            try {
-
-                executor.getConnection().close();
-
-            } catch (SQLException e2) {
-
-                logger.error("Cannot close database connection.", e2);
-            }
-
-            throw new UncheckedSQLException("Could not trigger transactional processing.", e);
-        }
+        Executor executor = createExecutor(readPool, true);
 
         return new CloseableTransaction() {
 
@@ -306,6 +323,59 @@ public class DatabaseService
         };
     }
 
+    private Executor createExecutor(ConnectionPool pool, boolean readOnly) {
+
+        Connection connection;
+
+        try {
+
+            connection = pool.getConnection();
+
+        } catch (SQLException e) {
+
+            throw new UncheckedSQLException("Could not create connection from pool.", e);
+        }
+
+        Executor executor = createExecutor(connection);
+
+        try {
+
+            // the pool resets the read only flag when the connection is borrowed again
+            executor.getConnection().setReadOnly(readOnly);
+            executor.getConnection().setAutoCommit(false);
+
+        } catch (SQLException e) {
+
+            try {
+
+                executor.getConnection().close();
+
+            } catch (SQLException e2) {
+
+                logger.error("Cannot close database connection.", e2);
+            }
+
+            throw new UncheckedSQLException("Could not trigger transactional processing.", e);
+        }
+
+        return executor;
+    }
+
+    private void logPoolStatistics(ConnectionPool pool) {
+
+        logger.info("Connection pool statistics of {}: borrowed={} mean-wait={}ms max-wait={}ms",
+                pool.getName(), pool.getBorrowCount(), String.format("%.3f", pool.getMeanWaitMillis()),
+                pool.getMaxWaitMillis());
+    }
+
+    private Executor createExecutor(Connection connection) {
+
+        if (queryClauses == null)
+            throw new IllegalStateException("The database service has not been started.");
+
+        return new Executor(logger, connection, queryClauses, translationCache, statementPoolStatistics, batchSize);
+    }
+
     private void performSchemaEvolution(QueryDefFactory factory) {
 
         factory
@@ -379,9 +449,12 @@ public class DatabaseService
                     .filter(x -> !(x.startsWith(Executor.NATIVE_SQL_INDICATOR) && !applyNativeSql))
                     .forEach(queryClause -> {
 
-                        factory
-                                .query(queryClause.trim())
-                                .execute(IgnoredResult.class);
+                        if (queryClause.startsWith(Executor.NATIVE_SQL_INDICATOR))
+                            runNativeClause(factory, queryClause);
+                        else
+                            factory
+                                    .query(queryClause)
+                                    .execute(IgnoredResult.class);
                     });
 
         } catch (IOException e) {
@@ -389,4 +462,97 @@ public class DatabaseService
             throw new UncheckedIOException(e);
         }
     }
+
+    private void runNativeClause(QueryDefFactory factory, String queryClause) {
+
+        // native SQL only adds optimizations like pg_trgm indexes; the extension needs the CREATE privilege
+        try {
+
+            factory
+                    .query(queryClause)
+                    .executeWithAutoCommit(IgnoredResult.class);
+
+        } catch (UncheckedSQLException e) {
+
+            logger.warn("Skipped native SQL statement which could not be applied: {}",
+                    queryClause.substring(Executor.NATIVE_SQL_INDICATOR.length()), e);
+        }
+    }
+
+    /**
+     * A query definition factory that borrows the connection of its transaction on first use.
+     * Sessions that only read via closeable transactions never borrow a second connection.
+     */
+    private class TransactionScope
+            implements QueryDefFactory {
+
+        private final boolean readOnly;
+        private Executor executor;
+        private QueryDefFactory factory;
+
+        public TransactionScope(boolean readOnly) {
+
+            this.readOnly = readOnly;
+        }
+
+        public QueryDef queryById(String clauseId) {
+
+            return getFactory().queryById(clauseId);
+        }
+
+        public QueryDef query(String clause) {
+
+            return getFactory().query(clause);
+        }
+
+        public BatchQueryDef batchById(String clauseId) {
+
+            return getFactory().batchById(clauseId);
+        }
+
+        public BatchQueryDef bulkLoad(String table, List<String> columns) {
+
+            return getFactory().bulkLoad(table, columns);
+        }
+
+        public void commit()
+                throws SQLException {
+
+            if (executor != null)
+                executor.getConnection().commit();
+        }
+
+        public void rollback()
+                throws SQLException {
+
+            if (executor != null)
+                executor.getConnection().rollback();
+        }
+
+        public void close() {
+
+            if (executor == null)
+                return;
+
+            try {
+
+                executor.getConnection().close();
+
+            } catch (SQLException e) {
+
+                logger.error("Cannot close database connection.", e);
+            }
+        }
+
+        private QueryDefFactory getFactory() {
+
+            if (factory == null) {
+
+                executor = createExecutor(readOnly ? readPool : writePool, readOnly);
+                factory = executor.newQueryDefFactory();
+            }
+
+            return factory;
+        }
+    }
 }
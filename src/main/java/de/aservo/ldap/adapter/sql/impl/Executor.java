@@ -19,20 +19,25 @@ package de.aservo.ldap.adapter.sql.impl;
 
 import com.google.common.collect.Lists;
 import de.aservo.ldap.adapter.api.cursor.MappableCursor;
+import de.aservo.ldap.adapter.api.database.BatchQueryDef;
 import de.aservo.ldap.adapter.api.database.QueryDef;
 import de.aservo.ldap.adapter.api.database.QueryDefFactory;
 import de.aservo.ldap.adapter.api.database.Row;
 import de.aservo.ldap.adapter.api.database.exception.UncheckedSQLException;
-import de.aservo.ldap.adapter.api.database.exception.UnknownColumnException;
 import de.aservo.ldap.adapter.api.database.result.*;
 import org.apache.commons.io.IOUtils;
 import org.jooq.Query;
-import org.jooq.exception.DataAccessException;
+import org.jooq.SQLDialect;
+import org.jooq.conf.ParamType;
 import org.jooq.impl.DSL;
+import org.jooq.impl.ParserException;
+import org.jooq.tools.jdbc.JDBCUtils;
+import org.postgresql.PGConnection;
 import org.slf4j.Logger;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.io.UncheckedIOException;
 import java.lang.reflect.Array;
 import java.math.BigDecimal;
@@ -54,32 +59,74 @@ public class Executor {
     private final Logger logger;
     private final Connection connection;
     private final Map<String, String> clauses;
+    private final SqlTranslationCache translationCache;
+    private final StatementPoolStatistics statementPoolStatistics;
+    private final int batchSize;
+    private SQLDialect dialect;
 
     public static final String NATIVE_SQL_INDICATOR = "NATIVE_SQL:";
 
-    public Executor(Logger logger, Connection connection, String resourcePath) {
+    // stays below the smallest limit of bind parameters per statement of all supported databases
+    private static final int MAX_BULK_LOAD_PARAMETERS = 2000;
+
+    public Executor(Logger logger, Connection connection, Map<String, String> clauses,
+                    SqlTranslationCache translationCache, StatementPoolStatistics statementPoolStatistics,
+                    int batchSize) {
 
         this.logger = logger;
         this.connection = connection;
-        this.clauses = parseSqlFile(resourcePath);
+        this.clauses = clauses;
+        this.translationCache = translationCache;
+        this.statementPoolStatistics = statementPoolStatistics;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Checks that all dialect free clauses can be parsed for the dialect of the connection.
+     */
+    public void validateClauses() {
+
+        clauses.forEach((id, clause) -> {
+
+            if (clause.startsWith(NATIVE_SQL_INDICATOR))
+                return;
+
+            try {
+
+                DSL.using(getDialect()).parser().parseQuery(clause);
+
+            } catch (ParserException e) {
+
+                throw new IllegalArgumentException("Cannot parse clause with ID " + id, e);
+            }
+        });
     }
 
     public <T extends Result> T executeById(String clauseId, Map<String, Object> parameters, Class<T> clazz)
             throws SQLException {
 
-        String clause = clauses.get(clauseId);
+        return execute(getClause(clauseId), parameters, clazz);
+    }
 
-        if (clause == null)
-            throw new IllegalArgumentException("Cannot find clause with ID " + clauseId);
+    public <T extends Result> T executeById(String clauseId, Map<String, Object> parameters, int queryTimeout,
+                                            int fetchSize, Class<T> clazz)
+            throws SQLException {
 
-        return execute(clause, parameters, clazz);
+        return execute(getClause(clauseId), parameters, queryTimeout, fetchSize, clazz);
     }
 
     public <T extends Result> T execute(String clause, Map<String, Object> parameters, Class<T> clazz)
             throws SQLException {
 
-        Query query = null;
-        String sql = null;
+        return execute(clause, parameters, 0, 0, clazz);
+    }
+
+    public <T extends Result> T execute(String clause, Map<String, Object> parameters, int queryTimeout,
+                                        int fetchSize, Class<T> clazz)
+            throws SQLException {
+
+        SqlTranslationCache.Translation translation = null;
+        String sql;
         long start = System.currentTimeMillis();
         boolean nonStreamed = true;
 
@@ -91,37 +138,30 @@ public class Executor {
 
         } else {
 
-            logger.debug("[Thread ID {}] - Parse dialect free SQL statement:\n{}",
-                    Thread.currentThread().getId(), trimmedClause);
-
-            query = DSL.using(connection).parser().parseQuery(trimmedClause);
+            translation = getTranslation(trimmedClause, parameters);
+            sql = translation.getSql();
         }
 
         try {
 
-            if (query != null) {
-
-                findBinding(query, parameters);
-
-                sql = query.getSQL();
-            }
-
-            Query finalQuery = query;
-
             logger.debug("[Thread ID {}] - Apply dialect specific SQL statement:\n{}",
                     Thread.currentThread().getId(), sql);
 
-            PreparedStatement statement = connection.prepareStatement(sql);
+            // drivers stream rows of forward only and read only results with a fetch size in a transaction
+            PreparedStatement statement =
+                    connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+
+            statementPoolStatistics.record(statement);
 
             try {
 
                 Result concreteResult;
 
-                if (query != null) {
-                    setValues(statement, query.getBindValues());
-                } else {
-                    setValues(statement, parameters);
-                }
+                setValues(statement, translation, parameters);
+
+                // a pooled statement keeps the timeout and fetch size of its previous execution
+                statement.setQueryTimeout(queryTimeout);
+                statement.setFetchSize(fetchSize);
 
                 logger.debug("Native SQL for Statement: {}", statement);
                 statement.execute();
@@ -132,15 +172,28 @@ public class Executor {
                             new IgnoredResult() {
                             };
 
+                } else if (clazz == UpdateCountResult.class) {
+
+                    int updateCount = statement.getUpdateCount();
+
+                    concreteResult =
+                            new UpdateCountResult() {
+
+                                public int getUpdateCount() {
+
+                                    return updateCount;
+                                }
+                            };
+
                 } else {
 
-                    LinkedHashMap<String, JDBCType> metadata = getMetadata(statement);
-                    List<String> columnNames = new ArrayList<>(metadata.keySet());
-                    MappableCursor<Row> cursor = getRowCursor(statement, metadata);
+                    RowSchema schema = getRowSchema(statement);
+                    List<String> columnNames = schema.getColumnNames();
+                    MappableCursor<Row> cursor = getRowCursor(statement, schema);
 
                     if (clazz == SingleResult.class) {
 
-                        List<Row> rows = Lists.newArrayList(cursor.iterator(x -> new RowProxyImpl(x, columnNames)));
+                        List<Row> rows = Lists.newArrayList(cursor.iterator(x -> new RowProxyImpl(x, schema)));
 
                         if (rows.size() != 1)
                             throw new IllegalArgumentException(
@@ -163,7 +216,7 @@ public class Executor {
 
                     } else if (clazz == SingleOptResult.class) {
 
-                        List<Row> rows = Lists.newArrayList(cursor.iterator(x -> new RowProxyImpl(x, columnNames)));
+                        List<Row> rows = Lists.newArrayList(cursor.iterator(x -> new RowProxyImpl(x, schema)));
 
                         if (rows.size() > 1)
                             throw new IllegalArgumentException(
@@ -186,7 +239,7 @@ public class Executor {
 
                     } else if (clazz == IndexedSeqResult.class) {
 
-                        List<Row> rows = Lists.newArrayList(cursor.iterator(x -> new RowProxyImpl(x, columnNames)));
+                        List<Row> rows = Lists.newArrayList(cursor.iterator(x -> new RowProxyImpl(x, schema)));
 
                         concreteResult =
                                 new IndexedSeqResult() {
@@ -204,7 +257,7 @@ public class Executor {
 
                     } else if (clazz == IndexedNonEmptySeqResult.class) {
 
-                        List<Row> rows = Lists.newArrayList(cursor.iterator(x -> new RowProxyImpl(x, columnNames)));
+                        List<Row> rows = Lists.newArrayList(cursor.iterator(x -> new RowProxyImpl(x, schema)));
 
                         if (rows.isEmpty())
                             throw new IllegalArgumentException(
@@ -242,10 +295,33 @@ public class Executor {
                                         return new MappableCursor<R>() {
 
                                             boolean closed = false;
+                                            boolean fetching = false;
 
                                             public boolean next() {
 
-                                                return underlying.next();
+                                                synchronized (this) {
+
+                                                    if (closed)
+                                                        return false;
+
+                                                    fetching = true;
+                                                }
+
+                                                try {
+
+                                                    return underlying.next();
+
+                                                } finally {
+
+                                                    synchronized (this) {
+
+                                                        fetching = false;
+
+                                                        // the statement of a cancelled fetch is closed afterwards
+                                                        if (closed)
+                                                            closeStatementUnchecked();
+                                                    }
+                                                }
                                             }
 
                                             public R get() {
@@ -253,25 +329,56 @@ public class Executor {
                                                 return underlying.get();
                                             }
 
-                                            public void close()
+                                            public synchronized void close()
                                                     throws IOException {
 
-                                                if (!closed) {
+                                                if (closed)
+                                                    return;
 
-                                                    try {
+                                                closed = true;
+
+                                                // a cursor closed while another thread fetches rows belongs
+                                                // to an abandoned search; the database stops immediately
+                                                if (!fetching) {
+
+                                                    closeStatement();
+
+                                                } else {
 
-                                                        statement.close();
-                                                        underlying.close();
+                                                    try {
 
-                                                        if (finalQuery != null)
-                                                            finalQuery.close();
+                                                        statement.cancel();
 
-                                                    } catch (SQLException | DataAccessException e) {
+                                                    } catch (SQLException e) {
 
-                                                        throw new IOException("Could not close prepared statement", e);
+                                                        throw new IOException("Could not cancel prepared statement", e);
                                                     }
+                                                }
+                                            }
+
+                                            private void closeStatement()
+                                                    throws IOException {
+
+                                                try {
 
-                                                    closed = true;
+                                                    statement.close();
+                                                    underlying.close();
+
+                                                } catch (SQLException e) {
+
+                                                    throw new IOException("Could not close prepared statement", e);
+                                                }
+                                            }
+
+                                            private void closeStatementUnchecked() {
+
+                                                try {
+
+                                                    closeStatement();
+
+                                                } catch (IOException e) {
+
+                                                    throw new UncheckedIOException(e);
                                                 }
                                             }
                                         };
@@ -298,9 +405,6 @@ public class Executor {
 
             if (nonStreamed) {
 
-                if (query != null)
-                    query.close();
-
                 long end = System.currentTimeMillis();
 
                 logger.debug("[Thread ID {}] - A prepared statement was performed in {} ms.",
@@ -322,6 +426,16 @@ public class Executor {
 
                 return new QueryDefImpl(clause, Collections.emptyMap(), false);
             }
+
+            public BatchQueryDef batchById(String clauseId) {
+
+                return new BatchQueryDefImpl(getClause(clauseId));
+            }
+
+            public BatchQueryDef bulkLoad(String table, List<String> columns) {
+
+                return createBulkLoad(table, columns);
+            }
         };
     }
 
@@ -330,9 +444,191 @@ public class Executor {
         return connection;
     }
 
-    private void findBinding(Query query, Map<String, Object> parameters) {
+    private SQLDialect getDialect() {
+
+        if (dialect == null)
+            dialect = JDBCUtils.dialect(connection);
+
+        return dialect;
+    }
+
+    private String getParameterTypes(Map<String, Object> parameters) {
+
+        return parameters.entrySet().stream()
+                .map(x -> {
+
+                    Class<?> type = getParameterType(x.getValue());
+
+                    return x.getKey() + ":" + (type == null ? "null" : type.getName());
+                })
+                .collect(Collectors.joining(","));
+    }
+
+    private Map<String, Class<?>> getParameterShape(Map<String, Object> parameters) {
+
+        Map<String, Class<?>> shape = new HashMap<>();
+
+        parameters.forEach((k, v) -> shape.put(k, getParameterType(v)));
+
+        return shape;
+    }
+
+    private boolean hasParameterShape(Map<String, Object> parameters, Map<String, Class<?>> shape) {
+
+        if (shape == null || shape.size() != parameters.size())
+            return false;
+
+        for (Map.Entry<String, Object> entry : parameters.entrySet())
+            if (!shape.containsKey(entry.getKey()) ||
+                    shape.get(entry.getKey()) != getParameterType(entry.getValue()))
+                return false;
 
-        parameters.forEach((k, v) -> findBinding(query, k, v));
+        return true;
+    }
+
+    private Class<?> getParameterType(Object value) {
+
+        if (value instanceof Optional)
+            value = ((Optional<?>) value).orElse(null);
+
+        return value == null ? null : value.getClass();
+    }
+
+    private BatchQueryDef createBulkLoad(String table, List<String> columns) {
+
+        SQLDialect family = getDialect().family();
+
+        try {
+
+            if (family == SQLDialect.POSTGRES && connection.isWrapperFor(PGConnection.class))
+                return new CopyBulkLoadImpl(table, columns);
+
+        } catch (SQLException e) {
+
+            throw new UncheckedSQLException(e);
+        }
+
+        // drivers for these dialects handle batches of single row inserts efficiently
+        if (family == SQLDialect.H2 || family == SQLDialect.MARIADB || family == SQLDialect.MYSQL)
+            return new BatchQueryDefImpl("insert into " + table + " (" + String.join(", ", columns) + ") values (" +
+                    columns.stream().map(x -> ":" + x).collect(Collectors.joining(", ")) + ")");
+
+        return new ValuesBulkLoadImpl(table, columns);
+    }
+
+    private String getClause(String clauseId) {
+
+        String clause = clauses.get(clauseId);
+
+        if (clause == null)
+            throw new IllegalArgumentException("Cannot find clause with ID " + clauseId);
+
+        return clause;
+    }
+
+    private SqlTranslationCache.Translation getTranslation(String clause, Map<String, Object> parameters) {
+
+        // the rendered SQL depends on the dialect and the types of bound values
+        String key = getDialect() + "\n" + getParameterTypes(parameters) + "\n" + clause;
+
+        return translationCache.get(key, () -> translate(clause, parameters));
+    }
+
+    private SqlTranslationCache.Translation translate(String clause, Map<String, Object> parameters) {
+
+        logger.debug("[Thread ID {}] - Parse dialect free SQL statement:\n{}",
+                Thread.currentThread().getId(), clause);
+
+        Query query = DSL.using(getDialect()).parser().parseQuery(clause);
+
+        // the parser indexes inline literals like placeholders;
+        // therefore, positional keys are mapped to the indices of the actual placeholders
+
+        List<String> placeholders =
+                query.getParams().entrySet().stream()
+                        .filter(x -> !x.getValue().isInline())
+                        .map(Map.Entry::getKey)
+                        .collect(Collectors.toList());
+
+        Map<String, String> boundKeys = new HashMap<>();
+
+        parameters.forEach((k, v) -> {
+
+            String name = k;
+
+            if (isPositional(k) && Integer.parseInt(k) <= placeholders.size())
+                name = placeholders.get(Integer.parseInt(k) - 1);
+
+            boundKeys.put(name, k);
+            findBinding(query, name, v);
+        });
+
+        // positional placeholders are rendered with a running index that skips inline literals
+
+        Map<String, String> parameterKeys = new HashMap<>();
+
+        for (int i = 0; i < placeholders.size(); i++) {
+
+            String name = placeholders.get(i);
+
+            parameterKeys.put(isPositional(name) ? Integer.toString(i + 1) : name, boundKeys.getOrDefault(name, name));
+        }
+
+        return toPositionalPlaceholders(query.getSQL(ParamType.NAMED), parameterKeys);
+    }
+
+    private boolean isPositional(String key) {
+
+        return !key.isEmpty() && key.chars().allMatch(Character::isDigit);
+    }
+
+    private SqlTranslationCache.Translation toPositionalPlaceholders(String sql, Map<String, String> parameterKeys) {
+
+        StringBuilder builder = new StringBuilder();
+        List<String> keys = new ArrayList<>();
+        char quote = 0;
+
+        for (int i = 0; i < sql.length(); i++) {
+
+            char c = sql.charAt(i);
+
+            if (quote != 0) {
+
+                if (c == quote)
+                    quote = 0;
+
+            } else if (c == '\'' || c == '"' || c == '`') {
+
+                quote = c;
+
+            } else if (c == ':' && i + 1 < sql.length() && sql.charAt(i + 1) == ':') {
+
+                builder.append(c);
+                c = sql.charAt(++i);
+
+            } else if (c == ':') {
+
+                int end = i + 1;
+
+                while (end < sql.length() && (Character.isLetterOrDigit(sql.charAt(end)) || sql.charAt(end) == '_'))
+                    end++;
+
+                String name = sql.substring(i + 1, end);
+
+                if (parameterKeys.containsKey(name)) {
+
+                    builder.append('?');
+                    keys.add(parameterKeys.get(name));
+                    i = end - 1;
+
+                    continue;
+                }
+            }
+
+            builder.append(c);
+        }
+
+        return new SqlTranslationCache.Translation(builder.toString(), keys);
     }
 
     private void findBinding(Query query, String key, Object value) {
@@ -355,6 +651,19 @@ public class Executor {
             query.bind(key, value);
     }
 
+    private void setValues(PreparedStatement statement, SqlTranslationCache.Translation translation,
+                           Map<String, Object> parameters)
+            throws SQLException {
+
+        if (translation != null) {
+            setValues(statement, translation.getParameterKeys().stream()
+                    .map(parameters::get)
+                    .collect(Collectors.toList()));
+        } else {
+            setValues(statement, parameters);
+        }
+    }
+
     private void setValues(PreparedStatement statement, List<Object> parameters)
             throws SQLException {
 
@@ -425,83 +734,81 @@ public class Executor {
                             ") at key " + key + ".");
     }
 
-    private Object getColumnValue(String columnName, ResultSet resultSet, Map<String, JDBCType> metadata)
+    private Object getColumnValue(int ordinal, ResultSet resultSet, RowSchema schema)
             throws SQLException {
 
         Object result;
-        String lowerColumnName = columnName.toLowerCase();
-        JDBCType jdbcType = metadata.get(lowerColumnName);
-
-        if (jdbcType == null)
-            throw new UnknownColumnException("Cannot find column " + lowerColumnName + " in current row.");
+        int column = ordinal + 1;
+        JDBCType jdbcType = schema.getColumnType(ordinal);
 
         if (jdbcType == JDBCType.NULL)
             result = null;
         else if (jdbcType == JDBCType.BIT)
-            result = resultSet.getBoolean(lowerColumnName);
+            result = resultSet.getBoolean(column);
         else if (jdbcType == JDBCType.BOOLEAN)
-            result = resultSet.getBoolean(lowerColumnName);
+            result = resultSet.getBoolean(column);
         else if (jdbcType == JDBCType.TINYINT)
-            result = resultSet.getByte(lowerColumnName);
+            result = resultSet.getByte(column);
         else if (jdbcType == JDBCType.SMALLINT)
-            result = resultSet.getShort(lowerColumnName);
+            result = resultSet.getShort(column);
         else if (jdbcType == JDBCType.INTEGER)
-            result = resultSet.getInt(lowerColumnName);
+            result = resultSet.getInt(column);
         else if (jdbcType == JDBCType.BIGINT)
-            result = resultSet.getLong(lowerColumnName);
+            result = resultSet.getLong(column);
         else if (jdbcType == JDBCType.REAL)
-            result = resultSet.getFloat(lowerColumnName);
+            result = resultSet.getFloat(column);
         else if (jdbcType == JDBCType.FLOAT)
-            result = resultSet.getDouble(lowerColumnName);
+            result = resultSet.getDouble(column);
         else if (jdbcType == JDBCType.DOUBLE)
-            result = resultSet.getDouble(lowerColumnName);
+            result = resultSet.getDouble(column);
         else if (jdbcType == JDBCType.NUMERIC)
-            result = resultSet.getBigDecimal(lowerColumnName);
+            result = resultSet.getBigDecimal(column);
         else if (jdbcType == JDBCType.DECIMAL)
-            result = resultSet.getBigDecimal(lowerColumnName);
+            result = resultSet.getBigDecimal(column);
         else if (jdbcType == JDBCType.DATE)
-            result = resultSet.getDate(lowerColumnName).toLocalDate();
+            result = resultSet.getDate(column).toLocalDate();
         else if (jdbcType == JDBCType.TIME)
-            result = resultSet.getTime(lowerColumnName).toLocalTime();
+            result = resultSet.getTime(column).toLocalTime();
         else if (jdbcType == JDBCType.TIMESTAMP)
-            result = resultSet.getTimestamp(lowerColumnName).toLocalDateTime();
+            result = resultSet.getTimestamp(column).toLocalDateTime();
         else if (jdbcType == JDBCType.BINARY)
-            result = toByteList(resultSet.getBytes(lowerColumnName));
+            result = toByteList(resultSet.getBytes(column));
         else if (jdbcType == JDBCType.VARBINARY)
-            result = toByteList(resultSet.getBytes(lowerColumnName));
+            result = toByteList(resultSet.getBytes(column));
         else if (jdbcType == JDBCType.LONGVARBINARY)
-            result = toByteList(resultSet.getBytes(lowerColumnName));
+            result = toByteList(resultSet.getBytes(column));
         else if (jdbcType == JDBCType.BLOB)
-            result = resultSet.getBytes(lowerColumnName);
+            result = resultSet.getBytes(column);
         else if (jdbcType == JDBCType.CHAR)
-            result = resultSet.getString(lowerColumnName);
+            result = resultSet.getString(column);
         else if (jdbcType == JDBCType.VARCHAR)
-            result = resultSet.getString(lowerColumnName);
+            result = resultSet.getString(column);
         else if (jdbcType == JDBCType.LONGVARCHAR)
-            result = resultSet.getString(lowerColumnName);
+            result = resultSet.getString(column);
         else if (jdbcType == JDBCType.CLOB)
-            result = resultSet.getString(lowerColumnName);
+            result = resultSet.getString(column);
         else if (jdbcType == JDBCType.NCHAR)
-            result = resultSet.getString(lowerColumnName);
+            result = resultSet.getString(column);
         else if (jdbcType == JDBCType.NVARCHAR)
-            result = resultSet.getString(lowerColumnName);
+            result = resultSet.getString(column);
         else if (jdbcType == JDBCType.LONGNVARCHAR)
-            result = resultSet.getString(lowerColumnName);
+            result = resultSet.getString(column);
         else if (jdbcType == JDBCType.NCLOB)
-            result = resultSet.getString(lowerColumnName);
+            result = resultSet.getString(column);
         else
             throw new IllegalArgumentException(
                     "Cannot set unsupported JDBC type " + jdbcType.getName() +
-                            " for column " + lowerColumnName + ".");
+                            " for column " + schema.getColumnNames().get(ordinal) + ".");
 
         return result;
     }
 
-    private MappableCursor<Row> getRowCursor(PreparedStatement statement, Map<String, JDBCType> metadata)
+    private MappableCursor<Row> getRowCursor(PreparedStatement statement, RowSchema schema)
             throws SQLException {
 
+        // a single row reads the values of the current position of the result set
         ResultSet resultSet = statement.getResultSet();
-        Row row = new RowImpl(resultSet, metadata);
+        Row row = new RowImpl(resultSet, schema);
 
         return new MappableCursor<Row>() {
 
@@ -524,26 +831,23 @@ public class Executor {
         };
     }
 
-    private LinkedHashMap<String, JDBCType> getMetadata(PreparedStatement statement)
+    private RowSchema getRowSchema(PreparedStatement statement)
             throws SQLException {
 
-        LinkedHashMap<String, JDBCType> result = new LinkedHashMap<>();
+        List<String> columnNames = new ArrayList<>();
+        List<JDBCType> columnTypes = new ArrayList<>();
         ResultSetMetaData metadata = statement.getMetaData();
 
-        if (metadata == null)
-            return result;
-
-        for (int i = 1; i <= metadata.getColumnCount(); i++) {
+        if (metadata != null) {
 
-            String lowerColumnName = metadata.getColumnLabel(i).toLowerCase();
+            for (int i = 1; i <= metadata.getColumnCount(); i++) {
 
-            if (result.containsKey(lowerColumnName))
-                throw new IllegalArgumentException("Expect unique column name for resulting rows.");
-
-            result.put(lowerColumnName, JDBCType.valueOf(metadata.getColumnType(i)));
+                columnNames.add(metadata.getColumnLabel(i).toLowerCase());
+                columnTypes.add(JDBCType.valueOf(metadata.getColumnType(i)));
+            }
         }
 
-        return result;
+        return new RowSchema(columnNames, columnTypes);
     }
 
     private boolean isByteSequence(Object obj) {
@@ -605,13 +909,22 @@ public class Executor {
         return list;
     }
 
-    private Map<String, String> parseSqlFile(String resourcePath) {
+    /**
+     * Parses and validates all clauses of a SQL file.
+     *
+     * @param resourcePath the class path of the SQL file
+     * @return the immutable clauses by ID
+     */
+    public static Map<String, String> parseSqlFile(String resourcePath) {
 
         String headerStart = "--[ID:";
         String headerEnd = "]--";
         Map<String, String> mapping = new HashMap<>();
 
-        try (InputStream stream = getClass().getClassLoader().getResourceAsStream(resourcePath)) {
+        try (InputStream stream = Executor.class.getClassLoader().getResourceAsStream(resourcePath)) {
+
+            if (stream == null)
+                throw new IllegalArgumentException("Cannot find SQL file " + resourcePath);
 
             String result = IOUtils.toString(stream, StandardCharsets.UTF_8.name());
 
@@ -640,7 +953,8 @@ public class Executor {
                 if (clause.isEmpty())
                     throw new IllegalArgumentException("Expect non empty clauses.");
 
-                mapping.put(id, clause);
+                if (mapping.put(id, clause) != null)
+                    throw new IllegalArgumentException("Expect unique IDs for all clauses but found " + id + " twice.");
             }
 
         } catch (IOException e) {
@@ -648,28 +962,38 @@ public class Executor {
             throw new UncheckedIOException(e);
         }
 
-        return mapping;
+        return Collections.unmodifiableMap(mapping);
     }
 
     private class RowImpl
             implements Row {
 
         private final ResultSet resultSet;
-        private final Map<String, JDBCType> metadata;
+        private final RowSchema schema;
 
-        public RowImpl(ResultSet resultSet, Map<String, JDBCType> metadata) {
+        public RowImpl(ResultSet resultSet, RowSchema schema) {
 
             this.resultSet = resultSet;
-            this.metadata = metadata;
+            this.schema = schema;
+        }
+
+        public List<String> getColumns() {
+
+            return schema.getColumnNames();
         }
 
         public <T> T apply(String columnName, Class<T> clazz) {
 
+            return apply(schema.getOrdinal(columnName), clazz);
+        }
+
+        public <T> T apply(int ordinal, Class<T> clazz) {
+
             Object result;
 
             try {
 
-                result = getColumnValue(columnName, resultSet, metadata);
+                result = getColumnValue(ordinal, resultSet, schema);
 
             } catch (SQLException e) {
 
@@ -686,7 +1010,7 @@ public class Executor {
             } catch (ClassCastException e) {
 
                 throw new IllegalArgumentException(
-                        "Cannot perform a read conversion with column " + columnName +
+                        "Cannot perform a read conversion with column " + schema.getColumnNames().get(ordinal) +
                                 " and with type [" + clazz.getName() + "].", e);
             }
         }
@@ -695,24 +1019,31 @@ public class Executor {
     private class RowProxyImpl
             implements Row {
 
-        private final Map<String, Object> underlying = new LinkedHashMap<>();
+        private final RowSchema schema;
+        private final Object[] values;
+
+        public RowProxyImpl(Row row, RowSchema schema) {
 
-        public RowProxyImpl(Row row, List<String> columnNames) {
+            this.schema = schema;
+            values = new Object[schema.size()];
 
-            columnNames.forEach(x -> {
+            for (int i = 0; i < values.length; i++)
+                values[i] = row.apply(i, Object.class);
+        }
+
+        public List<String> getColumns() {
 
-                underlying.put(x, row.apply(x, Object.class));
-            });
+            return schema.getColumnNames();
         }
 
         public <T> T apply(String columnName, Class<T> clazz) {
 
-            String lowerColumnName = columnName;
+            return apply(schema.getOrdinal(columnName), clazz);
+        }
 
-            if (!underlying.containsKey(lowerColumnName))
-                throw new UnknownColumnException("Cannot find column " + lowerColumnName + " in current row.");
+        public <T> T apply(int ordinal, Class<T> clazz) {
 
-            Object result = underlying.get(lowerColumnName);
+            Object result = values[ordinal];
 
             if (result == null)
                 return null;
@@ -724,24 +1055,342 @@ public class Executor {
             } catch (ClassCastException e) {
 
                 throw new IllegalArgumentException(
-                        "Cannot perform a read conversion with column " + columnName +
+                        "Cannot perform a read conversion with column " + schema.getColumnNames().get(ordinal) +
                                 " and with type [" + clazz.getName() + "].", e);
             }
         }
     }
 
+    private abstract class BulkLoadImpl
+            implements BatchQueryDef {
+
+        protected final String table;
+        protected final List<String> columns;
+        private final int rowLimit;
+        private final List<Object[]> rows = new ArrayList<>();
+        private Object[] row;
+        private int executedCount;
+
+        public BulkLoadImpl(String table, List<String> columns, int rowLimit) {
+
+            this.table = table;
+            this.columns = new ArrayList<>(columns);
+            this.rowLimit = Math.max(1, rowLimit);
+            this.row = new Object[columns.size()];
+        }
+
+        public BatchQueryDef on(String key, Object value) {
+
+            int index = columns.indexOf(key);
+
+            if (index == -1)
+                throw new IllegalArgumentException("Cannot find column " + key + " for bulk load into " + table);
+
+            row[index] = value instanceof Optional ? ((Optional<?>) value).orElse(null) : value;
+
+            return this;
+        }
+
+        public BatchQueryDef addBatch() {
+
+            rows.add(row);
+            row = new Object[columns.size()];
+
+            if (rows.size() >= rowLimit)
+                flush();
+
+            return this;
+        }
+
+        public int execute() {
+
+            flush();
+
+            return executedCount;
+        }
+
+        public int getUpdateCount() {
+
+            return executedCount;
+        }
+
+        private void flush() {
+
+            if (rows.isEmpty())
+                return;
+
+            long start = System.currentTimeMillis();
+
+            try {
+
+                load(rows);
+
+            } catch (SQLException e) {
+
+                throw new UncheckedSQLException(e);
+
+            } catch (IOException e) {
+
+                throw new UncheckedIOException(e);
+            }
+
+            executedCount += rows.size();
+
+            long end = System.currentTimeMillis();
+
+            logger.debug("[Thread ID {}] - A bulk load of {} rows into {} was performed in {} ms.",
+                    Thread.currentThread().getId(), rows.size(), table, end - start == 0 ? 1 : end - start);
+
+            rows.clear();
+        }
+
+        protected abstract void load(List<Object[]> rows)
+                throws SQLException, IOException;
+    }
+
+    private class CopyBulkLoadImpl
+            extends BulkLoadImpl {
+
+        public CopyBulkLoadImpl(String table, List<String> columns) {
+
+            super(table, columns, batchSize);
+        }
+
+        protected void load(List<Object[]> rows)
+                throws SQLException, IOException {
+
+            StringBuilder builder = new StringBuilder();
+
+            for (Object[] row : rows) {
+
+                for (int i = 0; i < row.length; i++) {
+
+                    if (i > 0)
+                        builder.append(',');
+
+                    // an unquoted empty value is read as null in CSV format
+                    if (row[i] != null)
+                        builder.append('"').append(row[i].toString().replace("\"", "\"\"")).append('"');
+                }
+
+                builder.append('\n');
+            }
+
+            String sql = "copy " + table + " (" + String.join(", ", columns) + ") from stdin with (format csv)";
+
+            connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql, new StringReader(builder.toString()));
+        }
+    }
+
+    private class ValuesBulkLoadImpl
+            extends BulkLoadImpl {
+
+        public ValuesBulkLoadImpl(String table, List<String> columns) {
+
+            super(table, columns, Math.min(batchSize, MAX_BULK_LOAD_PARAMETERS / columns.size()));
+        }
+
+        protected void load(List<Object[]> rows)
+                throws SQLException {
+
+            String tuple = columns.stream().map(x -> "?").collect(Collectors.joining(", ", "(", ")"));
+            String sql = "insert into " + table + " (" + String.join(", ", columns) + ") values " +
+                    String.join(", ", Collections.nCopies(rows.size(), tuple));
+
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+
+                int key = 0;
+
+                for (Object[] row : rows)
+                    for (Object value : row)
+                        setValue(statement, ++key, value);
+
+                statement.executeUpdate();
+            }
+        }
+    }
+
+    private class BatchQueryDefImpl
+            implements BatchQueryDef {
+
+        private final String clause;
+        private Map<String, Object> parameters = new HashMap<>();
+        private PreparedStatement statement;
+        private String statementSql;
+        private Map<String, Class<?>> translationShape;
+        private SqlTranslationCache.Translation translation;
+        private int pendingCount;
+        private int executedCount;
+        private int updateCount;
+
+        public BatchQueryDefImpl(String clause) {
+
+            this.clause = clause.trim();
+        }
+
+        public BatchQueryDef on(String key, Object value) {
+
+            parameters.put(key, value);
+
+            return this;
+        }
+
+        public BatchQueryDef addBatch() {
+
+            String sql;
+
+            if (clause.startsWith(NATIVE_SQL_INDICATOR)) {
+
+                sql = clause.substring(NATIVE_SQL_INDICATOR.length()).trim();
+
+            } else {
+
+                // the translation is only looked up again if the types of bound values change between entries
+                if (!hasParameterShape(parameters, translationShape)) {
+
+                    translation = getTranslation(clause, parameters);
+                    translationShape = getParameterShape(parameters);
+                }
+
+                sql = translation.getSql();
+            }
+
+            try {
+
+                // the rendered SQL can differ between entries if the types of bound values differ
+                if (statement != null && !statementSql.equals(sql))
+                    release();
+
+                if (statement == null) {
+
+                    logger.debug("[Thread ID {}] - Apply dialect specific SQL statement for batch processing:\n{}",
+                            Thread.currentThread().getId(), sql);
+
+                    statement = connection.prepareStatement(sql);
+                    statementSql = sql;
+                }
+
+                setValues(statement, translation, parameters);
+                statement.addBatch();
+                pendingCount++;
+
+                if (pendingCount >= batchSize)
+                    flush();
+
+            } catch (SQLException e) {
+
+                close();
+
+                throw new UncheckedSQLException(e);
+            }
+
+            parameters = new HashMap<>();
+
+            return this;
+        }
+
+        public int execute() {
+
+            try {
+
+                release();
+
+            } catch (SQLException e) {
+
+                close();
+
+                throw new UncheckedSQLException(e);
+            }
+
+            return executedCount;
+        }
+
+        public int getUpdateCount() {
+
+            return updateCount;
+        }
+
+        private void flush()
+                throws SQLException {
+
+            if (pendingCount == 0)
+                return;
+
+            long start = System.currentTimeMillis();
+
+            for (int count : statement.executeBatch())
+                updateCount += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+
+            executedCount += pendingCount;
+
+            long end = System.currentTimeMillis();
+
+            logger.debug("[Thread ID {}] - A batch of {} statements was performed in {} ms.",
+                    Thread.currentThread().getId(), pendingCount, end - start == 0 ? 1 : end - start);
+
+            pendingCount = 0;
+        }
+
+        private void release()
+                throws SQLException {
+
+            if (statement == null)
+                return;
+
+            try {
+
+                flush();
+
+            } finally {
+
+                close();
+            }
+        }
+
+        private void close() {
+
+            if (statement == null)
+                return;
+
+            try {
+
+                statement.close();
+
+            } catch (SQLException e) {
+
+                logger.error("Cannot close prepared statement.", e);
+
+            } finally {
+
+                statement = null;
+                statementSql = null;
+                pendingCount = 0;
+            }
+        }
+    }
+
     private class QueryDefImpl
             implements QueryDef {
 
         private final String clauseOrId;
         private final Map<String, Object> parameters;
         private final boolean byId;
+        private final int queryTimeout;
+        private final int fetchSize;
 
         public QueryDefImpl(String clauseOrId, Map<String, Object> parameters, boolean byId) {
 
+            this(clauseOrId, parameters, byId, 0, 0);
+        }
+
+        public QueryDefImpl(String clauseOrId, Map<String, Object> parameters, boolean byId, int queryTimeout,
+                            int fetchSize) {
+
             this.clauseOrId = clauseOrId;
             this.parameters = parameters;
             this.byId = byId;
+            this.queryTimeout = queryTimeout;
+            this.fetchSize = fetchSize;
         }
 
         public QueryDefImpl on(String key, Object value) {
@@ -750,7 +1399,7 @@ public class Executor {
 
             parameters.put(key, value);
 
-            return new QueryDefImpl(clauseOrId, parameters, byId);
+            return new QueryDefImpl(clauseOrId, parameters, byId, queryTimeout, fetchSize);
         }
 
         public QueryDef on(List<Object> arguments) {
@@ -761,7 +1410,17 @@ public class Executor {
             for (Object argument : arguments)
                 parameters.put(Integer.toString(index++), argument);
 
-            return new QueryDefImpl(clauseOrId, parameters, byId);
+            return new QueryDefImpl(clauseOrId, parameters, byId, queryTimeout, fetchSize);
+        }
+
+        public QueryDef withQueryTimeout(int seconds) {
+
+            return new QueryDefImpl(clauseOrId, parameters, byId, seconds, fetchSize);
+        }
+
+        public QueryDef withFetchSize(int rows) {
+
+            return new QueryDefImpl(clauseOrId, parameters, byId, queryTimeout, rows);
         }
 
         public <T extends Result> T execute(Class<T> clazz) {
@@ -769,9 +1428,9 @@ public class Executor {
             try {
 
                 if (byId)
-                    return Executor.this.executeById(clauseOrId, parameters, clazz);
+                    return Executor.this.executeById(clauseOrId, parameters, queryTimeout, fetchSize, clazz);
                 else
-                    return Executor.this.execute(clauseOrId, parameters, clazz);
+                    return Executor.this.execute(clauseOrId, parameters, queryTimeout, fetchSize, clazz);
 
             } catch (SQLException e) {
 
@@ -784,14 +1443,21 @@ public class Executor {
             try {
 
                 boolean commitState = Executor.this.connection.getAutoCommit();
+
                 Executor.this.connection.setAutoCommit(true);
-                Object result;
-                if (byId)
-                     result= Executor.this.executeById(clauseOrId, parameters, clazz);
-                else
-                    result= Executor.this.execute(clauseOrId, parameters, clazz);
-                Executor.this.connection.setAutoCommit(commitState);
-                return (T) result;
+
+                // the previous state is also restored if the statement fails
+                try {
+
+                    if (byId)
+                        return Executor.this.executeById(clauseOrId, parameters, queryTimeout, fetchSize, clazz);
+                    else
+                        return Executor.this.execute(clauseOrId, parameters, queryTimeout, fetchSize, clazz);
+
+                } finally {
+
+                    Executor.this.connection.setAutoCommit(commitState);
+                }
 
             } catch (SQLException e) {
 
@@ -811,6 +1477,8 @@ public class Executor {
             QueryDefImpl queryDef = (QueryDefImpl) that;
 
             return byId == queryDef.byId &&
+                    queryTimeout == queryDef.queryTimeout &&
+                    fetchSize == queryDef.fetchSize &&
                     Objects.equals(clauseOrId, queryDef.clauseOrId) &&
                     Objects.equals(parameters, queryDef.parameters);
         }
@@ -818,7 +1486,7 @@ public class Executor {
         @Override
         public int hashCode() {
 
-            return Objects.hash(clauseOrId, parameters, byId);
+            return Objects.hash(clauseOrId, parameters, byId, queryTimeout, fetchSize);
         }
     }
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2019 ASERVO Software GmbH
+ * contact@aservo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.aservo.ldap.adapter.sql.impl;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+
+/**
+ * A bounded cache which evicts the least recently used value.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public class LruCache<K, V> {
+
+    private final int capacity;
+    private final Map<K, V> values;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Instantiates a new LRU cache.
+     *
+     * @param capacity the maximum number of cached values; zero disables caching
+     */
+    public LruCache(int capacity) {
+
+        this.capacity = capacity;
+
+        values = Collections.synchronizedMap(new LinkedHashMap<K, V>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+
+                return size() > LruCache.this.capacity;
+            }
+        });
+    }
+
+    /**
+     * Gets a cached value or computes a new one.
+     *
+     * @param key      the key
+     * @param supplier the supplier used on cache miss
+     * @return the value
+     */
+    public V get(K key, Supplier<V> supplier) {
+
+        V value = capacity > 0 ? values.get(key) : null;
+
+        if (value != null) {
+
+            hitCount.incrementAndGet();
+
+            return value;
+        }
+
+        missCount.incrementAndGet();
+        value = supplier.get();
+
+        if (capacity > 0)
+            values.put(key, value);
+
+        return value;
+    }
+
+    /**
+     * Gets the number of cache hits.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+
+        return hitCount.get();
+    }
+
+    /**
+     * Gets the number of cache misses.
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+
+        return missCount.get();
+    }
+
+    /**
+     * Gets the number of cached values.
+     *
+     * @return the size
+     */
+    public int size() {
+
+        return values.size();
+    }
+}
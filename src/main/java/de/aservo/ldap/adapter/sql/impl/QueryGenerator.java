@@ -20,14 +20,22 @@ package de.aservo.ldap.adapter.sql.impl;
 import de.aservo.ldap.adapter.api.LdapUtils;
 import de.aservo.ldap.adapter.api.database.QueryDef;
 import de.aservo.ldap.adapter.api.database.QueryDefFactory;
+import de.aservo.ldap.adapter.api.entity.ColumnNames;
 import de.aservo.ldap.adapter.api.entity.EntityType;
 import de.aservo.ldap.adapter.api.query.*;
 import org.apache.directory.api.ldap.model.constants.SchemaConstants;
 import org.apache.directory.api.ldap.model.schema.SchemaManager;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 
 public class QueryGenerator {
@@ -37,188 +45,659 @@ public class QueryGenerator {
     private static final int GROUP_MEMBER_GROUP_FLAG = 4;
     private static final int GROUP_MEMBER_USER_FLAG = 8;
 
+    // literals of query expressions are replaced by slots to share the compiled SQL between equally shaped queries
+    private static final String SLOT_INDICATOR = "\u0000";
+    private static final Pattern SLOT_PATTERN = Pattern.compile("\u0000(\\d+)\u0000([bcs]\\d+|[GUguk]*)");
+
+    // the length of the lower case key columns in the schema
+    private static final int KEY_LENGTH = 255;
+
+    // wildcard filters with more candidates of the trigram index are answered by the database alone
+    private static final int MAX_CANDIDATES = 1024;
+
+    // larger lists of values are padded to a multiple of this size instead of a power of two
+    private static final int BUCKET_STEP = 256;
+
+    // sort key columns which never contain null values; they are ordered without a null check to use the index
+    private static final Set<String> REQUIRED_SORT_KEY_COLUMNS =
+            Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+                    ColumnNames.ID,
+                    ColumnNames.NAME + ColumnNames.KEY_SUFFIX,
+                    ColumnNames.USERNAME + ColumnNames.KEY_SUFFIX)));
+
     private final SchemaManager schemaManager;
     private final String dcId;
     private final boolean flattening;
     private final boolean activeUsersOnly;
-    private final boolean useMaterializedViews;
+    private final boolean applyNativeSql;
+    private final QueryPlanCache planCache;
+    private final TrigramIndex trigramIndex;
 
     public QueryGenerator(SchemaManager schemaManager, String dcId, boolean flattening, boolean activeUsersOnly,
-                          boolean useMaterializedViews) {
+                          boolean applyNativeSql, QueryPlanCache planCache, TrigramIndex trigramIndex) {
 
         this.schemaManager = schemaManager;
         this.dcId = dcId;
         this.flattening = flattening;
         this.activeUsersOnly = activeUsersOnly;
-        this.useMaterializedViews = useMaterializedViews;
+        this.applyNativeSql = applyNativeSql;
+        this.planCache = planCache;
+        this.trigramIndex = trigramIndex;
     }
 
-    public QueryDef generate(EntityType entityType, QueryDefFactory factory, QueryExpression expression) {
+    /**
+     * Evaluates the parts of a query expression which do not depend on stored values and optimizes the rest.
+     * A result of false means that no entity can match.
+     *
+     * @param entityType the entity type
+     * @param expression the query expression
+     * @return the prepared query expression
+     */
+    public QueryExpression prepare(EntityType entityType, QueryExpression expression) {
 
         if (entityType == EntityType.GROUP)
             expression = LdapUtils.preEvaluateExpressionForGroup(expression);
-        else if (entityType == EntityType.USER)
-            expression = LdapUtils.preEvaluateExpressionForUser(expression);
         else
-            throw new IllegalArgumentException("Expect supported entity type.");
+            expression = LdapUtils.preEvaluateExpressionForUser(expression);
 
         expression = LdapUtils.removeNotExpressions(LdapUtils.removeValueExpressions(expression));
 
+        return QueryOptimizer.optimize(expression);
+    }
+
+    /**
+     * Generates the query for a prepared query expression.
+     *
+     * @param entityType the entity type
+     * @param factory    the query definition factory
+     * @param expression the query expression returned by {@link #prepare(EntityType, QueryExpression)}
+     * @param attributes the requested attributes
+     * @return the query definition
+     */
+    public QueryDef generate(EntityType entityType, QueryDefFactory factory, QueryExpression expression,
+                             Set<String> attributes) {
+
+        return generate(entityType, factory, expression, attributes, Collections.emptyList(), null, 0);
+    }
+
+    /**
+     * Generates the query for ordered entities for a prepared query expression.
+     * Entities are ordered by the sort criteria first and then by ID.
+     *
+     * @param entityType   the entity type
+     * @param factory      the query definition factory
+     * @param expression   the query expression returned by {@link #prepare(EntityType, QueryExpression)}
+     * @param attributes   the requested attributes
+     * @param sortCriteria the sort criteria with normalized attributes
+     * @param lowerBoundId the exclusive lower bound of entity IDs or null for the first page
+     * @param limit        the maximum number of entities or zero for no limit
+     * @return the query definition
+     */
+    public QueryDef generate(EntityType entityType, QueryDefFactory factory, QueryExpression expression,
+                             Set<String> attributes, List<SortCriterion> sortCriteria, String lowerBoundId,
+                             int limit) {
+
+        if (entityType != EntityType.GROUP && entityType != EntityType.USER)
+            throw new IllegalArgumentException("Expect supported entity type.");
+
+        if (lowerBoundId != null && !sortCriteria.isEmpty())
+            throw new IllegalArgumentException("Expect entities ordered by ID for a lower bound ID.");
+
+        int aggregationPlan = createAggregationPlan(entityType, attributes);
+        List<BinaryOperator<?>> literals = new ArrayList<>();
+        List<List<String>> candidates = new ArrayList<>();
+        StringBuilder shape = new StringBuilder();
+        QueryExpression template = createTemplate(entityType, expression, literals, candidates, shape);
+
+        if (literals.stream().anyMatch(x -> x.getValue().contains(SLOT_INDICATOR))) {
+
+            // literals which look like slots cannot be cached
+            QueryPlanCache.Plan plan =
+                    compile(entityType, expression, aggregationPlan, sortCriteria, lowerBoundId != null, limit > 0);
+            List<Object> arguments = new ArrayList<>(plan.getArguments());
+
+            bindPage(arguments, lowerBoundId, limit);
+
+            return factory.query(plan.getSql()).on(arguments);
+        }
+
+        String key = entityType + ";" + aggregationPlan + ";" + flattening + ";" + activeUsersOnly + ";" +
+                applyNativeSql + ";" + dcId + ";" + getSortKey(sortCriteria) + ";" + (lowerBoundId != null) + ";" +
+                (limit > 0) + ";" + shape;
+
+        QueryPlanCache.Plan plan =
+                planCache.get(key, () -> compile(entityType, template, aggregationPlan, sortCriteria,
+                        lowerBoundId != null, limit > 0));
+
+        List<Object> arguments =
+                plan.getArguments().stream()
+                        .map(x -> bindArgument(x, literals, candidates))
+                        .collect(Collectors.toList());
+
+        bindPage(arguments, lowerBoundId, limit);
+
+        return factory.query(plan.getSql()).on(arguments);
+    }
+
+    private QueryPlanCache.Plan compile(EntityType entityType, QueryExpression expression, int aggregationPlan,
+                                        List<SortCriterion> sortCriteria, boolean keyset, boolean limited) {
+
         StringBuilder builder = new StringBuilder();
         List<Object> arguments = new ArrayList<>();
-        int joinPlan = createJoinPlan(entityType);
 
-        generateSelectClause(builder, entityType, joinPlan, arguments);
-        generateJoinClauses(builder, entityType, joinPlan);
-        generateWhereClause(builder, entityType, joinPlan, expression, arguments);
-        generateOrderByClause(builder, entityType);
+        generateSelectClause(builder, entityType, aggregationPlan, arguments);
+        generateWhereClause(builder, entityType, expression, arguments, keyset);
+        generateOrderByClause(builder, entityType, sortCriteria);
 
-        return factory.query(builder.toString()).on(arguments);
+        if (limited) {
+
+            builder.append(" limit ?");
+            arguments.add(0);
+        }
+
+        return new QueryPlanCache.Plan(builder.toString(), arguments);
     }
 
-    private int createJoinPlan(EntityType entityType) {
+    private String getSortKey(List<SortCriterion> sortCriteria) {
 
-        int mask = 0;
+        return sortCriteria.stream()
+                .map(x -> (x.isReversed() ? "-" : "+") + x.getAttribute())
+                .collect(Collectors.joining(","));
+    }
 
-        if (entityType == EntityType.GROUP)
-            mask |= GROUP_MEMBER_USER_FLAG;
+    private void bindPage(List<Object> arguments, String lowerBoundId, int limit) {
+
+        // the keyset condition and the limit are placed at the end of the statement
+        if (limit > 0)
+            arguments.set(arguments.size() - 1, limit);
 
-        if (entityType == EntityType.GROUP && !flattening)
-            mask |= GROUP_MEMBER_OF_FLAG | GROUP_MEMBER_GROUP_FLAG;
+        if (lowerBoundId != null)
+            arguments.set(arguments.size() - (limit > 0 ? 2 : 1), lowerBoundId.toLowerCase());
+    }
 
-        if (entityType == EntityType.USER)
-            mask |= USER_MEMBER_OF_FLAG;
+    private QueryExpression createTemplate(EntityType entityType, QueryExpression expression,
+                                           List<BinaryOperator<?>> literals, List<List<String>> candidates,
+                                           StringBuilder shape) {
 
-        return mask;
+        if (expression instanceof LogicExpression) {
+
+            if (expression instanceof AndLogicExpression)
+                shape.append("&(");
+            else if (expression instanceof OrLogicExpression)
+                shape.append("|(");
+            else
+                shape.append("!(");
+
+            List<QueryExpression> children =
+                    ((LogicExpression) expression).getChildren().stream()
+                            .map(x -> createTemplate(entityType, x, literals, candidates, shape))
+                            .collect(Collectors.toList());
+
+            shape.append(")");
+
+            if (expression instanceof AndLogicExpression)
+                return new AndLogicExpression(children);
+            else if (expression instanceof OrLogicExpression)
+                return new OrLogicExpression(children);
+            else
+                return new NotLogicExpression(children);
+
+        } else if (expression instanceof BooleanValue) {
+
+            shape.append(((BooleanValue) expression).getValue());
+
+            return expression;
+
+        } else if (expression instanceof OperatorExpression) {
+
+            OperatorExpression operator = (OperatorExpression) expression;
+            String attribute = LdapUtils.normalizeAttribute(operator.getAttribute());
+
+            shape.append("(").append(operator.getClass().getSimpleName()).append(":").append(attribute);
+            shape.append(":").append(operator.isNegated()).append(":");
+
+            if (operator instanceof InOperator) {
+
+                InOperator in = (InOperator) operator;
+                String slot = SLOT_INDICATOR + literals.size() + SLOT_INDICATOR;
+
+                // the values are bound like candidates; the other literals only keep them visible for the slot check
+                for (String value : in.getValues()) {
+
+                    literals.add(new EqualOperator(in.getAttribute(), value, false, in.isIgnoreCase()));
+                    candidates.add(null);
+                }
+
+                candidates.set(candidates.size() - in.getValues().size(),
+                        in.getValues().stream().map(String::toLowerCase).collect(Collectors.toList()));
+
+                // values shorter than the key columns are matched by the index lookup alone and bound only once
+                String kind = in.getValues().stream().allMatch(x -> x.length() < KEY_LENGTH) ? "s" : "c";
+                int bucketSize = getBucketSize(in.getValues().size());
+                List<String> slots = new ArrayList<>();
+
+                for (int i = 0; i < bucketSize; i++)
+                    slots.add(slot + kind + i);
+
+                shape.append(kind).append(bucketSize).append(")");
+
+                return new InOperator(in.getAttribute(), slots, in.isNegated(), in.isIgnoreCase());
+            }
+
+            // values of object class and organizational unit are evaluated before the SQL statement is generated
+            if (attribute.equals(SchemaConstants.OBJECT_CLASS_AT_OID) || attribute.equals(SchemaConstants.OU_AT_OID) ||
+                    !(operator instanceof BinaryOperator)) {
+
+                if (operator instanceof BinaryOperator)
+                    shape.append(((BinaryOperator<?>) operator).getValue());
+
+                shape.append(")");
+
+                return expression;
+            }
+
+            String slot = SLOT_INDICATOR + literals.size() + SLOT_INDICATOR;
+
+            literals.add((BinaryOperator<?>) operator);
+
+            if (operator instanceof WildcardOperator) {
+
+                WildcardOperator wildcard = (WildcardOperator) operator;
+                List<String> ids = findCandidates(entityType, attribute, wildcard);
+
+                candidates.add(ids);
+
+                // the number of candidates rounded up to a bucket size determines the structure of the SQL statement
+                if (ids != null) {
+
+                    int bucketSize = getBucketSize(ids.size());
+
+                    slot += "b" + bucketSize;
+                    shape.append("b").append(bucketSize);
+                }
+
+                shape.append("?)");
+
+                return new WildcardOperator(wildcard.getAttribute(), wildcard.getPattern(), slot, null,
+                        Collections.emptyList(), wildcard.isNegated(), wildcard.isIgnoreCase());
+            }
+
+            EqualOperator equal = (EqualOperator) operator;
+
+            candidates.add(null);
+
+            if (attribute.equals(SchemaConstants.MEMBER_AT_OID) ||
+                    attribute.equals(SchemaConstants.UNIQUE_MEMBER_AT_OID) ||
+                    attribute.equals(LdapUtils.MEMBER_OF_AT_OID)) {
+
+                // the kinds of entities a DN refers to determine the structure of the SQL statement
+                if (LdapUtils.getGroupIdFromDn(schemaManager, equal.getValue(), dcId) != null)
+                    slot += "G";
+
+                if (LdapUtils.getUserIdFromDn(schemaManager, equal.getValue(), dcId) != null)
+                    slot += "U";
+
+                shape.append(slot.substring(slot.lastIndexOf(SLOT_INDICATOR) + 1));
+            }
+
+            shape.append("?)");
+
+            return new EqualOperator(equal.getAttribute(), slot, equal.isNegated(), equal.isIgnoreCase());
+        }
+
+        throw new IllegalArgumentException("Cannot process unexpected query expression " +
+                expression.getClass().getName());
     }
 
-    private void generateSelectClause(StringBuilder builder, EntityType entityType, int joinPlan,
-                                      List<Object> arguments) {
+    private List<String> findCandidates(EntityType entityType, String attribute, WildcardOperator operator) {
+
+        if (trigramIndex == null)
+            return null;
+
+        String column = null;
 
         if (entityType == EntityType.GROUP) {
 
-            builder.append("select ? as type, g.*");
-            arguments.add(EntityType.GROUP.toString().toLowerCase());
+            if (attribute.equals(SchemaConstants.CN_AT_OID))
+                column = ColumnNames.NAME;
 
-            if ((joinPlan & GROUP_MEMBER_OF_FLAG) != 0)
-                builder.append(", gp.name as parent_group_name");
+        } else if (entityType == EntityType.USER) {
 
-            if ((joinPlan & GROUP_MEMBER_GROUP_FLAG) != 0)
-                builder.append(", gc.name as member_group_name");
+            if (attribute.equals(SchemaConstants.CN_AT_OID))
+                column = ColumnNames.USERNAME;
+            else if (attribute.equals(SchemaConstants.SN_AT_OID))
+                column = ColumnNames.LAST_NAME;
+            else if (attribute.equals(SchemaConstants.GN_AT_OID))
+                column = ColumnNames.FIRST_NAME;
+            else if (attribute.equals(SchemaConstants.DISPLAY_NAME_AT_OID))
+                column = ColumnNames.DISPLAY_NAME;
+            else if (attribute.equals(SchemaConstants.MAIL_AT_OID))
+                column = ColumnNames.EMAIL;
+        }
 
-            if ((joinPlan & GROUP_MEMBER_USER_FLAG) != 0)
-                builder.append(", u.username as member_user_username");
+        if (column == null)
+            return null;
 
-            builder.append(" from _Group g ");
+        List<String> ids = trigramIndex.findCandidates(entityType, column, operator);
 
-        } else if (entityType == EntityType.USER) {
+        if (ids == null || ids.size() > MAX_CANDIDATES)
+            return null;
 
-            builder.append("select ? as type, u.*");
-            arguments.add(EntityType.USER.toString().toLowerCase());
+        return ids;
+    }
 
-            if ((joinPlan & USER_MEMBER_OF_FLAG) != 0)
-                builder.append(", g.name as parent_group_name");
+    private int getBucketSize(int size) {
 
-            builder.append(" from _User u ");
+        if (size <= 1)
+            return size;
+
+        // powers of two keep the number of statements small; steps limit the padding of long lists
+        if (size <= BUCKET_STEP)
+            return Integer.highestOneBit(size - 1) << 1;
+
+        return (size + BUCKET_STEP - 1) / BUCKET_STEP * BUCKET_STEP;
+    }
+
+    private Object bindArgument(Object argument, List<BinaryOperator<?>> literals, List<List<String>> candidates) {
+
+        if (!(argument instanceof String))
+            return argument;
+
+        Matcher matcher = SLOT_PATTERN.matcher((String) argument);
+
+        if (!matcher.find())
+            return argument;
+
+        BinaryOperator<?> literal = literals.get(Integer.parseInt(matcher.group(1)));
+
+        if (matcher.group(2).equals("k"))
+            return getKeyPattern(((WildcardOperator) literal).getValue(WildcardOperator.Format.SQL));
+
+        if (matcher.group(2).startsWith("c") || matcher.group(2).startsWith("s")) {
+
+            // buckets are filled up by repeating the last candidate
+            List<String> ids = candidates.get(Integer.parseInt(matcher.group(1)));
+
+            return ids.get(Math.min(Integer.parseInt(matcher.group(2).substring(1)), ids.size() - 1));
         }
+
+        if (literal instanceof WildcardOperator)
+            return ((WildcardOperator) literal).getValue(WildcardOperator.Format.SQL);
+
+        if (matcher.group(2).equals("g"))
+            return LdapUtils.getGroupIdFromDn(schemaManager, literal.getValue(), dcId).toLowerCase();
+
+        if (matcher.group(2).equals("u"))
+            return LdapUtils.getUserIdFromDn(schemaManager, literal.getValue(), dcId).toLowerCase();
+
+        return literal.getValue().toLowerCase();
     }
 
-    private void generateJoinClauses(StringBuilder builder, EntityType entityType, int joinPlan) {
+    private String resolveGroupId(String dn) {
+
+        Matcher matcher = SLOT_PATTERN.matcher(dn);
+
+        if (matcher.matches())
+            return matcher.group(2).contains("G") ? SLOT_INDICATOR + matcher.group(1) + SLOT_INDICATOR + "g" : null;
+
+        return LdapUtils.getGroupIdFromDn(schemaManager, dn, dcId);
+    }
+
+    private String resolveUserId(String dn) {
+
+        Matcher matcher = SLOT_PATTERN.matcher(dn);
+
+        if (matcher.matches())
+            return matcher.group(2).contains("U") ? SLOT_INDICATOR + matcher.group(1) + SLOT_INDICATOR + "u" : null;
+
+        return LdapUtils.getUserIdFromDn(schemaManager, dn, dcId);
+    }
+
+    public QueryDef generateById(EntityType entityType, QueryDefFactory factory, String id, Set<String> attributes) {
+
+        StringBuilder builder = new StringBuilder();
+        List<Object> arguments = new ArrayList<>();
+        int aggregationPlan = createAggregationPlan(entityType, attributes);
+
+        generateSelectClause(builder, entityType, aggregationPlan, arguments);
 
         if (entityType == EntityType.GROUP) {
 
-            if ((joinPlan & GROUP_MEMBER_OF_FLAG) != 0) {
+            builder.append("where g.id = ? ");
+            arguments.add(id.toLowerCase());
 
-                if (flattening)
-                    if (useMaterializedViews)
-                        builder.append("left outer join _Group_Membership_Transitive mp ");
-                    else
-                        builder.append("left outer join _Group_Membership_Transitive_Non_Materialized mp ");
-                else
-                    builder.append("left outer join _Group_Membership mp ");
+        } else if (entityType == EntityType.USER) {
 
-                builder.append("on mp.member_group_id = g.id ");
+            builder.append("where u.id = ? and ( u.active is null or u.active or ? = 'false' ) ");
+            arguments.add(id.toLowerCase());
+            arguments.add(activeUsersOnly);
 
-                builder.append("left outer join _Group gp on gp.id = mp.parent_group_id ");
-            }
+        } else
+            throw new IllegalArgumentException("Expect supported entity type.");
 
-            if ((joinPlan & GROUP_MEMBER_GROUP_FLAG) != 0) {
+        return factory.query(builder.toString()).on(arguments);
+    }
 
-                if (flattening)
-                    if (useMaterializedViews)
-                        builder.append("left outer join _Group_Membership_Transitive mc ");
-                    else
-                        builder.append("left outer join _Group_Membership_Transitive_Non_Materialized mc ");
-                else
-                    builder.append("left outer join _Group_Membership mc ");
+    private int createAggregationPlan(EntityType entityType, Set<String> attributes) {
 
-                builder.append("on mc.parent_group_id = g.id ");
+        int mask = 0;
 
-                builder.append("left outer join _Group gc on gc.id = mc.member_group_id ");
-            }
+        // memberships are aggregated only if they are returned as attributes;
+        // filters on memberships are performed with sub-queries
 
-            if ((joinPlan & GROUP_MEMBER_USER_FLAG) != 0) {
+        if (entityType == EntityType.GROUP) {
 
-                if (flattening)
-                    if (useMaterializedViews)
-                        builder.append("left outer join _User_Membership_Transitive mu ");
-                    else
-                        builder.append("left outer join _User_Membership_Transitive_Non_Materialized mu ");
-                else
-                    builder.append("left outer join _User_Membership mu ");
+            if (isRequested(attributes, SchemaConstants.MEMBER_AT_OID)) {
 
-                builder.append("on mu.parent_group_id = g.id ");
+                mask |= GROUP_MEMBER_USER_FLAG;
 
-                builder.append("left outer join _User u on u.id = mu.member_user_id ");
+                if (!flattening)
+                    mask |= GROUP_MEMBER_GROUP_FLAG;
             }
 
+            if (!flattening && isRequested(attributes, LdapUtils.MEMBER_OF_AT_OID))
+                mask |= GROUP_MEMBER_OF_FLAG;
+
         } else if (entityType == EntityType.USER) {
 
-            if ((joinPlan & USER_MEMBER_OF_FLAG) != 0) {
+            if (isRequested(attributes, LdapUtils.MEMBER_OF_AT_OID))
+                mask |= USER_MEMBER_OF_FLAG;
+        }
+
+        return mask;
+    }
+
+    private boolean isRequested(Set<String> attributes, String attribute) {
+
+        return attributes.isEmpty() || attributes.contains(attribute);
+    }
+
+    private void generateSelectClause(StringBuilder builder, EntityType entityType, int aggregationPlan,
+                                      List<Object> arguments) {
+
+        // the names of related entities are aggregated to a single column to get exactly one row per entity
+
+        if (entityType == EntityType.GROUP) {
+
+            builder.append("select ? as type, g.*");
+            arguments.add(EntityType.GROUP.toString().toLowerCase());
 
-                if (flattening)
-                    if (useMaterializedViews)
-                        builder.append("left outer join _User_Membership_Transitive mu ");
-                    else
-                        builder.append("left outer join _User_Membership_Transitive_Non_Materialized mu ");
-                else
-                    builder.append("left outer join _User_Membership mu ");
+            if ((aggregationPlan & GROUP_MEMBER_OF_FLAG) != 0) {
 
-                builder.append("on mu.member_user_id = u.id ");
+                builder.append(", ( select ");
+                appendAggregation(builder, "gp.name");
+                builder.append("from ");
+                builder.append(getGroupMembershipTable());
+                builder.append(" mp join _Group gp on gp.id = mp.parent_group_id ");
+                builder.append("where mp.member_group_id = g.id ) as ");
+                builder.append(ColumnNames.PARENT_GROUP_NAMES);
+            }
 
-                builder.append("left outer join _Group g on g.id = mu.parent_group_id ");
+            if ((aggregationPlan & GROUP_MEMBER_GROUP_FLAG) != 0) {
+
+                builder.append(", ( select ");
+                appendAggregation(builder, "gc.name");
+                builder.append("from ");
+                builder.append(getGroupMembershipTable());
+                builder.append(" mc join _Group gc on gc.id = mc.member_group_id ");
+                builder.append("where mc.parent_group_id = g.id ) as ");
+                builder.append(ColumnNames.MEMBER_GROUP_NAMES);
             }
+
+            if ((aggregationPlan & GROUP_MEMBER_USER_FLAG) != 0) {
+
+                builder.append(", ( select ");
+                appendAggregation(builder, "u.username");
+                builder.append("from ");
+                builder.append(getUserMembershipTable());
+                builder.append(" mu join _User u on u.id = mu.member_user_id ");
+                builder.append("where mu.parent_group_id = g.id ");
+                builder.append("and ( u.active is null or u.active or ? = 'false' ) ) as ");
+                builder.append(ColumnNames.MEMBER_USER_USERNAMES);
+                arguments.add(activeUsersOnly);
+            }
+
+            builder.append(" from _Group g ");
+
+        } else if (entityType == EntityType.USER) {
+
+            builder.append("select ? as type, u.*");
+            arguments.add(EntityType.USER.toString().toLowerCase());
+
+            if ((aggregationPlan & USER_MEMBER_OF_FLAG) != 0) {
+
+                builder.append(", ( select ");
+                appendAggregation(builder, "g.name");
+                builder.append("from ");
+                builder.append(getUserMembershipTable());
+                builder.append(" mu join _Group g on g.id = mu.parent_group_id ");
+                builder.append("where mu.member_user_id = u.id ) as ");
+                builder.append(ColumnNames.PARENT_GROUP_NAMES);
+            }
+
+            builder.append(" from _User u ");
         }
     }
 
-    private void generateWhereClause(StringBuilder builder, EntityType entityType, int joinPlan,
-                                     QueryExpression expression, List<Object> arguments) {
+    private void appendAggregation(StringBuilder builder, String column) {
+
+        // the standard SQL aggregation is translated to the specific dialect (string_agg, group_concat, ...)
+        builder.append("listagg(");
+        builder.append(column);
+        builder.append(", '");
+        builder.append(ColumnNames.VALUE_SEPARATOR);
+        builder.append("') within group (order by ");
+        builder.append(column);
+        builder.append(") ");
+    }
+
+    private String getGroupMembershipTable() {
+
+        if (flattening)
+            return "_Group_Closure";
+        else
+            return "_Group_Membership";
+    }
+
+    private String getUserMembershipTable() {
+
+        if (flattening)
+            return "_User_Closure";
+        else
+            return "_User_Membership";
+    }
+
+    private void appendMembershipCondition(StringBuilder builder, String table, String column, String reference,
+                                           String filterColumn, boolean negated) {
+
+        // a correlated semi-join can use the primary key of the membership table and is safe for null values
+        if (negated)
+            builder.append("not ");
+
+        builder.append("exists ( select 1 from ");
+        builder.append(table);
+        builder.append(" m where m.");
+        builder.append(column);
+        builder.append(" = ");
+        builder.append(reference);
+        builder.append(" and m.");
+        builder.append(filterColumn);
+        builder.append(" = ? ) ");
+    }
+
+    private void generateWhereClause(StringBuilder builder, EntityType entityType, QueryExpression expression,
+                                     List<Object> arguments, boolean keyset) {
 
         builder.append("where ");
 
-        if ((joinPlan & (USER_MEMBER_OF_FLAG | GROUP_MEMBER_USER_FLAG)) != 0) {
+        if (entityType == EntityType.USER || keyset) {
 
             builder.append("( ");
         }
 
-        transformQueryExpressionToSql(builder, entityType, joinPlan, expression, arguments);
+        transformQueryExpressionToSql(builder, entityType, expression, arguments);
 
-        if ((joinPlan & (USER_MEMBER_OF_FLAG | GROUP_MEMBER_USER_FLAG)) != 0) {
+        if (entityType == EntityType.USER) {
 
             builder.append(") and ( u.active is null or u.active or ? = 'false' ) ");
             arguments.add(activeUsersOnly);
+
+        } else if (keyset) {
+
+            builder.append(") ");
+        }
+
+        // pages are continued after the last ID of the previous page; the primary key index delivers them in order
+        if (keyset) {
+
+            if (entityType == EntityType.GROUP)
+                builder.append("and g.id > ? ");
+            else
+                builder.append("and u.id > ? ");
+
+            arguments.add(null);
         }
     }
 
-    private void generateOrderByClause(StringBuilder builder, EntityType entityType) {
+    private void generateOrderByClause(StringBuilder builder, EntityType entityType,
+                                       List<SortCriterion> sortCriteria) {
 
-        if (entityType == EntityType.GROUP)
-            builder.append("order by g.id");
-        else if (entityType == EntityType.USER)
-            builder.append("order by u.id");
+        // there is exactly one row per entity; therefore, rows can be ordered by any column of the entity
+
+        String alias = entityType == EntityType.GROUP ? "g." : "u.";
+
+        builder.append("order by ");
+
+        for (SortCriterion criterion : sortCriteria) {
+
+            String column = LdapUtils.getSortKeyColumn(entityType, criterion.getAttribute());
+            String direction = criterion.isReversed() ? " desc" : "";
+
+            if (column == null)
+                continue;
+
+            // missing values are ordered last in a portable way; the ordering is reversed as a whole
+            if (!REQUIRED_SORT_KEY_COLUMNS.contains(column)) {
+
+                builder.append("case when ");
+                builder.append(alias);
+                builder.append(column);
+                builder.append(" is null then 1 else 0 end");
+                builder.append(direction);
+                builder.append(", ");
+            }
+
+            builder.append(alias);
+            builder.append(column);
+            builder.append(direction);
+            builder.append(", ");
+        }
+
+        builder.append(alias);
+        builder.append("id");
     }
 
-    private void transformQueryExpressionToSql(StringBuilder builder, EntityType entityType, int joinPlan,
+    private void transformQueryExpressionToSql(StringBuilder builder, EntityType entityType,
                                                QueryExpression expression, List<Object> arguments) {
 
         if (expression instanceof BooleanValue) {
@@ -241,17 +720,17 @@ public class QueryGenerator {
 
                 if (!iter.hasNext()) {
 
-                    transformQueryExpressionToSql(builder, entityType, joinPlan, first, arguments);
+                    transformQueryExpressionToSql(builder, entityType, first, arguments);
 
                 } else {
 
                     builder.append("( ");
-                    transformQueryExpressionToSql(builder, entityType, joinPlan, first, arguments);
+                    transformQueryExpressionToSql(builder, entityType, first, arguments);
 
                     while (iter.hasNext()) {
 
                         builder.append(" and ");
-                        transformQueryExpressionToSql(builder, entityType, joinPlan, iter.next(), arguments);
+                        transformQueryExpressionToSql(builder, entityType, iter.next(), arguments);
                     }
 
                     builder.append(") ");
@@ -273,17 +752,17 @@ public class QueryGenerator {
 
                 if (!iter.hasNext()) {
 
-                    transformQueryExpressionToSql(builder, entityType, joinPlan, first, arguments);
+                    transformQueryExpressionToSql(builder, entityType, first, arguments);
 
                 } else {
 
                     builder.append("( ");
-                    transformQueryExpressionToSql(builder, entityType, joinPlan, first, arguments);
+                    transformQueryExpressionToSql(builder, entityType, first, arguments);
 
                     while (iter.hasNext()) {
 
                         builder.append(" or ");
-                        transformQueryExpressionToSql(builder, entityType, joinPlan, iter.next(), arguments);
+                        transformQueryExpressionToSql(builder, entityType, iter.next(), arguments);
                     }
 
                     builder.append(") ");
@@ -306,7 +785,7 @@ public class QueryGenerator {
                 if (!iter.hasNext()) {
 
                     builder.append("not ");
-                    transformQueryExpressionToSql(builder, entityType, joinPlan, first, arguments);
+                    transformQueryExpressionToSql(builder, entityType, first, arguments);
 
                 } else {
 
@@ -315,12 +794,12 @@ public class QueryGenerator {
                     // ¬x ∨ ¬y ≡ ¬(x ∧ y)
 
                     builder.append("not ( ");
-                    transformQueryExpressionToSql(builder, entityType, joinPlan, first, arguments);
+                    transformQueryExpressionToSql(builder, entityType, first, arguments);
 
                     while (iter.hasNext()) {
 
                         builder.append(" or ");
-                        transformQueryExpressionToSql(builder, entityType, joinPlan, iter.next(), arguments);
+                        transformQueryExpressionToSql(builder, entityType, iter.next(), arguments);
                     }
 
                     builder.append(") ");
@@ -329,14 +808,14 @@ public class QueryGenerator {
 
         } else if (expression instanceof OperatorExpression) {
 
-            processOperator(builder, arguments, entityType, joinPlan, ((OperatorExpression) expression));
+            processOperator(builder, arguments, entityType, ((OperatorExpression) expression));
 
         } else
             throw new IllegalArgumentException("Cannot process unexpected query expression " +
                     expression.getClass().getName());
     }
 
-    private void processOperator(StringBuilder builder, List<Object> arguments, EntityType entityType, int joinPlan,
+    private void processOperator(StringBuilder builder, List<Object> arguments, EntityType entityType,
                                  OperatorExpression expression) {
 
         switch (LdapUtils.normalizeAttribute(expression.getAttribute())) {
@@ -353,15 +832,27 @@ public class QueryGenerator {
 
             case SchemaConstants.CN_AT_OID:
 
+                // the primary key is the lower case name; therefore, equality can be checked via index
+
                 if (entityType == EntityType.GROUP) {
 
-                    builder.append("lower(g.name) ");
-                    handleOperator(builder, arguments, expression);
+                    if (expression instanceof EqualOperator || expression instanceof InOperator) {
+
+                        builder.append("g.id ");
+                        handleOperator(builder, arguments, expression);
+
+                    } else
+                        handleKeyOperator(builder, arguments, entityType, "name", expression);
 
                 } else if (entityType == EntityType.USER) {
 
-                    builder.append("lower(u.username) ");
-                    handleOperator(builder, arguments, expression);
+                    if (expression instanceof EqualOperator || expression instanceof InOperator) {
+
+                        builder.append("u.id ");
+                        handleOperator(builder, arguments, expression);
+
+                    } else
+                        handleKeyOperator(builder, arguments, entityType, "username", expression);
                 }
 
                 break;
@@ -370,8 +861,7 @@ public class QueryGenerator {
 
                 if (entityType == EntityType.USER) {
 
-                    builder.append("lower(u.last_name) ");
-                    handleOperator(builder, arguments, expression);
+                    handleKeyOperator(builder, arguments, entityType, "last_name", expression);
                 }
 
                 break;
@@ -380,8 +870,7 @@ public class QueryGenerator {
 
                 if (entityType == EntityType.USER) {
 
-                    builder.append("lower(u.first_name) ");
-                    handleOperator(builder, arguments, expression);
+                    handleKeyOperator(builder, arguments, entityType, "first_name", expression);
                 }
 
                 break;
@@ -390,8 +879,7 @@ public class QueryGenerator {
 
                 if (entityType == EntityType.USER) {
 
-                    builder.append("lower(u.display_name) ");
-                    handleOperator(builder, arguments, expression);
+                    handleKeyOperator(builder, arguments, entityType, "display_name", expression);
                 }
 
                 break;
@@ -400,8 +888,7 @@ public class QueryGenerator {
 
                 if (entityType == EntityType.USER) {
 
-                    builder.append("lower(u.email) ");
-                    handleOperator(builder, arguments, expression);
+                    handleKeyOperator(builder, arguments, entityType, "email", expression);
                 }
 
                 break;
@@ -410,8 +897,7 @@ public class QueryGenerator {
 
                 if (entityType == EntityType.GROUP) {
 
-                    builder.append("lower(g.description) ");
-                    handleOperator(builder, arguments, expression);
+                    handleKeyOperator(builder, arguments, entityType, "description", expression);
                 }
 
                 break;
@@ -426,54 +912,23 @@ public class QueryGenerator {
                         String groupId = null;
                         String userId = null;
 
-                        if ((joinPlan & GROUP_MEMBER_GROUP_FLAG) != 0)
-                            groupId =
-                                    LdapUtils.getGroupIdFromDn(schemaManager,
-                                            ((EqualOperator) expression).getValue(), dcId);
+                        if (!flattening)
+                            groupId = resolveGroupId(((EqualOperator) expression).getValue());
 
-                        if ((joinPlan & GROUP_MEMBER_USER_FLAG) != 0)
-                            userId =
-                                    LdapUtils.getUserIdFromDn(schemaManager,
-                                            ((EqualOperator) expression).getValue(), dcId);
+                        userId = resolveUserId(((EqualOperator) expression).getValue());
 
                         if (groupId != null) {
 
-                            if (expression.isNegated())
-                                builder.append("g.id not in ( select parent_group_id ");
-                            else
-                                builder.append("g.id in ( select parent_group_id ");
-
-                            if (flattening)
-                                if (useMaterializedViews)
-                                    builder.append("from _Group_Membership_Transitive ");
-                                else
-                                    builder.append("from _Group_Membership_Transitive_Non_Materialized ");
-                            else
-                                builder.append("from _Group_Membership ");
-
-                            builder.append("where member_group_id = ? ");
+                            appendMembershipCondition(builder, getGroupMembershipTable(), "parent_group_id", "g.id",
+                                    "member_group_id", expression.isNegated());
                             arguments.add(groupId.toLowerCase());
-                            builder.append(") ");
                         }
 
                         if (userId != null) {
 
-                            if (expression.isNegated())
-                                builder.append("g.id not in ( select parent_group_id ");
-                            else
-                                builder.append("g.id in ( select parent_group_id ");
-
-                            if (flattening)
-                                if (useMaterializedViews)
-                                    builder.append("from _User_Membership_Transitive ");
-                                else
-                                    builder.append("from _User_Membership_Transitive_Non_Materialized ");
-                            else
-                                builder.append("from _User_Membership ");
-
-                            builder.append("where member_user_id = ? ");
+                            appendMembershipCondition(builder, getUserMembershipTable(), "parent_group_id", "g.id",
+                                    "member_user_id", expression.isNegated());
                             arguments.add(userId.toLowerCase());
-                            builder.append(") ");
                         }
 
                         if (groupId == null && userId == null) {
@@ -485,9 +940,23 @@ public class QueryGenerator {
                     } else if (expression instanceof PresenceOperator) {
 
                         if (expression.isNegated())
-                            builder.append("( mc.member_group_id is null and mu.member_user_id is null ) ");
-                        else
-                            builder.append("( mc.member_group_id is not null or mu.member_user_id is not null ) ");
+                            builder.append("not ");
+
+                        builder.append("( ");
+
+                        if (!flattening) {
+
+                            builder.append("exists ( select 1 from ");
+                            builder.append(getGroupMembershipTable());
+                            builder.append(" mc where mc.parent_group_id = g.id ) or ");
+                        }
+
+                        builder.append("exists ( select 1 from ");
+                        builder.append(getUserMembershipTable());
+                        builder.append(" mu join _User u on u.id = mu.member_user_id ");
+                        builder.append("where mu.parent_group_id = g.id ");
+                        builder.append("and ( u.active is null or u.active or ? = 'false' ) ) ) ");
+                        arguments.add(activeUsersOnly);
                     }
                 }
 
@@ -501,10 +970,8 @@ public class QueryGenerator {
 
                         String groupId = null;
 
-                        if ((joinPlan & GROUP_MEMBER_OF_FLAG) != 0)
-                            groupId =
-                                    LdapUtils.getGroupIdFromDn(schemaManager,
-                                            ((EqualOperator) expression).getValue(), dcId);
+                        if (!flattening)
+                            groupId = resolveGroupId(((EqualOperator) expression).getValue());
 
                         if (groupId == null) {
 
@@ -513,40 +980,35 @@ public class QueryGenerator {
 
                         } else {
 
-                            if (expression.isNegated())
-                                builder.append("g.id not in ( select member_group_id ");
-                            else
-                                builder.append("g.id in ( select member_group_id ");
-
-                            if (flattening)
-                                if (useMaterializedViews)
-                                    builder.append("from _Group_Membership_Transitive ");
-                                else
-                                    builder.append("from _Group_Membership_Transitive_Non_Materialized ");
-                            else
-                                builder.append("from _Group_Membership ");
-
-                            builder.append("where parent_group_id = ? ");
+                            appendMembershipCondition(builder, getGroupMembershipTable(), "member_group_id", "g.id",
+                                    "parent_group_id", expression.isNegated());
                             arguments.add(groupId.toLowerCase());
-                            builder.append(") ");
                         }
 
                     } else if (expression instanceof PresenceOperator) {
 
-                        builder.append("mp.parent_group_id ");
-                        builder.append(getOperator(expression));
+                        if (flattening) {
+
+                            // groups do not have a memberOf attribute in flattening mode
+                            builder.append("? = 'true' ");
+                            arguments.add(expression.isNegated());
+
+                        } else {
+
+                            if (expression.isNegated())
+                                builder.append("not ");
+
+                            builder.append("exists ( select 1 from ");
+                            builder.append(getGroupMembershipTable());
+                            builder.append(" mp where mp.member_group_id = g.id ) ");
+                        }
                     }
 
                 } else if (entityType == EntityType.USER) {
 
                     if (expression instanceof EqualOperator) {
 
-                        String groupId = null;
-
-                        if ((joinPlan & USER_MEMBER_OF_FLAG) != 0)
-                            groupId =
-                                    LdapUtils.getGroupIdFromDn(schemaManager,
-                                            ((EqualOperator) expression).getValue(), dcId);
+                        String groupId = resolveGroupId(((EqualOperator) expression).getValue());
 
                         if (groupId == null) {
 
@@ -555,28 +1017,19 @@ public class QueryGenerator {
 
                         } else {
 
-                            if (expression.isNegated())
-                                builder.append("u.id not in ( select member_user_id ");
-                            else
-                                builder.append("u.id in ( select member_user_id ");
-
-                            if (flattening)
-                                if (useMaterializedViews)
-                                    builder.append("from _User_Membership_Transitive ");
-                                else
-                                    builder.append("from _User_Membership_Transitive_Non_Materialized ");
-                            else
-                                builder.append("from _User_Membership ");
-
-                            builder.append("where parent_group_id = ? ");
+                            appendMembershipCondition(builder, getUserMembershipTable(), "member_user_id", "u.id",
+                                    "parent_group_id", expression.isNegated());
                             arguments.add(groupId.toLowerCase());
-                            builder.append(") ");
                         }
 
                     } else if (expression instanceof PresenceOperator) {
 
-                        builder.append("mu.parent_group_id ");
-                        builder.append(getOperator(expression));
+                        if (expression.isNegated())
+                            builder.append("not ");
+
+                        builder.append("exists ( select 1 from ");
+                        builder.append(getUserMembershipTable());
+                        builder.append(" mu where mu.member_user_id = u.id ) ");
                     }
                 }
 
@@ -592,7 +1045,11 @@ public class QueryGenerator {
 
         builder.append(getOperator(expression));
 
-        if (expression instanceof BinaryOperator) {
+        if (expression instanceof InOperator) {
+
+            appendValueList(builder, arguments, ((InOperator) expression).getValues(), "?");
+
+        } else if (expression instanceof BinaryOperator) {
 
             builder.append("? ");
 
@@ -603,6 +1060,190 @@ public class QueryGenerator {
         }
     }
 
+    private void handleKeyOperator(StringBuilder builder, List<Object> arguments, EntityType entityType,
+                                   String columnName, OperatorExpression expression) {
+
+        String alias = entityType == EntityType.GROUP ? "g." : "u.";
+        String keyColumn = alias + columnName + "_key";
+        String column = alias + columnName;
+
+        if (expression instanceof PresenceOperator) {
+
+            builder.append(keyColumn);
+            builder.append(" ");
+            handleOperator(builder, arguments, expression);
+
+            return;
+        }
+
+        // the indexed key column holds a truncated lower case copy of the value;
+        // therefore, the value itself is compared again after the index lookup
+
+        if (expression.isNegated())
+            builder.append("not ");
+
+        builder.append("( ");
+
+        // a missing value does not match; the negation includes it regardless of the lookup used below
+        if (expression.isNegated()) {
+
+            builder.append(column);
+            builder.append(" is not null and ");
+        }
+
+        if (expression instanceof WildcardOperator) {
+
+            String pattern = ((WildcardOperator) expression).getValue(WildcardOperator.Format.SQL);
+            Matcher matcher = SLOT_PATTERN.matcher(pattern);
+
+            if (matcher.lookingAt() && matcher.group(2).startsWith("b")) {
+
+                // the candidates of the trigram index replace the lookup via key column
+                int bucketSize = Integer.parseInt(matcher.group(2).substring(1));
+
+                if (bucketSize == 0) {
+
+                    builder.append("? = 'true' and lower(");
+                    arguments.add(false);
+
+                } else {
+
+                    builder.append(alias);
+                    builder.append("id in ( ");
+
+                    for (int i = 0; i < bucketSize; i++) {
+
+                        builder.append(i == 0 ? "?" : ", ?");
+                        arguments.add(SLOT_INDICATOR + matcher.group(1) + SLOT_INDICATOR + "c" + i);
+                    }
+
+                    builder.append(" ) and lower(");
+                }
+
+                builder.append(column);
+                builder.append(") like ? ");
+                arguments.add(pattern);
+                builder.append(") ");
+
+                return;
+            }
+
+            if (applyNativeSql) {
+
+                // the trigram indexes of the database cover the lower case values for any pattern
+                builder.append("lower(");
+                builder.append(column);
+                builder.append(") like ? ");
+                arguments.add(pattern);
+                builder.append(") ");
+
+                return;
+            }
+
+            builder.append(keyColumn);
+            builder.append(" like ? and lower(");
+            builder.append(column);
+            builder.append(") like ? ");
+            arguments.add(getKeyPattern(pattern));
+            arguments.add(pattern);
+
+        } else if (expression instanceof InOperator) {
+
+            List<String> values = ((InOperator) expression).getValues();
+
+            builder.append(keyColumn);
+            builder.append(" in ");
+
+            // a value shorter than the key column is equal to a truncated copy only if it is equal to the whole value
+            if (values.stream().allMatch(this::isShorterThanKey)) {
+
+                appendValueList(builder, arguments, values, "?");
+
+            } else {
+
+                appendValueList(builder, arguments, values, "substring(?, 1, " + KEY_LENGTH + ")");
+                builder.append("and lower(");
+                builder.append(column);
+                builder.append(") in ");
+                appendValueList(builder, arguments, values, "?");
+            }
+
+        } else {
+
+            String value = ((BinaryOperator<?>) expression).getValue().toLowerCase();
+
+            builder.append(keyColumn);
+            builder.append(" = substring(?, 1, ");
+            builder.append(KEY_LENGTH);
+            builder.append(") and lower(");
+            builder.append(column);
+            builder.append(") = ? ");
+            arguments.add(value);
+            arguments.add(value);
+        }
+
+        builder.append(") ");
+    }
+
+    private boolean isShorterThanKey(String value) {
+
+        Matcher matcher = SLOT_PATTERN.matcher(value);
+
+        if (matcher.matches())
+            return matcher.group(2).startsWith("s");
+
+        return value.length() < KEY_LENGTH;
+    }
+
+    private void appendValueList(StringBuilder builder, List<Object> arguments, List<String> values,
+                                 String placeholder) {
+
+        builder.append("( ");
+
+        for (int i = 0; i < values.size(); i++) {
+
+            if (i > 0)
+                builder.append(", ");
+
+            builder.append(placeholder);
+            arguments.add(values.get(i).toLowerCase());
+        }
+
+        builder.append(" ) ");
+    }
+
+    private String getKeyPattern(String pattern) {
+
+        Matcher matcher = SLOT_PATTERN.matcher(pattern);
+
+        if (matcher.lookingAt())
+            return SLOT_INDICATOR + matcher.group(1) + SLOT_INDICATOR + "k";
+
+        // only the leading characters before the first wildcard can be matched against truncated keys
+        StringBuilder builder = new StringBuilder();
+        int length = 0;
+
+        for (int i = 0; i < pattern.length() && length < KEY_LENGTH; i += Character.charCount(pattern.codePointAt(i))) {
+
+            int codePoint = pattern.codePointAt(i);
+
+            if (codePoint == '%')
+                break;
+
+            if (codePoint == '\\' && i + 1 < pattern.length()) {
+
+                builder.append('\\');
+                i++;
+                codePoint = pattern.codePointAt(i);
+            }
+
+            builder.appendCodePoint(codePoint);
+            length++;
+        }
+
+        return builder.append('%').toString();
+    }
+
     private String getOperator(OperatorExpression expression) {
 
         if (expression instanceof EqualOperator)
@@ -623,6 +1264,12 @@ public class QueryGenerator {
             else
                 return "is not null ";
 
+        if (expression instanceof InOperator)
+            if (expression.isNegated())
+                return "not in ";
+            else
+                return "in ";
+
         throw new IllegalArgumentException("Cannot handle unexpected operator " +
                 expression.getClass().getSimpleName());
     }
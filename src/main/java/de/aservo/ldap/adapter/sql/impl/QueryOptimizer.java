@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2019 ASERVO Software GmbH
+ * contact@aservo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.aservo.ldap.adapter.sql.impl;
+
+import de.aservo.ldap.adapter.api.LdapUtils;
+import de.aservo.ldap.adapter.api.query.*;
+import org.apache.directory.api.ldap.model.constants.SchemaConstants;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+
+/**
+ * A rule based optimizer for query expressions which are prepared for SQL generation.
+ * It expects expressions without negated logic expressions.
+ */
+public final class QueryOptimizer {
+
+    // attributes stored in a single column; an entity never has more than one value for them
+    private static final Set<String> SINGLE_VALUED_ATTRIBUTES =
+            Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+                    SchemaConstants.UID_AT_OID,
+                    SchemaConstants.CN_AT_OID,
+                    SchemaConstants.SN_AT_OID,
+                    SchemaConstants.GN_AT_OID,
+                    SchemaConstants.DISPLAY_NAME_AT_OID,
+                    SchemaConstants.MAIL_AT_OID,
+                    SchemaConstants.DESCRIPTION_AT_OID)));
+
+    private QueryOptimizer() {
+    }
+
+    /**
+     * Optimizes a query expression.
+     * Nested conjunctions and disjunctions are flattened, constants are folded, duplicates are removed,
+     * contradictions are replaced by false and equality checks on the same attribute are combined.
+     *
+     * @param expression the query expression
+     * @return the optimized query expression
+     */
+    public static QueryExpression optimize(QueryExpression expression) {
+
+        if (expression instanceof AndLogicExpression) {
+
+            Collection<QueryExpression> children = collectChildren((LogicExpression) expression);
+
+            if (children.stream().anyMatch(x -> x instanceof BooleanValue && !((BooleanValue) x).getValue()))
+                return BooleanValue.falseValue();
+
+            children.removeIf(x -> x instanceof BooleanValue);
+
+            if (isContradiction(children))
+                return BooleanValue.falseValue();
+
+            return createLogicExpression(AndLogicExpression.class, combineEqualOperators(children, true));
+
+        } else if (expression instanceof OrLogicExpression) {
+
+            Collection<QueryExpression> children = collectChildren((LogicExpression) expression);
+
+            if (children.stream().anyMatch(x -> x instanceof BooleanValue && ((BooleanValue) x).getValue()))
+                return BooleanValue.trueValue();
+
+            children.removeIf(x -> x instanceof BooleanValue);
+
+            return createLogicExpression(OrLogicExpression.class, combineEqualOperators(children, false));
+
+        } else if (expression instanceof NotLogicExpression) {
+
+            return new NotLogicExpression(((NotLogicExpression) expression).getChildren().stream()
+                    .map(QueryOptimizer::optimize)
+                    .collect(Collectors.toList()));
+        }
+
+        return expression;
+    }
+
+    private static Collection<QueryExpression> collectChildren(LogicExpression expression) {
+
+        // children are kept in order and identified by a key which also respects negation
+        Map<String, QueryExpression> children = new LinkedHashMap<>();
+
+        for (QueryExpression child : expression.getChildren()) {
+
+            QueryExpression optimized = optimize(child);
+
+            if (optimized.getClass() == expression.getClass()) {
+
+                for (QueryExpression grandchild : ((LogicExpression) optimized).getChildren())
+                    children.putIfAbsent(getKey(grandchild), grandchild);
+
+            } else
+                children.putIfAbsent(getKey(optimized), optimized);
+        }
+
+        return new ArrayList<>(children.values());
+    }
+
+    private static boolean isContradiction(Collection<QueryExpression> children) {
+
+        Set<String> keys = children.stream().map(QueryOptimizer::getKey).collect(Collectors.toSet());
+        Map<String, String> values = new HashMap<>();
+
+        for (QueryExpression child : children) {
+
+            // a condition and its negation cannot be true at the same time
+            if (child instanceof OperatorExpression && keys.contains(getKey(((OperatorExpression<?>) child).negate())))
+                return true;
+
+            if (child instanceof EqualOperator && !((EqualOperator) child).isNegated()) {
+
+                EqualOperator operator = (EqualOperator) child;
+                String attribute = LdapUtils.normalizeAttribute(operator.getAttribute());
+                String value = operator.getValue().toLowerCase();
+
+                if (SINGLE_VALUED_ATTRIBUTES.contains(attribute) && !values.computeIfAbsent(attribute, x -> value)
+                        .equals(value))
+                    return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static List<QueryExpression> combineEqualOperators(Collection<QueryExpression> children,
+                                                               boolean negated) {
+
+        // (|(a=x)(a=y)) becomes a in (x, y) and (&(!(a=x))(!(a=y))) becomes a not in (x, y)
+        Map<String, List<String>> valuesByAttribute = new LinkedHashMap<>();
+        Map<String, Integer> positions = new HashMap<>();
+        List<QueryExpression> result = new ArrayList<>();
+
+        for (QueryExpression child : children) {
+
+            String attribute = null;
+            List<String> values = null;
+
+            if (child instanceof EqualOperator && ((EqualOperator) child).isNegated() == negated) {
+
+                attribute = LdapUtils.normalizeAttribute(((EqualOperator) child).getAttribute());
+                values = Collections.singletonList(((EqualOperator) child).getValue());
+
+            } else if (child instanceof InOperator && ((InOperator) child).isNegated() == negated) {
+
+                attribute = LdapUtils.normalizeAttribute(((InOperator) child).getAttribute());
+                values = ((InOperator) child).getValues();
+            }
+
+            if (attribute == null || !SINGLE_VALUED_ATTRIBUTES.contains(attribute)) {
+
+                result.add(child);
+                continue;
+            }
+
+            if (!positions.containsKey(attribute)) {
+
+                positions.put(attribute, result.size());
+                result.add(child);
+            }
+
+            List<String> attributeValues = valuesByAttribute.computeIfAbsent(attribute, x -> new ArrayList<>());
+
+            for (String value : values)
+                if (attributeValues.stream().noneMatch(value::equalsIgnoreCase))
+                    attributeValues.add(value);
+        }
+
+        valuesByAttribute.forEach((attribute, values) -> {
+
+            if (values.size() > 1)
+                result.set(positions.get(attribute), new InOperator(attribute, values, negated, true));
+        });
+
+        return result;
+    }
+
+    private static QueryExpression createLogicExpression(Class<? extends LogicExpression> clazz,
+                                                         List<QueryExpression> children) {
+
+        if (children.isEmpty()) {
+
+            if (clazz == AndLogicExpression.class)
+                return new BooleanValue(AndLogicExpression.EMPTY_SEQ_BOOLEAN);
+
+            return new BooleanValue(OrLogicExpression.EMPTY_SEQ_BOOLEAN);
+        }
+
+        if (children.size() == 1)
+            return children.get(0);
+
+        if (clazz == AndLogicExpression.class)
+            return new AndLogicExpression(children);
+
+        return new OrLogicExpression(children);
+    }
+
+    private static String getKey(QueryExpression expression) {
+
+        if (expression instanceof BinaryOperator) {
+
+            BinaryOperator<?> operator = (BinaryOperator<?>) expression;
+
+            return operator.getClass().getSimpleName() + ":" + LdapUtils.normalizeAttribute(operator.getAttribute()) +
+                    ":" + operator.isNegated() + ":" +
+                    (operator.isIgnoreCase() ? operator.getValue().toLowerCase() : operator.getValue());
+        }
+
+        if (expression instanceof InOperator) {
+
+            InOperator operator = (InOperator) expression;
+
+            return operator.getClass().getSimpleName() + ":" + LdapUtils.normalizeAttribute(operator.getAttribute()) +
+                    ":" + operator.isNegated() + ":" + operator.getValues().stream()
+                    .map(x -> operator.isIgnoreCase() ? x.toLowerCase() : x)
+                    .collect(Collectors.joining("\u0000"));
+        }
+
+        if (expression instanceof UnaryOperator) {
+
+            UnaryOperator<?> operator = (UnaryOperator<?>) expression;
+
+            return operator.getClass().getSimpleName() + ":" + LdapUtils.normalizeAttribute(operator.getAttribute()) +
+                    ":" + operator.isNegated();
+        }
+
+        if (expression instanceof LogicExpression) {
+
+            return expression.getClass().getSimpleName() + "(" +
+                    ((LogicExpression) expression).getChildren().stream()
+                            .map(QueryOptimizer::getKey)
+                            .collect(Collectors.joining(",")) + ")";
+        }
+
+        if (expression instanceof BooleanValue)
+            return expression.getClass().getSimpleName() + ":" + ((BooleanValue) expression).getValue();
+
+        throw new IllegalArgumentException("Cannot process unexpected query expression " +
+                expression.getClass().getName());
+    }
+}
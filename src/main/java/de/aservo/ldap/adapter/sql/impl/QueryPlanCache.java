@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2019 ASERVO Software GmbH
+ * contact@aservo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.aservo.ldap.adapter.sql.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * A bounded LRU cache for compiled query plans keyed by the normalized shape of a query.
+ */
+public class QueryPlanCache
+        extends LruCache<String, QueryPlanCache.Plan> {
+
+    /**
+     * Instantiates a new query plan cache.
+     *
+     * @param capacity the maximum number of cached plans; zero disables caching
+     */
+    public QueryPlanCache(int capacity) {
+
+        super(capacity);
+    }
+
+    /**
+     * A compiled query with argument slots for the literals of a query expression.
+     */
+    public static class Plan {
+
+        private final String sql;
+        private final List<Object> arguments;
+
+        /**
+         * Instantiates a new plan.
+         *
+         * @param sql       the SQL statement
+         * @param arguments the arguments including slots
+         */
+        public Plan(String sql, List<Object> arguments) {
+
+            this.sql = sql;
+            this.arguments = Collections.unmodifiableList(new ArrayList<>(arguments));
+        }
+
+        /**
+         * Gets the SQL statement.
+         *
+         * @return the SQL statement
+         */
+        public String getSql() {
+
+            return sql;
+        }
+
+        /**
+         * Gets the arguments including slots.
+         *
+         * @return the arguments
+         */
+        public List<Object> getArguments() {
+
+            return arguments;
+        }
+    }
+}
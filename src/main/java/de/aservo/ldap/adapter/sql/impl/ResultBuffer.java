@@ -0,0 +1,512 @@
+/*
+ * Copyright (c) 2019 ASERVO Software GmbH
+ * contact@aservo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.aservo.ldap.adapter.sql.impl;
+
+import de.aservo.ldap.adapter.api.cursor.MappableCursor;
+import de.aservo.ldap.adapter.api.database.Row;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.JDBCType;
+import java.util.*;
+
+
+/**
+ * A buffer for streamed rows to return database connections before a client has read all entries.
+ * Results with no more rows than kept in memory are always read completely and their connection is released
+ * with the first row. Larger results are either streamed from the database or spooled to a temporary file. Rows
+ * exceeding the limit of the spool file are streamed from the database.
+ */
+public class ResultBuffer {
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_BOOLEAN = 2;
+    private static final byte TYPE_INTEGER = 3;
+    private static final byte TYPE_LONG = 4;
+    private static final byte TYPE_SERIALIZED = 5;
+
+    private final Strategy strategy;
+    private final int memoryRows;
+    private final int spoolRows;
+
+    /**
+     * Instantiates a new result buffer.
+     *
+     * @param strategy   the strategy for rows exceeding the memory
+     * @param memoryRows the maximum number of rows kept in memory per result
+     * @param spoolRows  the maximum number of rows spooled to a temporary file per result
+     */
+    public ResultBuffer(Strategy strategy, int memoryRows, int spoolRows) {
+
+        if (memoryRows < 0)
+            throw new IllegalArgumentException("Expect a non negative number of rows kept in memory.");
+
+        if (spoolRows < 0)
+            throw new IllegalArgumentException("Expect a non negative number of rows spooled to a file.");
+
+        this.strategy = strategy;
+        this.memoryRows = memoryRows;
+        this.spoolRows = spoolRows;
+    }
+
+    /**
+     * Creates a cursor which reads rows ahead on its first access and closes the given cursor if no row is left
+     * in the database. The read ahead is cancelled by closing the cursor from another thread.
+     *
+     * @param columnNames the column names of the rows
+     * @param rows        the cursor of the rows
+     * @return the cursor of the buffered rows
+     */
+    public MappableCursor<Row> buffer(List<String> columnNames, MappableCursor<Row> rows) {
+
+        return new BufferedCursor(columnNames, rows);
+    }
+
+    private MappableCursor<Row> readAhead(List<String> columnNames, MappableCursor<Row> rows) {
+
+        // the buffered rows hold plain Java objects
+        RowSchema schema = new RowSchema(columnNames, Collections.nCopies(columnNames.size(), JDBCType.JAVA_OBJECT));
+        List<Object[]> values = new ArrayList<>();
+        Object[] pendingValues = null;
+        SpoolFile file = null;
+        boolean exhausted = false;
+
+        try {
+
+            // the row beyond the buffers is read to find out if the cursor can be closed
+            while (!exhausted && pendingValues == null) {
+
+                if (!rows.next()) {
+
+                    exhausted = true;
+
+                } else if (values.size() < memoryRows) {
+
+                    values.add(copyValues(rows.get(), schema));
+
+                } else if (isSpooling(file)) {
+
+                    if (file == null)
+                        file = new SpoolFile(schema);
+
+                    file.write(copyValues(rows.get(), schema));
+
+                } else {
+
+                    pendingValues = copyValues(rows.get(), schema);
+                }
+            }
+
+            if (exhausted)
+                rows.close();
+
+            if (file != null)
+                file.finish();
+
+        } catch (IOException | RuntimeException e) {
+
+            closeQuietly(rows, e);
+
+            if (file != null)
+                closeQuietly(file, e);
+
+            if (e instanceof IOException)
+                throw new UncheckedIOException((IOException) e);
+
+            throw (RuntimeException) e;
+        }
+
+        List<MappableCursor<Row>> cursors = new ArrayList<>();
+
+        cursors.add(MappableCursor.fromIterable(values).map(x -> new BufferedRow(schema, x)));
+
+        if (file != null)
+            cursors.add(file);
+
+        // a result larger than the buffers is streamed from the pending row on
+        if (pendingValues != null) {
+
+            cursors.add(MappableCursor.fromIterable(Collections.singletonList(new BufferedRow(schema, pendingValues))));
+            cursors.add(rows);
+        }
+
+        return cursors.size() == 1 ? cursors.get(0) : MappableCursor.flatten(cursors);
+    }
+
+    private boolean isSpooling(SpoolFile file) {
+
+        return strategy == Strategy.SPOOL && (file == null ? 0 : file.rowCount) < spoolRows;
+    }
+
+    private Object[] copyValues(Row row, RowSchema schema) {
+
+        Object[] values = new Object[schema.size()];
+
+        for (int i = 0; i < values.length; i++)
+            values[i] = row.apply(i, Object.class);
+
+        return values;
+    }
+
+    private void closeQuietly(Closeable closeable, Exception cause) {
+
+        try {
+
+            closeable.close();
+
+        } catch (IOException e) {
+
+            cause.addSuppressed(e);
+        }
+    }
+
+    /**
+     * The strategy for rows which exceed the memory of a result buffer.
+     */
+    public enum Strategy {
+
+        /**
+         * The remaining rows are streamed from the database while the connection is held.
+         */
+        STREAM,
+
+        /**
+         * The remaining rows are written to a temporary file and the connection is released at once.
+         */
+        SPOOL;
+
+        /**
+         * Gets the strategy by its name.
+         *
+         * @param value the name
+         * @return the strategy
+         */
+        public static Strategy fromString(String value) {
+
+            for (Strategy strategy : values())
+                if (strategy.name().equalsIgnoreCase(value))
+                    return strategy;
+
+            throw new IllegalArgumentException("Cannot find a result buffer strategy named " + value);
+        }
+    }
+
+    private class BufferedCursor
+            extends MappableCursor<Row> {
+
+        private final List<String> columnNames;
+        private final MappableCursor<Row> rows;
+        private MappableCursor<Row> buffered;
+        private volatile boolean closed = false;
+
+        public BufferedCursor(List<String> columnNames, MappableCursor<Row> rows) {
+
+            this.columnNames = columnNames;
+            this.rows = rows;
+        }
+
+        @Override
+        public boolean next() {
+
+            if (closed)
+                return false;
+
+            // the read ahead happens after the cursor was handed over to a client which is able to abandon it
+            if (buffered == null) {
+
+                MappableCursor<Row> cursor = readAhead(columnNames, rows);
+
+                synchronized (this) {
+
+                    buffered = cursor;
+
+                    if (closed) {
+
+                        closeBuffered();
+
+                        return false;
+                    }
+                }
+            }
+
+            return buffered.next();
+        }
+
+        @Override
+        public Row get() {
+
+            if (buffered == null)
+                throw new NoSuchElementException("There is no element for iterations.");
+
+            return buffered.get();
+        }
+
+        @Override
+        public synchronized void close()
+                throws IOException {
+
+            if (closed)
+                return;
+
+            closed = true;
+
+            // a cursor closed during the read ahead cancels the running statement
+            if (buffered == null)
+                rows.close();
+            else
+                buffered.close();
+        }
+
+        private void closeBuffered() {
+
+            try {
+
+                buffered.close();
+
+            } catch (IOException e) {
+
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static class BufferedRow
+            implements Row {
+
+        private final RowSchema schema;
+        private final Object[] values;
+
+        public BufferedRow(RowSchema schema, Object[] values) {
+
+            this.schema = schema;
+            this.values = values;
+        }
+
+        public List<String> getColumns() {
+
+            return schema.getColumnNames();
+        }
+
+        public <T> T apply(String columnName, Class<T> clazz) {
+
+            return apply(schema.getOrdinal(columnName), clazz);
+        }
+
+        public <T> T apply(int ordinal, Class<T> clazz) {
+
+            Object result = values[ordinal];
+
+            if (result == null)
+                return null;
+
+            try {
+
+                return (T) result;
+
+            } catch (ClassCastException e) {
+
+                throw new IllegalArgumentException(
+                        "Cannot perform a read conversion with column " + schema.getColumnNames().get(ordinal) +
+                                " and with type [" + clazz.getName() + "].", e);
+            }
+        }
+    }
+
+    private static class SpoolFile
+            extends MappableCursor<Row> {
+
+        private final RowSchema schema;
+        private final Path path;
+        private DataOutputStream output;
+        private DataInputStream input;
+        private long rowCount = 0;
+        private Row row;
+        private boolean closed = false;
+
+        public SpoolFile(RowSchema schema)
+                throws IOException {
+
+            this.schema = schema;
+            path = Files.createTempFile("ldap-result-", ".spool");
+            output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+        }
+
+        public void write(Object[] values)
+                throws IOException {
+
+            for (Object value : values)
+                writeValue(value);
+
+            rowCount++;
+        }
+
+        public void finish()
+                throws IOException {
+
+            output.close();
+            output = null;
+            input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+        }
+
+        @Override
+        public synchronized boolean next() {
+
+            if (closed || rowCount == 0) {
+
+                row = null;
+
+                return false;
+            }
+
+            try {
+
+                Object[] values = new Object[schema.size()];
+
+                for (int i = 0; i < values.length; i++)
+                    values[i] = readValue();
+
+                row = new BufferedRow(schema, values);
+                rowCount--;
+
+                return true;
+
+            } catch (IOException e) {
+
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public Row get() {
+
+            if (row == null)
+                throw new NoSuchElementException("There is no element for iterations.");
+
+            return row;
+        }
+
+        @Override
+        public synchronized void close()
+                throws IOException {
+
+            if (closed)
+                return;
+
+            closed = true;
+
+            try {
+
+                if (output != null)
+                    output.close();
+
+                if (input != null)
+                    input.close();
+
+            } finally {
+
+                Files.deleteIfExists(path);
+            }
+        }
+
+        private void writeValue(Object value)
+                throws IOException {
+
+            // frequent column types are written without the overhead of Java serialization
+            if (value == null) {
+
+                output.writeByte(TYPE_NULL);
+
+            } else if (value instanceof String) {
+
+                byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+
+                output.writeByte(TYPE_STRING);
+                output.writeInt(bytes.length);
+                output.write(bytes);
+
+            } else if (value instanceof Boolean) {
+
+                output.writeByte(TYPE_BOOLEAN);
+                output.writeBoolean((Boolean) value);
+
+            } else if (value instanceof Integer) {
+
+                output.writeByte(TYPE_INTEGER);
+                output.writeInt((Integer) value);
+
+            } else if (value instanceof Long) {
+
+                output.writeByte(TYPE_LONG);
+                output.writeLong((Long) value);
+
+            } else {
+
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+                try (ObjectOutputStream objectOutput = new ObjectOutputStream(bytes)) {
+
+                    objectOutput.writeObject(value);
+                }
+
+                output.writeByte(TYPE_SERIALIZED);
+                output.writeInt(bytes.size());
+                bytes.writeTo(output);
+            }
+        }
+
+        private Object readValue()
+                throws IOException {
+
+            byte type = input.readByte();
+
+            if (type == TYPE_NULL)
+                return null;
+
+            if (type == TYPE_BOOLEAN)
+                return input.readBoolean();
+
+            if (type == TYPE_INTEGER)
+                return input.readInt();
+
+            if (type == TYPE_LONG)
+                return input.readLong();
+
+            byte[] bytes = new byte[input.readInt()];
+
+            input.readFully(bytes);
+
+            if (type == TYPE_STRING)
+                return new String(bytes, StandardCharsets.UTF_8);
+
+            if (type != TYPE_SERIALIZED)
+                throw new IOException("Cannot read unexpected value type " + type + " from spool file.");
+
+            try (ObjectInputStream objectInput = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+
+                return objectInput.readObject();
+
+            } catch (ClassNotFoundException e) {
+
+                throw new IOException("Cannot read value from spool file.", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2019 ASERVO Software GmbH
+ * contact@aservo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.aservo.ldap.adapter.sql.impl;
+
+import de.aservo.ldap.adapter.api.database.exception.UnknownColumnException;
+
+import java.sql.JDBCType;
+import java.util.*;
+
+
+/**
+ * The columns of a result resolved once per statement to read values of rows by position.
+ */
+public class RowSchema {
+
+    private final List<String> columnNames;
+    private final List<JDBCType> columnTypes;
+    private final Map<String, Integer> ordinals = new HashMap<>();
+
+    /**
+     * Instantiates a new row schema with lower case column names.
+     *
+     * @param columnNames the column names
+     * @param columnTypes the column types
+     */
+    public RowSchema(List<String> columnNames, List<JDBCType> columnTypes) {
+
+        if (columnNames.size() != columnTypes.size())
+            throw new IllegalArgumentException("Expect a column type for every column name.");
+
+        this.columnNames = Collections.unmodifiableList(new ArrayList<>(columnNames));
+        this.columnTypes = Collections.unmodifiableList(new ArrayList<>(columnTypes));
+
+        for (int i = 0; i < columnNames.size(); i++)
+            if (ordinals.put(columnNames.get(i), i) != null)
+                throw new IllegalArgumentException("Expect unique column name for resulting rows.");
+    }
+
+    /**
+     * Gets the column names.
+     *
+     * @return the column names
+     */
+    public List<String> getColumnNames() {
+
+        return columnNames;
+    }
+
+    /**
+     * Gets the number of columns.
+     *
+     * @return the number of columns
+     */
+    public int size() {
+
+        return columnNames.size();
+    }
+
+    /**
+     * Gets the type of a column.
+     *
+     * @param ordinal the position of the column
+     * @return the column type
+     */
+    public JDBCType getColumnType(int ordinal) {
+
+        return columnTypes.get(ordinal);
+    }
+
+    /**
+     * Gets the position of a column.
+     *
+     * @param columnName the column name
+     * @return the position of the column
+     */
+    public int getOrdinal(String columnName) {
+
+        // column names are usually given in lower case already
+        Integer ordinal = ordinals.get(columnName);
+
+        if (ordinal == null)
+            ordinal = ordinals.get(columnName.toLowerCase());
+
+        if (ordinal == null)
+            throw new UnknownColumnException("Cannot find column " + columnName.toLowerCase() + " in current row.");
+
+        return ordinal;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2019 ASERVO Software GmbH
+ * contact@aservo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.aservo.ldap.adapter.sql.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * A bounded LRU cache for dialect specific SQL translated from dialect free clauses.
+ */
+public class SqlTranslationCache
+        extends LruCache<String, SqlTranslationCache.Translation> {
+
+    /**
+     * Instantiates a new SQL translation cache.
+     *
+     * @param capacity the maximum number of cached translations; zero disables caching
+     */
+    public SqlTranslationCache(int capacity) {
+
+        super(capacity);
+    }
+
+    /**
+     * A dialect specific SQL statement with positional placeholders.
+     */
+    public static class Translation {
+
+        private final String sql;
+        private final List<String> parameterKeys;
+
+        /**
+         * Instantiates a new translation.
+         *
+         * @param sql           the dialect specific SQL statement
+         * @param parameterKeys the parameter keys in order of the positional placeholders
+         */
+        public Translation(String sql, List<String> parameterKeys) {
+
+            this.sql = sql;
+            this.parameterKeys = Collections.unmodifiableList(new ArrayList<>(parameterKeys));
+        }
+
+        /**
+         * Gets the dialect specific SQL statement.
+         *
+         * @return the SQL statement
+         */
+        public String getSql() {
+
+            return sql;
+        }
+
+        /**
+         * Gets the parameter keys in order of the positional placeholders.
+         *
+         * @return the parameter keys
+         */
+        public List<String> getParameterKeys() {
+
+            return parameterKeys;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2019 ASERVO Software GmbH
+ * contact@aservo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.aservo.ldap.adapter.sql.impl;
+
+import org.apache.commons.dbcp2.DelegatingStatement;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Hit and miss counts of prepared statements served by the statement pool of the connection pool.
+ * A statement is a hit if the pool returns a physical statement of the driver which was prepared before.
+ */
+public class StatementPoolStatistics {
+
+    private final Set<Statement> physicalStatements = Collections.synchronizedSet(
+            Collections.newSetFromMap(new WeakHashMap<>()));
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Records a statement returned by a pooled connection.
+     *
+     * @param statement the prepared statement
+     */
+    public void record(PreparedStatement statement) {
+
+        Statement physicalStatement = statement;
+
+        if (statement instanceof DelegatingStatement)
+            physicalStatement = ((DelegatingStatement) statement).getInnermostDelegate();
+
+        if (physicalStatement == null)
+            return;
+
+        if (physicalStatements.add(physicalStatement))
+            missCount.incrementAndGet();
+        else
+            hitCount.incrementAndGet();
+    }
+
+    /**
+     * Gets the number of statements reused from the pool.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+
+        return hitCount.get();
+    }
+
+    /**
+     * Gets the number of statements prepared by the driver.
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+
+        return missCount.get();
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2019 ASERVO Software GmbH
+ * contact@aservo.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.aservo.ldap.adapter.sql.impl;
+
+import de.aservo.ldap.adapter.api.entity.EntityType;
+import de.aservo.ldap.adapter.api.query.WildcardOperator;
+
+import java.util.*;
+
+
+/**
+ * An immutable in-memory trigram index over the lower case values of searchable columns.
+ * It narrows wildcard filters down to candidate IDs which are checked by the database afterwards.
+ */
+public class TrigramIndex {
+
+    // markers for the start and the end of a value allow anchored segments shorter than three characters
+    private static final char START_MARKER = '\u0002';
+    private static final char END_MARKER = '\u0003';
+
+    private final Map<EntityType, String[]> ids;
+    private final Map<EntityType, Map<String, Map<String, int[]>>> postings;
+
+    private TrigramIndex(Map<EntityType, String[]> ids, Map<EntityType, Map<String, Map<String, int[]>>> postings) {
+
+        this.ids = ids;
+        this.postings = postings;
+    }
+
+    /**
+     * Finds the IDs of all entities with a value which might match a wildcard pattern.
+     *
+     * @param entityType the entity type
+     * @param column     the column of the value
+     * @param operator   the wildcard operator
+     * @return the candidate IDs or null if the pattern cannot be answered by the index
+     */
+    public List<String> findCandidates(EntityType entityType, String column, WildcardOperator operator) {
+
+        Map<String, int[]> columnPostings = postings.getOrDefault(entityType, Collections.emptyMap()).get(column);
+
+        if (columnPostings == null)
+            return null;
+
+        Set<String> trigrams = new HashSet<>();
+
+        if (operator.getInitialSegment() != null)
+            addTrigrams(trigrams, START_MARKER + operator.getInitialSegment().toLowerCase());
+
+        for (String segment : operator.getMiddleSegments())
+            addTrigrams(trigrams, segment.toLowerCase());
+
+        if (operator.getFinalSegment() != null)
+            addTrigrams(trigrams, operator.getFinalSegment().toLowerCase() + END_MARKER);
+
+        if (trigrams.isEmpty())
+            return null;
+
+        List<int[]> lists = new ArrayList<>();
+
+        for (String trigram : trigrams) {
+
+            int[] list = columnPostings.get(trigram);
+
+            if (list == null)
+                return Collections.emptyList();
+
+            lists.add(list);
+        }
+
+        lists.sort(Comparator.comparingInt(x -> x.length));
+
+        int[] result = lists.get(0);
+
+        for (int i = 1; i < lists.size() && result.length > 0; i++)
+            result = intersect(result, lists.get(i));
+
+        String[] entityIds = ids.get(entityType);
+        List<String> candidates = new ArrayList<>(result.length);
+
+        for (int ordinal : result)
+            candidates.add(entityIds[ordinal]);
+
+        return candidates;
+    }
+
+    private static void addTrigrams(Set<String> trigrams, String value) {
+
+        for (int i = 0; i + 3 <= value.length(); i++)
+            trigrams.add(value.substring(i, i + 3));
+    }
+
+    private static int[] intersect(int[] first, int[] second) {
+
+        int[] result = new int[Math.min(first.length, second.length)];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+
+        while (i < first.length && j < second.length) {
+
+            if (first[i] < second[j])
+                i++;
+            else if (first[i] > second[j])
+                j++;
+            else {
+
+                result[k++] = first[i];
+                i++;
+                j++;
+            }
+        }
+
+        return Arrays.copyOf(result, k);
+    }
+
+    /**
+     * A builder collecting the values of entities.
+     */
+    public static class Builder {
+
+        private final Map<EntityType, List<String>> ids = new EnumMap<>(EntityType.class);
+        private final Map<EntityType, Map<String, Map<String, PostingList>>> postings = new EnumMap<>(EntityType.class);
+
+        /**
+         * Adds the values of an entity.
+         *
+         * @param entityType the entity type
+         * @param id         the entity ID
+         * @param values     the values by column; null values are ignored
+         * @return the builder
+         */
+        public Builder add(EntityType entityType, String id, Map<String, String> values) {
+
+            List<String> entityIds = ids.computeIfAbsent(entityType, x -> new ArrayList<>());
+            int ordinal = entityIds.size();
+
+            entityIds.add(id);
+
+            values.forEach((column, value) -> {
+
+                Map<String, PostingList> columnPostings =
+                        postings
+                                .computeIfAbsent(entityType, x -> new HashMap<>())
+                                .computeIfAbsent(column, x -> new HashMap<>());
+
+                if (value != null) {
+
+                    Set<String> trigrams = new HashSet<>();
+
+                    addTrigrams(trigrams, START_MARKER + value.toLowerCase() + END_MARKER);
+
+                    for (String trigram : trigrams)
+                        columnPostings.computeIfAbsent(trigram, x -> new PostingList()).add(ordinal);
+                }
+            });
+
+            return this;
+        }
+
+        /**
+         * Builds the index.
+         *
+         * @return the trigram index
+         */
+        public TrigramIndex build() {
+
+            Map<EntityType, String[]> indexIds = new EnumMap<>(EntityType.class);
+            Map<EntityType, Map<String, Map<String, int[]>>> indexPostings = new EnumMap<>(EntityType.class);
+
+            ids.forEach((entityType, entityIds) -> indexIds.put(entityType, entityIds.toArray(new String[0])));
+
+            postings.forEach((entityType, columns) -> {
+
+                Map<String, Map<String, int[]>> columnMap = new HashMap<>();
+
+                columns.forEach((column, trigrams) -> {
+
+                    Map<String, int[]> trigramMap = new HashMap<>(trigrams.size());
+
+                    trigrams.forEach((trigram, list) -> trigramMap.put(trigram, list.toArray()));
+                    columnMap.put(column, trigramMap);
+                });
+
+                indexPostings.put(entityType, columnMap);
+            });
+
+            return new TrigramIndex(indexIds, indexPostings);
+        }
+    }
+
+    /**
+     * A holder of the current index which is cleared by write transactions.
+     * An index rebuilt concurrently to a write transaction is stale and never published.
+     */
+    public static class Holder {
+
+        private volatile TrigramIndex index;
+        private long generation;
+        private int activeWrites;
+
+        /**
+         * Gets the current index.
+         *
+         * @return the index or null if there is no up to date index
+         */
+        public TrigramIndex get() {
+
+            return index;
+        }
+
+        /**
+         * Clears the index at the beginning of a write transaction.
+         */
+        public synchronized void beginWrite() {
+
+            index = null;
+            generation++;
+            activeWrites++;
+        }
+
+        /**
+         * Marks the end of a write transaction.
+         */
+        public synchronized void endWrite() {
+
+            generation++;
+            activeWrites--;
+        }
+
+        /**
+         * Starts a rebuild of the index.
+         *
+         * @return the generation passed to {@link #publish(long, TrigramIndex)} or -1 if no rebuild is required
+         */
+        public synchronized long startRebuild() {
+
+            if (index != null || activeWrites > 0)
+                return -1;
+
+            return generation;
+        }
+
+        /**
+         * Publishes a rebuilt index unless a write transaction was started since the rebuild was started.
+         *
+         * @param generation the generation returned by {@link #startRebuild()}
+         * @param index      the rebuilt index
+         * @return true if the index was published
+         */
+        public synchronized boolean publish(long generation, TrigramIndex index) {
+
+            if (generation < 0 || generation != this.generation || activeWrites > 0)
+                return false;
+
+            this.index = index;
+
+            return true;
+        }
+    }
+
+    private static class PostingList {
+
+        private int[] values = new int[4];
+        private int size;
+
+        // ordinals are added in ascending order; therefore, the list is always sorted
+        void add(int value) {
+
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -1,10 +1,19 @@
+NATIVE_SQL:create extension if not exists pg_trgm;
+
 create table _Group (
   id varchar(255) not null,
   name varchar(255) not null,
   description text null,
+  name_key varchar(255) not null,
+  description_key varchar(255) null,
   primary key (id)
 );
 
+create index _Group_name_key on _Group (name_key);
+create index _Group_description_key on _Group (description_key);
+NATIVE_SQL:create index _Group_name_trgm on _Group using gin (lower(name) gin_trgm_ops);
+NATIVE_SQL:create index _Group_description_trgm on _Group using gin (lower(description) gin_trgm_ops);
+
 create table _User (
   id varchar(255) not null,
   username varchar(255) not null,
@@ -13,9 +22,25 @@ create table _User (
   display_name text null,
   email text null,
   active boolean not null,
+  username_key varchar(255) not null,
+  last_name_key varchar(255) null,
+  first_name_key varchar(255) null,
+  display_name_key varchar(255) null,
+  email_key varchar(255) null,
   primary key (id)
 );
 
+create index _User_username_key on _User (username_key);
+create index _User_last_name_key on _User (last_name_key);
+create index _User_first_name_key on _User (first_name_key);
+create index _User_display_name_key on _User (display_name_key);
+create index _User_email_key on _User (email_key);
+NATIVE_SQL:create index _User_username_trgm on _User using gin (lower(username) gin_trgm_ops);
+NATIVE_SQL:create index _User_last_name_trgm on _User using gin (lower(last_name) gin_trgm_ops);
+NATIVE_SQL:create index _User_first_name_trgm on _User using gin (lower(first_name) gin_trgm_ops);
+NATIVE_SQL:create index _User_display_name_trgm on _User using gin (lower(display_name) gin_trgm_ops);
+NATIVE_SQL:create index _User_email_trgm on _User using gin (lower(email) gin_trgm_ops);
+
 create table _Group_Membership (
   parent_group_id varchar(255) not null,
   member_group_id varchar(255) not null,
@@ -38,6 +63,57 @@ create table _User_Membership (
 create index _User_Membership_parent_group_id on _User_Membership (parent_group_id);
 create index _User_Membership_member_user_id on _User_Membership (member_user_id);
 
+create table _Group_Closure (
+  parent_group_id varchar(255) not null,
+  member_group_id varchar(255) not null,
+  primary key (parent_group_id, member_group_id),
+  foreign key (parent_group_id) references _Group(id) on delete cascade,
+  foreign key (member_group_id) references _Group(id) on delete cascade
+);
+
+create index _Group_Closure_member_group_id on _Group_Closure (member_group_id);
+
+create table _User_Closure (
+  parent_group_id varchar(255) not null,
+  member_user_id varchar(255) not null,
+  primary key (parent_group_id, member_user_id),
+  foreign key (parent_group_id) references _Group(id) on delete cascade,
+  foreign key (member_user_id) references _User(id) on delete cascade
+);
+
+create index _User_Closure_member_user_id on _User_Closure (member_user_id);
+
+create table _Group_Closure_Rebuild (
+  group_id varchar(255) not null,
+  primary key (group_id)
+);
+
+create table _Group_Staging (
+  id varchar(255) not null,
+  name varchar(255) not null,
+  description text null
+);
+
+create table _User_Staging (
+  id varchar(255) not null,
+  username varchar(255) not null,
+  last_name text null,
+  first_name text null,
+  display_name text null,
+  email text null,
+  active boolean not null
+);
+
+create table _Group_Membership_Staging (
+  parent_group_id varchar(255) not null,
+  member_group_id varchar(255) not null
+);
+
+create table _User_Membership_Staging (
+  parent_group_id varchar(255) not null,
+  member_user_id varchar(255) not null
+);
+
 create view _Group_Membership_Transitive_Non_Materialized (parent_group_id, member_group_id) as
   with recursive ParentRelationship (group_id, member_group_id) as (
     select m.parent_group_id, m.member_group_id
@@ -63,27 +139,3 @@ create view _User_Membership_Transitive_Non_Materialized (parent_group_id, membe
   )
   select p.group_id, p.member_user_id
   from ParentRelationship p;
-
-NATIVE_SQL:create materialized view _Group_Membership_Transitive (parent_group_id, member_group_id) as
-  select * from _Group_Membership_Transitive_Non_Materialized;
-
-NATIVE_SQL:create index _Group_Membership_Transitive_parent_group_id
-  on _Group_Membership_Transitive (parent_group_id);
-
-NATIVE_SQL:create index _Group_Membership_Transitive_member_group_id
-  on _Group_Membership_Transitive (member_group_id);
-
-NATIVE_SQL:create unique index _Group_Membership_Transitive_parent_group_id_member_group_id
-  on _Group_Membership_Transitive (parent_group_id, member_group_id);
-
-NATIVE_SQL:create materialized view _User_Membership_Transitive (parent_group_id, member_user_id) as
-  select * from _User_Membership_Transitive_Non_Materialized;
-
-NATIVE_SQL:create index _User_Membership_Transitive_parent_group_id
-  on _User_Membership_Transitive (parent_group_id);
-
-NATIVE_SQL:create index _User_Membership_Transitive_member_user_id
-  on _User_Membership_Transitive (member_user_id);
-
-NATIVE_SQL:create unique index _User_Membership_Transitive_parent_group_id_member_user_id
-  on _User_Membership_Transitive (parent_group_id, member_user_id);
@@ -17,6 +17,33 @@ drop index if exists _Group_Membership_member_group_id;
 drop index if exists _User_Membership_parent_group_id;
 drop index if exists _User_Membership_member_user_id;
 
+drop index if exists _Group_Closure_member_group_id;
+drop index if exists _User_Closure_member_user_id;
+
+drop table if exists _Group_Closure;
+drop table if exists _User_Closure;
+drop table if exists _Group_Closure_Rebuild;
+
+drop table if exists _Group_Membership_Staging;
+drop table if exists _User_Membership_Staging;
+drop table if exists _Group_Staging;
+drop table if exists _User_Staging;
+
+drop index if exists _Group_name_trgm;
+drop index if exists _Group_description_trgm;
+drop index if exists _User_username_trgm;
+drop index if exists _User_last_name_trgm;
+drop index if exists _User_first_name_trgm;
+drop index if exists _User_display_name_trgm;
+drop index if exists _User_email_trgm;
+drop index if exists _Group_name_key;
+drop index if exists _Group_description_key;
+drop index if exists _User_username_key;
+drop index if exists _User_last_name_key;
+drop index if exists _User_first_name_key;
+drop index if exists _User_display_name_key;
+drop index if exists _User_email_key;
+
 drop table if exists _Group_Membership;
 drop table if exists _User_Membership;
 drop table if exists _Group;
@@ -17,6 +17,16 @@ select u.*
 from _User u
 where u.id = :id and (u.active or :active_only = false)
 
+--[ID: exists_group]--
+select g.id
+from _Group g
+where g.id = :id
+
+--[ID: exists_user]--
+select u.id
+from _User u
+where u.id = :id and (u.active or :active_only = false)
+
 --[ID: find_group_memberships]--
 select m.*
 from _Group_Membership m
@@ -30,16 +40,22 @@ inner join _User u
 where m.parent_group_id = :parent_group_id and m.member_user_id = :member_user_id and (u.active or :active_only = false)
 
 --[ID: create_or_update_group]--
-insert into _Group (id, name, description)
-  values (:id, :name, :description)
+insert into _Group (id, name, description, name_key, description_key)
+  values (:id, :name, :description, substring(lower(:name), 1, 255), substring(lower(:description), 1, 255))
   on conflict (id) do
     update set
       name = :name,
-      description = :description
+      description = :description,
+      name_key = substring(lower(:name), 1, 255),
+      description_key = substring(lower(:description), 1, 255)
 
 --[ID: create_or_update_user]--
-insert into _User (id, username, last_name, first_name, display_name, email, active)
-  values (:id, :username, :last_name, :first_name, :display_name, :email, :active)
+insert into _User (id, username, last_name, first_name, display_name, email, active,
+    username_key, last_name_key, first_name_key, display_name_key, email_key)
+  values (:id, :username, :last_name, :first_name, :display_name, :email, :active,
+    substring(lower(:username), 1, 255), substring(lower(:last_name), 1, 255),
+    substring(lower(:first_name), 1, 255), substring(lower(:display_name), 1, 255),
+    substring(lower(:email), 1, 255))
   on conflict (id) do
     update set
       username = :username,
@@ -47,7 +63,12 @@ insert into _User (id, username, last_name, first_name, display_name, email, act
       first_name = :first_name,
       display_name = :display_name,
       email = :email,
-      active = :active
+      active = :active,
+      username_key = substring(lower(:username), 1, 255),
+      last_name_key = substring(lower(:last_name), 1, 255),
+      first_name_key = substring(lower(:first_name), 1, 255),
+      display_name_key = substring(lower(:display_name), 1, 255),
+      email_key = substring(lower(:email), 1, 255)
 
 -- -- [ID: create_or_update_user]--
 --merge into _User
@@ -86,6 +107,175 @@ delete from _Group_Membership
 --[ID: remove_all_user_memberships]--
 delete from _User_Membership
 
+--[ID: add_group_closure]--
+insert into _Group_Closure (parent_group_id, member_group_id)
+  select a.id, d.id
+  from (
+    select g.id from _Group g where g.id = :parent_group_id
+    union
+    select c.parent_group_id from _Group_Closure c where c.member_group_id = :parent_group_id
+  ) a
+  cross join (
+    select g.id from _Group g where g.id = :member_group_id
+    union
+    select c.member_group_id from _Group_Closure c where c.parent_group_id = :member_group_id
+  ) d
+  where not exists (
+    select 1 from _Group_Closure x where x.parent_group_id = a.id and x.member_group_id = d.id
+  )
+
+--[ID: add_user_closure_of_group]--
+insert into _User_Closure (parent_group_id, member_user_id)
+  select a.id, u.member_user_id
+  from (
+    select g.id from _Group g where g.id = :parent_group_id
+    union
+    select c.parent_group_id from _Group_Closure c where c.member_group_id = :parent_group_id
+  ) a
+  cross join (
+    select c.member_user_id from _User_Closure c where c.parent_group_id = :member_group_id
+  ) u
+  where not exists (
+    select 1 from _User_Closure x where x.parent_group_id = a.id and x.member_user_id = u.member_user_id
+  )
+
+--[ID: add_user_closure]--
+insert into _User_Closure (parent_group_id, member_user_id)
+  select a.id, u.id
+  from (
+    select g.id from _Group g where g.id = :parent_group_id
+    union
+    select c.parent_group_id from _Group_Closure c where c.member_group_id = :parent_group_id
+  ) a
+  cross join _User u
+  where u.id = :member_user_id and not exists (
+    select 1 from _User_Closure x where x.parent_group_id = a.id and x.member_user_id = u.id
+  )
+
+--[ID: remove_user_closure]--
+delete from _User_Closure
+where member_user_id = :member_user_id and (
+    parent_group_id = :parent_group_id or parent_group_id in (
+      select c.parent_group_id from _Group_Closure c where c.member_group_id = :parent_group_id
+    )
+  ) and not exists (
+    select 1 from _User_Membership m
+    where m.member_user_id = _User_Closure.member_user_id and (
+      m.parent_group_id = _User_Closure.parent_group_id or m.parent_group_id in (
+        select c.member_group_id from _Group_Closure c where c.parent_group_id = _User_Closure.parent_group_id
+      )
+    )
+  )
+
+--[ID: remove_all_groups_of_closure_rebuild]--
+delete from _Group_Closure_Rebuild
+
+--[ID: add_ancestor_groups_to_closure_rebuild]--
+insert into _Group_Closure_Rebuild (group_id)
+  select g.id from _Group g where g.id = :group_id
+  union
+  select c.parent_group_id from _Group_Closure c where c.member_group_id = :group_id
+
+--[ID: remove_group_closure_of_rebuild]--
+delete from _Group_Closure
+where parent_group_id in (
+    select r.group_id from _Group_Closure_Rebuild r
+  )
+
+--[ID: init_group_closure_of_rebuild]--
+insert into _Group_Closure (parent_group_id, member_group_id)
+  select m.parent_group_id, m.member_group_id
+  from _Group_Membership m
+  inner join _Group_Closure_Rebuild r
+    on r.group_id = m.parent_group_id
+  union
+  select m.parent_group_id, c.member_group_id
+  from _Group_Membership m
+  inner join _Group_Closure_Rebuild r
+    on r.group_id = m.parent_group_id
+  inner join _Group_Closure c
+    on c.parent_group_id = m.member_group_id
+
+--[ID: extend_group_closure_of_rebuild]--
+insert into _Group_Closure (parent_group_id, member_group_id)
+  select distinct c.parent_group_id, d.member_group_id
+  from _Group_Closure c
+  inner join _Group_Closure_Rebuild r
+    on r.group_id = c.parent_group_id
+  inner join _Group_Closure_Rebuild s
+    on s.group_id = c.member_group_id
+  inner join _Group_Closure d
+    on d.parent_group_id = c.member_group_id
+  where not exists (
+    select 1 from _Group_Closure x where x.parent_group_id = c.parent_group_id and x.member_group_id = d.member_group_id
+  )
+
+--[ID: remove_user_closure_of_rebuild]--
+delete from _User_Closure
+where parent_group_id in (
+    select r.group_id from _Group_Closure_Rebuild r
+  )
+
+--[ID: init_user_closure_of_rebuild]--
+insert into _User_Closure (parent_group_id, member_user_id)
+  select m.parent_group_id, m.member_user_id
+  from _User_Membership m
+  inner join _Group_Closure_Rebuild r
+    on r.group_id = m.parent_group_id
+  union
+  select c.parent_group_id, m.member_user_id
+  from _Group_Closure c
+  inner join _Group_Closure_Rebuild r
+    on r.group_id = c.parent_group_id
+  inner join _User_Membership m
+    on m.parent_group_id = c.member_group_id
+
+--[ID: rebuild_group_closure]--
+insert into _Group_Closure (parent_group_id, member_group_id)
+  select t.parent_group_id, t.member_group_id
+  from _Group_Membership_Transitive_Non_Materialized t
+
+--[ID: rebuild_user_closure]--
+insert into _User_Closure (parent_group_id, member_user_id)
+  select t.parent_group_id, t.member_user_id
+  from _User_Membership_Transitive_Non_Materialized t
+
+--[ID: remove_all_staged_groups]--
+delete from _Group_Staging
+
+--[ID: remove_all_staged_users]--
+delete from _User_Staging
+
+--[ID: remove_all_staged_group_memberships]--
+delete from _Group_Membership_Staging
+
+--[ID: remove_all_staged_user_memberships]--
+delete from _User_Membership_Staging
+
+--[ID: publish_staged_groups]--
+insert into _Group (id, name, description, name_key, description_key)
+  select s.id, s.name, s.description, substring(lower(s.name), 1, 255), substring(lower(s.description), 1, 255)
+  from _Group_Staging s
+
+--[ID: publish_staged_users]--
+insert into _User (id, username, last_name, first_name, display_name, email, active,
+    username_key, last_name_key, first_name_key, display_name_key, email_key)
+  select s.id, s.username, s.last_name, s.first_name, s.display_name, s.email, s.active,
+    substring(lower(s.username), 1, 255), substring(lower(s.last_name), 1, 255),
+    substring(lower(s.first_name), 1, 255), substring(lower(s.display_name), 1, 255),
+    substring(lower(s.email), 1, 255)
+  from _User_Staging s
+
+--[ID: publish_staged_group_memberships]--
+insert into _Group_Membership (parent_group_id, member_group_id)
+  select distinct s.parent_group_id, s.member_group_id
+  from _Group_Membership_Staging s
+
+--[ID: publish_staged_user_memberships]--
+insert into _User_Membership (parent_group_id, member_user_id)
+  select distinct s.parent_group_id, s.member_user_id
+  from _User_Membership_Staging s
+
 --[ID: remove_group_if_exists]--
 delete from _Group
 where id = :id
@@ -120,30 +310,14 @@ where m.member_user_id = :user_id and (u.active or :active_only = false)
 
 --[ID: find_transitive_users_of_group]--
 select u.*
-from _User_Membership_Transitive m
-inner join _User u
-  on u.id = m.member_user_id
-where m.parent_group_id = :group_id and (u.active or :active_only = false)
-
---[ID: find_transitive_users_of_group_non_materialized]--
-select u.*
-from _User_Membership_Transitive_Non_Materialized m
+from _User_Closure m
 inner join _User u
   on u.id = m.member_user_id
 where m.parent_group_id = :group_id and (u.active or :active_only = false)
 
 --[ID: find_transitive_groups_of_user]--
 select g.*
-from _User_Membership_Transitive m
-inner join _Group g
-  on g.id = m.parent_group_id
-inner join _User u
-  on u.id = m.member_user_id
-where m.member_user_id = :user_id and (u.active or :active_only = false)
-
---[ID: find_transitive_groups_of_user_non_materialized]--
-select g.*
-from _User_Membership_Transitive_Non_Materialized m
+from _User_Closure m
 inner join _Group g
   on g.id = m.parent_group_id
 inner join _User u
@@ -166,28 +340,14 @@ where m.member_group_id = :group_id
 
 --[ID: find_transitive_child_groups_of_group]--
 select g.*
-from _Group_Membership_Transitive m
-inner join _Group g
-  on g.id = m.member_group_id
-where m.parent_group_id = :group_id
-
---[ID: find_transitive_child_groups_of_group_non_materialized]--
-select g.*
-from _Group_Membership_Transitive_Non_Materialized m
+from _Group_Closure m
 inner join _Group g
   on g.id = m.member_group_id
 where m.parent_group_id = :group_id
 
 --[ID: find_transitive_parent_groups_of_group]--
 select g.*
-from _Group_Membership_Transitive m
-inner join _Group g
-  on g.id = m.parent_group_id
-where m.member_group_id = :group_id
-
---[ID: find_transitive_parent_groups_of_group_non_materialized]--
-select g.*
-from _Group_Membership_Transitive_Non_Materialized m
+from _Group_Closure m
 inner join _Group g
   on g.id = m.parent_group_id
 where m.member_group_id = :group_id
@@ -205,32 +365,15 @@ where u.active or :active_only = false
 
 --[ID: find_all_transitive_group_memberships]--
 select m.*
-from _Group_Membership_Transitive m
-
---[ID: find_all_transitive_group_memberships_non_materialized]--
-select m.*
-from _Group_Membership_Transitive_Non_Materialized m
+from _Group_Closure m
 
 --[ID: find_all_transitive_user_memberships]--
 select m.*
-from _User_Membership_Transitive m
-inner join _User u
-  on u.id = m.member_user_id
-where u.active or :active_only = false
-
---[ID: find_all_transitive_user_memberships_non_materialized]--
-select m.*
-from _User_Membership_Transitive_Non_Materialized m
+from _User_Closure m
 inner join _User u
   on u.id = m.member_user_id
 where u.active or :active_only = false
 
---[ID: refresh_materialized_view_for_transitive_group_memberships]--
-NATIVE_SQL:refresh materialized view concurrently _Group_Membership_Transitive
-
---[ID: refresh_materialized_view_for_transitive_user_memberships]--
-NATIVE_SQL:refresh materialized view concurrently _User_Membership_Transitive
-
 --[ID: pg_acquireLock]--
 NATIVE_SQL:SELECT pg_try_advisory_lock(?)
 
@@ -0,0 +1,91 @@
+package de.aservo.ldap.adapter;
+
+import de.aservo.ldap.adapter.api.database.Row;
+import de.aservo.ldap.adapter.api.database.exception.UnknownColumnException;
+import de.aservo.ldap.adapter.api.entity.ColumnNames;
+import de.aservo.ldap.adapter.api.entity.GroupEntity;
+import de.aservo.ldap.adapter.api.entity.UserEntity;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+
+public class CommonPartitionTest {
+
+    @Test
+    @DisplayName("it should not read aggregated columns which are not selected")
+    public void test001() {
+
+        Row row = createRow(Collections.singletonMap(ColumnNames.ID, "group1"));
+
+        Assertions.assertEquals(Collections.emptyList(),
+                CommonPartition.getAggregatedValues(row, new HashSet<>(row.getColumns()),
+                        ColumnNames.MEMBER_USER_USERNAMES));
+    }
+
+    @Test
+    @DisplayName("it should split the values of selected aggregated columns")
+    public void test002() {
+
+        Map<String, Object> values = new HashMap<>();
+
+        values.put(ColumnNames.ID, "group1");
+        values.put(ColumnNames.MEMBER_USER_USERNAMES, "User1" + ColumnNames.VALUE_SEPARATOR + "User2");
+        values.put(ColumnNames.MEMBER_GROUP_NAMES, "");
+        values.put(ColumnNames.PARENT_GROUP_NAMES, null);
+
+        Row row = createRow(values);
+        Set<String> columns = new HashSet<>(row.getColumns());
+
+        Assertions.assertEquals(Arrays.asList("User1", "User2"),
+                CommonPartition.getAggregatedValues(row, columns, ColumnNames.MEMBER_USER_USERNAMES));
+        Assertions.assertEquals(Collections.emptyList(),
+                CommonPartition.getAggregatedValues(row, columns, ColumnNames.MEMBER_GROUP_NAMES));
+        Assertions.assertEquals(Collections.emptyList(),
+                CommonPartition.getAggregatedValues(row, columns, ColumnNames.PARENT_GROUP_NAMES));
+    }
+
+    @Test
+    @DisplayName("it should provide the same columns for all entities of a type")
+    public void test003() {
+
+        Row group1 = new GroupEntity("Group1", "Description of Group1");
+        Row group2 = new GroupEntity("Group2", null);
+        Row user = new UserEntity("User1", "LastNameOfUser1", "FirstNameOfUser1", "DisplayNameOfUser1",
+                "user1@email.com", true);
+
+        Assertions.assertSame(group1.getColumns(), group2.getColumns());
+
+        for (Row entity : Arrays.asList(group1, user)) {
+
+            for (String column : entity.getColumns())
+                Assertions.assertDoesNotThrow(() -> entity.apply(column, Object.class));
+
+            Assertions.assertFalse(entity.getColumns().contains(ColumnNames.MEMBER_USER_USERNAMES));
+            Assertions.assertFalse(entity.getColumns().contains(ColumnNames.PARENT_GROUP_NAMES));
+        }
+    }
+
+    private Row createRow(Map<String, Object> values) {
+
+        List<String> columns = new ArrayList<>(values.keySet());
+
+        return new Row() {
+
+            public <T> T apply(String columnName, Class<T> clazz) {
+
+                if (!values.containsKey(columnName))
+                    throw new UnknownColumnException("Cannot find column " + columnName + " in current row.");
+
+                return clazz.cast(values.get(columnName));
+            }
+
+            public List<String> getColumns() {
+
+                return columns;
+            }
+        };
+    }
+}
@@ -0,0 +1,225 @@
+package de.aservo.ldap.adapter.backend;
+
+import de.aservo.ldap.adapter.api.cursor.MappableCursor;
+import de.aservo.ldap.adapter.api.database.Row;
+import de.aservo.ldap.adapter.api.directory.NestedDirectoryBackend;
+import de.aservo.ldap.adapter.api.entity.EntityType;
+import de.aservo.ldap.adapter.api.entity.GroupEntity;
+import de.aservo.ldap.adapter.api.entity.MembershipEntity;
+import de.aservo.ldap.adapter.api.entity.UserEntity;
+import de.aservo.ldap.adapter.api.query.BooleanValue;
+import de.aservo.ldap.adapter.sql.impl.ConnectionPool;
+import org.junit.jupiter.api.*;
+import test.api.AbstractBackendTest;
+import test.configuration.backend.JsonWithPersistenceBackend;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class CachedWithPersistenceDirectoryBackendTest
+        extends AbstractBackendTest {
+
+    public CachedWithPersistenceDirectoryBackendTest() {
+
+        super(new JsonWithPersistenceBackend("cached-with-persistence-test"));
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("it should extend the closures of all ancestors by added nested memberships")
+    public void test001() {
+
+        NestedDirectoryBackend directory = getDirectory();
+
+        directory.withWriteAccess(() -> {
+
+            Arrays.asList("GroupA", "GroupB", "GroupC", "GroupD").forEach(directory::upsertGroup);
+            Arrays.asList("UserA", "UserB", "UserC", "UserD").forEach(directory::upsertUser);
+
+            directory.upsertMembership(createMembership("groupa", setOf(), setOf("usera", "userb")));
+            directory.upsertMembership(createMembership("groupb", setOf("groupa"), setOf("userc")));
+            directory.upsertMembership(createMembership("groupc", setOf("groupa"), setOf("userd")));
+            directory.upsertMembership(createMembership("groupd", setOf("groupb", "groupc"), setOf()));
+        });
+
+        assertClosure("groupa", setOf(), setOf("usera", "userb"));
+        assertClosure("groupb", setOf("groupa"), setOf("usera", "userb", "userc"));
+        assertClosure("groupc", setOf("groupa"), setOf("usera", "userb", "userd"));
+        assertClosure("groupd", setOf("groupa", "groupb", "groupc"), setOf("usera", "userb", "userc", "userd"));
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("it should keep descendants reachable on other paths after removing nested memberships")
+    public void test002() {
+
+        NestedDirectoryBackend directory = getDirectory();
+
+        directory.withWriteAccess(() -> {
+
+            directory.dropMembership(createMembership("groupc", setOf("groupa"), setOf()));
+        });
+
+        assertClosure("groupa", setOf(), setOf("usera", "userb"));
+        assertClosure("groupb", setOf("groupa"), setOf("usera", "userb", "userc"));
+        assertClosure("groupc", setOf(), setOf("userd"));
+        assertClosure("groupd", setOf("groupa", "groupb", "groupc"), setOf("usera", "userb", "userc", "userd"));
+
+        directory.withWriteAccess(() -> {
+
+            directory.dropMembership(createMembership("groupb", setOf("groupa"), setOf()));
+        });
+
+        assertClosure("groupb", setOf(), setOf("userc"));
+        assertClosure("groupd", setOf("groupb", "groupc"), setOf("userc", "userd"));
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("it should rebuild the closures of groups in a cycle after removing nested memberships")
+    public void test003() {
+
+        NestedDirectoryBackend directory = getDirectory();
+
+        directory.withWriteAccess(() -> {
+
+            directory.upsertMembership(createMembership("groupb", setOf("groupa"), setOf()));
+            directory.upsertMembership(createMembership("groupa", setOf("groupd"), setOf()));
+        });
+
+        Set<String> allGroupIds = setOf("groupa", "groupb", "groupc", "groupd");
+        Set<String> allUserIds = setOf("usera", "userb", "userc", "userd");
+
+        assertClosure("groupa", allGroupIds, allUserIds);
+        assertClosure("groupb", allGroupIds, allUserIds);
+        assertClosure("groupc", setOf(), setOf("userd"));
+        assertClosure("groupd", allGroupIds, allUserIds);
+
+        directory.withWriteAccess(() -> {
+
+            directory.dropMembership(createMembership("groupd", setOf("groupb"), setOf()));
+        });
+
+        assertClosure("groupa", setOf("groupc", "groupd"), setOf("usera", "userb", "userd"));
+        assertClosure("groupb", setOf("groupa", "groupc", "groupd"), allUserIds);
+        assertClosure("groupc", setOf(), setOf("userd"));
+        assertClosure("groupd", setOf("groupc"), setOf("userd"));
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("it should rebuild the closures of all ancestors after dropping a group")
+    public void test004() {
+
+        NestedDirectoryBackend directory = getDirectory();
+
+        directory.withWriteAccess(() -> {
+
+            directory.dropGroup("groupd");
+        });
+
+        assertClosure("groupa", setOf(), setOf("usera", "userb"));
+        assertClosure("groupb", setOf("groupa"), setOf("usera", "userb", "userc"));
+        assertClosure("groupc", setOf(), setOf("userd"));
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("it should run all queries of a search in one transaction until the cursors are closed")
+    public void test005()
+            throws Exception {
+
+        ConnectionPool readPool =
+                ((CachedWithPersistenceDirectoryBackend) getDirectory()).getDatabaseService().getReadPool();
+
+        long borrowCount = readPool.getBorrowCount();
+
+        // the group result is exhausted before the users are queried
+        MappableCursor<Row> cursor = getBackendFactory().withSession(directory -> {
+
+            return MappableCursor.flatten(
+                    directory.runQueryExpression("search", null, new BooleanValue(true), EntityType.GROUP,
+                            Collections.emptySet()),
+                    directory.runQueryExpression("search", null, new BooleanValue(true), EntityType.USER,
+                            Collections.emptySet()));
+        });
+
+        Set<String> ids = new HashSet<>();
+
+        while (cursor.next())
+            ids.add(cursor.get().apply("id", String.class));
+
+        // the transaction is released with the last exhausted cursor
+        Assertions.assertEquals(borrowCount + 1, readPool.getBorrowCount());
+        Assertions.assertEquals(0, readPool.getNumActive());
+
+        cursor.close();
+
+        Assertions.assertEquals(setOf("groupa", "groupb", "groupc", "usera", "userb", "userc", "userd"), ids);
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("it should release the transaction of entity probes with the end of the session")
+    public void test006() {
+
+        ConnectionPool readPool =
+                ((CachedWithPersistenceDirectoryBackend) getDirectory()).getDatabaseService().getReadPool();
+
+        for (int i = 0; i < 20; i++) {
+
+            String txId = "probe" + i;
+
+            boolean found = getBackendFactory().withSession(directory -> {
+
+                return directory.hasEntity(txId, EntityType.GROUP, "groupa") &&
+                        directory.hasEntity(txId, EntityType.USER, "usera") &&
+                        !directory.hasEntity(txId, EntityType.USER, "unknown");
+            });
+
+            Assertions.assertTrue(found);
+            Assertions.assertEquals(0, readPool.getNumActive());
+        }
+    }
+
+    private NestedDirectoryBackend getDirectory() {
+
+        return (NestedDirectoryBackend) getBackendFactory().getPermanentDirectory();
+    }
+
+    private void assertClosure(String groupId, Set<String> expectedGroupIds, Set<String> expectedUserIds) {
+
+        NestedDirectoryBackend directory = getDirectory();
+
+        directory.withReadAccess(() -> {
+
+            Assertions.assertEquals(expectedGroupIds,
+                    directory.getTransitiveChildGroupsOfGroup(groupId).stream()
+                            .map(GroupEntity::getId)
+                            .collect(Collectors.toSet()),
+                    "Unexpected member groups of " + groupId);
+
+            Assertions.assertEquals(expectedUserIds,
+                    directory.getTransitiveUsersOfGroup(groupId).stream()
+                            .map(UserEntity::getId)
+                            .collect(Collectors.toSet()),
+                    "Unexpected member users of " + groupId);
+        });
+    }
+
+    private MembershipEntity createMembership(String parentGroupId, Set<String> groupIds, Set<String> userIds) {
+
+        return new MembershipEntity(parentGroupId, groupIds, userIds);
+    }
+
+    private Set<String> setOf(String... ids) {
+
+        return new HashSet<>(Arrays.asList(ids));
+    }
+}
@@ -0,0 +1,119 @@
+package de.aservo.ldap.adapter.sql.impl;
+
+import de.aservo.ldap.adapter.api.database.BatchQueryDef;
+import de.aservo.ldap.adapter.api.database.QueryDefFactory;
+import de.aservo.ldap.adapter.api.database.result.IgnoredResult;
+import de.aservo.ldap.adapter.api.database.result.SingleResult;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.function.Function;
+
+
+/**
+ * Compares the bulk load of the database dialect with batched upserts.
+ * The benchmark is excluded from the test phase by default. Run it with
+ * mvn test -Dtest.excludedGroups= -Dgroups=benchmark -Dbenchmark=true and optionally -Dbenchmark.jdbc.url,
+ * -Dbenchmark.jdbc.driver, -Dbenchmark.jdbc.user, -Dbenchmark.jdbc.password and -Dbenchmark.rows to measure
+ * against another database.
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class BulkLoadBenchmarkTest {
+
+    private final Logger logger = LoggerFactory.getLogger(BulkLoadBenchmarkTest.class);
+    private final int rows = Integer.getInteger("benchmark.rows", 100000);
+    private DatabaseService dbService;
+
+    @BeforeAll
+    public void setup() {
+
+        ConnectionPool pool = new ConnectionPool("benchmark",
+                System.getProperty("benchmark.jdbc.driver", "org.h2.Driver"),
+                System.getProperty("benchmark.jdbc.url", "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1"),
+                System.getProperty("benchmark.jdbc.user", "sa"),
+                System.getProperty("benchmark.jdbc.password", "sa"),
+                1, 1, 2, true, 100, Connection.TRANSACTION_READ_COMMITTED);
+
+        dbService = new DatabaseService(logger, pool, false, Integer.getInteger("benchmark.batch-size", 1000));
+
+        dbService.startup();
+    }
+
+    @AfterAll
+    public void shutdown() {
+
+        dbService.shutdown();
+    }
+
+    @Test
+    @DisplayName("it should measure the bulk load against batched upserts")
+    public void test001() {
+
+        long batched = measure("_User", "remove_all_users", factory -> {
+
+            BatchQueryDef batch = factory.batchById("create_or_update_user");
+
+            for (int i = 0; i < rows; i++)
+                bindUser(batch, i).addBatch();
+
+            return batch.execute();
+        });
+
+        // the bulk load fills the staging table like a full synchronization does
+        long bulk = measure("_User_Staging", "remove_all_staged_users", factory -> {
+
+            BatchQueryDef loader = factory.bulkLoad("_User_Staging", Arrays.asList("id", "username", "last_name",
+                    "first_name", "display_name", "email", "active"));
+
+            for (int i = 0; i < rows; i++)
+                bindUser(loader, i).addBatch();
+
+            return loader.execute();
+        });
+
+        logger.info("Loaded {} users with batched upserts in {} ms and with the bulk load in {} ms.",
+                rows, batched, bulk);
+    }
+
+    private long measure(String table, String clearClauseId, Function<QueryDefFactory, Integer> block) {
+
+        dbService.withTransaction(factory -> {
+
+            factory.queryById(clearClauseId).execute(IgnoredResult.class);
+        });
+
+        long start = System.currentTimeMillis();
+        int count = dbService.withTransaction(block);
+        long end = System.currentTimeMillis();
+
+        Assertions.assertEquals(rows, count);
+
+        Assertions.assertEquals(rows, (long) dbService.withTransaction(factory -> {
+
+            return factory
+                    .query("select count(*) as user_count from " + table)
+                    .execute(SingleResult.class)
+                    .transform(row -> row.apply("user_count", Long.class));
+        }));
+
+        return end - start;
+    }
+
+    private BatchQueryDef bindUser(BatchQueryDef batch, int index) {
+
+        return batch
+                .on("id", "user" + index)
+                .on("username", "User" + index)
+                .on("last_name", "LastNameOfUser" + index)
+                .on("first_name", "FirstNameOfUser" + index)
+                .on("display_name", index % 2 == 0 ? null : "DisplayNameOfUser" + index)
+                .on("email", "user" + index + "@email.com")
+                .on("active", index % 10 != 0);
+    }
+}
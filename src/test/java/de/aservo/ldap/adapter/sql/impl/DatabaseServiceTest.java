@@ -0,0 +1,291 @@
+package de.aservo.ldap.adapter.sql.impl;
+
+import de.aservo.ldap.adapter.api.cursor.MappableCursor;
+import de.aservo.ldap.adapter.api.database.BatchQueryDef;
+import de.aservo.ldap.adapter.api.database.CloseableTransaction;
+import de.aservo.ldap.adapter.api.database.Row;
+import de.aservo.ldap.adapter.api.database.result.CursorResult;
+import de.aservo.ldap.adapter.api.database.result.IgnoredResult;
+import de.aservo.ldap.adapter.api.database.result.IndexedSeqResult;
+import org.junit.jupiter.api.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class DatabaseServiceTest {
+
+    private final Logger logger = LoggerFactory.getLogger(DatabaseServiceTest.class);
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private ConnectionPool writePool;
+    private ConnectionPool readPool;
+    private DatabaseService dbService;
+
+    @BeforeAll
+    public void setup() {
+
+        String url = "jdbc:h2:mem:database-service-test;DB_CLOSE_DELAY=-1";
+
+        writePool = new ConnectionPool("write", "org.h2.Driver", url, "sa", "sa", 1, 1, 1, true, 100,
+                Connection.TRANSACTION_READ_COMMITTED);
+        readPool = new ConnectionPool("read", "org.h2.Driver", url, "sa", "sa", 1, 1, 1, true, 100,
+                Connection.TRANSACTION_READ_COMMITTED);
+
+        dbService = new DatabaseService(logger, writePool, readPool, false, 1000);
+
+        dbService.startup();
+    }
+
+    @AfterAll
+    public void shutdown() {
+
+        executorService.shutdownNow();
+        dbService.shutdown();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("it should not block a search while a write transaction is open")
+    public void test001()
+            throws Exception {
+
+        CountDownLatch writeStarted = new CountDownLatch(1);
+        CountDownLatch searchFinished = new CountDownLatch(1);
+
+        Future<?> write = executorService.submit(() -> {
+
+            dbService.withTransaction(factory -> {
+
+                factory
+                        .queryById("create_or_update_user")
+                        .on("id", "user1")
+                        .on("username", "User1")
+                        .on("last_name", "LastNameOfUser1")
+                        .on("first_name", "FirstNameOfUser1")
+                        .on("display_name", "DisplayNameOfUser1")
+                        .on("email", "user1@email.com")
+                        .on("active", true)
+                        .execute(IgnoredResult.class);
+
+                writeStarted.countDown();
+
+                try {
+
+                    searchFinished.await();
+
+                } catch (InterruptedException e) {
+
+                    Thread.currentThread().interrupt();
+                }
+            });
+        });
+
+        writeStarted.await();
+
+        long writeBorrowCount = writePool.getBorrowCount();
+
+        // a search session uses a read only transaction and a closeable transaction for the cursor
+        List<?> users = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+
+            return dbService.withTransaction(true, factory -> {
+
+                CloseableTransaction transaction = dbService.getCloseableTransaction();
+
+                try {
+
+                    return transaction.getQueryDefFactory()
+                            .queryById("find_all_users")
+                            .on("active_only", false)
+                            .execute(IndexedSeqResult.class)
+                            .transform(row -> row.apply("id", String.class));
+
+                } finally {
+
+                    transaction.closeUnchecked();
+                }
+            });
+        });
+
+        searchFinished.countDown();
+        write.get();
+
+        Assertions.assertTrue(users.isEmpty());
+        Assertions.assertEquals(writeBorrowCount, writePool.getBorrowCount());
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("it should run queries of read only transactions on the read pool")
+    public void test002() {
+
+        long writeBorrowCount = writePool.getBorrowCount();
+        long readBorrowCount = readPool.getBorrowCount();
+
+        List<?> users = dbService.withTransaction(true, factory -> {
+
+            return factory
+                    .queryById("find_all_users")
+                    .on("active_only", false)
+                    .execute(IndexedSeqResult.class)
+                    .transform(row -> row.apply("id", String.class));
+        });
+
+        Assertions.assertEquals(1, users.size());
+        Assertions.assertEquals(writeBorrowCount, writePool.getBorrowCount());
+        Assertions.assertEquals(readBorrowCount + 1, readPool.getBorrowCount());
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("it should not borrow a connection for a read only transaction without queries")
+    public void test003() {
+
+        long writeBorrowCount = writePool.getBorrowCount();
+        long readBorrowCount = readPool.getBorrowCount();
+
+        Assertions.assertEquals("result", dbService.withTransaction(true, factory -> "result"));
+        Assertions.assertEquals(writeBorrowCount, writePool.getBorrowCount());
+        Assertions.assertEquals(readBorrowCount, readPool.getBorrowCount());
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("it should count changed rows of a batch apart from its executed entries")
+    public void test004() {
+
+        dbService.withTransaction(factory -> {
+
+            BatchQueryDef batch = factory.batchById("remove_user_if_exists");
+
+            batch.on("id", "unknown1").addBatch();
+            batch.on("id", "user1").addBatch();
+            batch.on("id", "unknown2").addBatch();
+
+            Assertions.assertEquals(3, batch.execute());
+            Assertions.assertEquals(1, batch.getUpdateCount());
+        });
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("it should cancel the query of a search which is abandoned during the read ahead")
+    public void test005()
+            throws Exception {
+
+        CloseableTransaction transaction = dbService.getCloseableTransaction();
+
+        try {
+
+            // rows are computed while they are fetched; the filter scans the whole range for the first row
+            transaction.getQueryDefFactory()
+                    .query(Executor.NATIVE_SQL_INDICATOR + "set lazy_query_execution 1")
+                    .execute(IgnoredResult.class);
+
+            CursorResult result =
+                    transaction.getQueryDefFactory()
+                            .query(Executor.NATIVE_SQL_INDICATOR +
+                                    "select x from system_range(1, 100000000000) where x + 1 < 0")
+                            .execute(CursorResult.class);
+
+            MappableCursor<Row> cursor =
+                    new ResultBuffer(ResultBuffer.Strategy.SPOOL, 10, 10)
+                            .buffer(result.getColumns(), result.transform(Function.identity()));
+
+            Future<Boolean> search = executorService.submit(cursor::next);
+
+            Thread.sleep(500);
+
+            Assertions.assertFalse(search.isDone());
+
+            cursor.close();
+
+            ExecutionException exception =
+                    Assertions.assertThrows(ExecutionException.class, () -> search.get(10, TimeUnit.SECONDS));
+
+            Assertions.assertTrue(exception.getCause() instanceof RuntimeException);
+
+        } finally {
+
+            transaction.closeUnchecked();
+        }
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("it should stop the query of a search which is closed after reaching its size limit")
+    public void test006()
+            throws Exception {
+
+        CloseableTransaction transaction = dbService.getCloseableTransaction();
+
+        try {
+
+            transaction.getQueryDefFactory()
+                    .query(Executor.NATIVE_SQL_INDICATOR + "set lazy_query_execution 1")
+                    .execute(IgnoredResult.class);
+
+            CursorResult result =
+                    transaction.getQueryDefFactory()
+                            .query(Executor.NATIVE_SQL_INDICATOR + "select x from system_range(1, 100000000000)")
+                            .execute(CursorResult.class);
+
+            MappableCursor<Row> cursor =
+                    new ResultBuffer(ResultBuffer.Strategy.STREAM, 10, 0)
+                            .buffer(result.getColumns(), result.transform(Function.identity()));
+
+            Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+
+                for (int i = 0; i < 20; i++)
+                    Assertions.assertTrue(cursor.next());
+
+                cursor.close();
+            });
+
+            Assertions.assertFalse(cursor.next());
+
+        } finally {
+
+            transaction.closeUnchecked();
+        }
+    }
+
+    @Test
+    @Order(7)
+    @DisplayName("it should build the schema if native SQL statements cannot be applied")
+    public void test007() {
+
+        // H2 neither knows the pg_trgm extension nor its indexes
+        ConnectionPool pool = new ConnectionPool("native", "org.h2.Driver",
+                "jdbc:h2:mem:database-service-native-test;DB_CLOSE_DELAY=-1", "sa", "sa", 1, 1, 1, true, 100,
+                Connection.TRANSACTION_READ_COMMITTED);
+
+        DatabaseService nativeDbService = new DatabaseService(logger, pool, true, 1000);
+
+        nativeDbService.startup();
+
+        try {
+
+            List<?> users = nativeDbService.withTransaction(true, factory -> {
+
+                return factory
+                        .queryById("find_all_users")
+                        .on("active_only", false)
+                        .execute(IndexedSeqResult.class)
+                        .transform(row -> row.apply("id", String.class));
+            });
+
+            Assertions.assertTrue(users.isEmpty());
+
+        } finally {
+
+            nativeDbService.shutdown();
+        }
+    }
+}
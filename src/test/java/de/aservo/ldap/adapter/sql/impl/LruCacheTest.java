@@ -0,0 +1,77 @@
+package de.aservo.ldap.adapter.sql.impl;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class LruCacheTest {
+
+    @Test
+    @DisplayName("it should compute a value only once per key")
+    public void test001() {
+
+        LruCache<String, String> cache = new LruCache<>(2);
+        AtomicInteger computations = new AtomicInteger();
+
+        String value1 = cache.get("a", () -> createValue("value a", computations));
+        String value2 = cache.get("a", () -> createValue("value a", computations));
+
+        Assertions.assertSame(value1, value2);
+        Assertions.assertEquals(1, computations.get());
+        Assertions.assertEquals(1, cache.getHitCount());
+        Assertions.assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    @DisplayName("it should evict the least recently used value")
+    public void test002() {
+
+        LruCache<String, String> cache = new LruCache<>(2);
+        AtomicInteger computations = new AtomicInteger();
+
+        cache.get("a", () -> createValue("value a", computations));
+        cache.get("b", () -> createValue("value b", computations));
+
+        // the access makes b the eldest entry
+        cache.get("a", () -> createValue("value a", computations));
+        cache.get("c", () -> createValue("value c", computations));
+
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertEquals(3, computations.get());
+
+        cache.get("a", () -> createValue("value a", computations));
+
+        Assertions.assertEquals(3, computations.get());
+
+        Assertions.assertEquals("value b", cache.get("b", () -> createValue("value b", computations)));
+        Assertions.assertEquals(4, computations.get());
+        Assertions.assertEquals(2, cache.size());
+    }
+
+    @Test
+    @DisplayName("it should not cache values with a capacity of zero")
+    public void test003() {
+
+        LruCache<String, String> cache = new LruCache<>(0);
+        AtomicInteger computations = new AtomicInteger();
+
+        cache.get("a", () -> createValue("value a", computations));
+        cache.get("a", () -> createValue("value a", computations));
+
+        Assertions.assertEquals(2, computations.get());
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertEquals(0, cache.getHitCount());
+        Assertions.assertEquals(2, cache.getMissCount());
+    }
+
+    private String createValue(String value, AtomicInteger computations) {
+
+        computations.incrementAndGet();
+
+        // a new instance for every computation
+        return new String(value);
+    }
+}
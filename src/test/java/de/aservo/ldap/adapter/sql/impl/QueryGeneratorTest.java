@@ -0,0 +1,318 @@
+package de.aservo.ldap.adapter.sql.impl;
+
+import de.aservo.ldap.adapter.api.database.BatchQueryDef;
+import de.aservo.ldap.adapter.api.database.QueryDef;
+import de.aservo.ldap.adapter.api.database.QueryDefFactory;
+import de.aservo.ldap.adapter.api.database.result.IgnoredResult;
+import de.aservo.ldap.adapter.api.database.result.IndexedSeqResult;
+import de.aservo.ldap.adapter.api.entity.ColumnNames;
+import de.aservo.ldap.adapter.api.entity.EntityType;
+import de.aservo.ldap.adapter.api.query.*;
+import org.junit.jupiter.api.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class QueryGeneratorTest {
+
+    private static final int KEY_LENGTH = 255;
+
+    private final Logger logger = LoggerFactory.getLogger(QueryGeneratorTest.class);
+    private final QueryPlanCache planCache = new QueryPlanCache(10);
+    private final List<String> clauses = new ArrayList<>();
+    private DatabaseService dbService;
+    private TrigramIndex trigramIndex;
+
+    @BeforeAll
+    public void setup() {
+
+        ConnectionPool pool = new ConnectionPool("test", "org.h2.Driver",
+                "jdbc:h2:mem:query-generator-test;DB_CLOSE_DELAY=-1", "sa", "sa", 1, 1, 2, true, 100,
+                Connection.TRANSACTION_READ_COMMITTED);
+
+        dbService = new DatabaseService(logger, pool, false, 1000);
+
+        dbService.startup();
+
+        TrigramIndex.Builder builder = new TrigramIndex.Builder();
+
+        dbService.withTransaction(factory -> {
+
+            addUser(factory, builder, "UserA", "a.user@email.com");
+            addUser(factory, builder, "UserB", null);
+            addUser(factory, builder, "UserC", "c.user@email.com");
+            addUser(factory, builder, "UserD", "d.user@email.com");
+            addUser(factory, builder, "UserE", "e.admin@email.com");
+        });
+
+        trigramIndex = builder.build();
+    }
+
+    @AfterAll
+    public void shutdown() {
+
+        dbService.shutdown();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("it should include entities without value in negated wildcard filters with and without trigram index")
+    public void test001() {
+
+        QueryExpression expression = new NotLogicExpression(Collections.singletonList(createWildcard("mail", "a")));
+        List<String> expected = Arrays.asList("userb", "userc", "userd", "usere");
+
+        Assertions.assertEquals(expected, findUserIds(expression, null));
+        Assertions.assertEquals(expected, findUserIds(expression, trigramIndex));
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("it should include entities without value in negated wildcard filters without trigram candidates")
+    public void test002() {
+
+        QueryExpression expression = new NotLogicExpression(Collections.singletonList(createWildcard("mail", "z")));
+        List<String> expected = Arrays.asList("usera", "userb", "userc", "userd", "usere");
+
+        Assertions.assertEquals(expected, findUserIds(expression, null));
+        Assertions.assertEquals(expected, findUserIds(expression, trigramIndex));
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("it should exclude entities without value in wildcard filters with and without trigram index")
+    public void test003() {
+
+        QueryExpression expression = createWildcard("mail", "c");
+        List<String> expected = Collections.singletonList("userc");
+
+        Assertions.assertEquals(expected, findUserIds(expression, null));
+        Assertions.assertEquals(expected, findUserIds(expression, trigramIndex));
+    }
+
+    @Test
+    @Order(4)
+    @DisplayName("it should pad trigram candidates to share the query plan between similar candidate counts")
+    public void test004() {
+
+        QueryExpression expression1 = createSuffixWildcard("mail", "user@email.com");
+        QueryExpression expression2 = createSuffixWildcard("mail", "@email.com");
+
+        Assertions.assertEquals(Arrays.asList("usera", "userc", "userd"), findUserIds(expression1, null));
+        Assertions.assertEquals(Arrays.asList("usera", "userc", "userd", "usere"), findUserIds(expression2, null));
+
+        long hitCount = planCache.getHitCount();
+
+        // three and four candidates are bound to a bucket of four; the last candidate fills up the bucket
+        Assertions.assertEquals(Arrays.asList("usera", "userc", "userd"), findUserIds(expression1, trigramIndex));
+        Assertions.assertEquals(Arrays.asList("usera", "userc", "userd", "usere"),
+                findUserIds(expression2, trigramIndex));
+
+        Assertions.assertEquals(hitCount + 1, planCache.getHitCount());
+    }
+
+    @Test
+    @Order(5)
+    @DisplayName("it should bind values of IN filters only once if they are shorter than the key columns")
+    public void test005() {
+
+        String longValue = String.join("", Collections.nCopies(KEY_LENGTH, "x"));
+
+        Assertions.assertEquals(Arrays.asList("usera", "userd"),
+                findUserIds(createEqualityDisjunction("mail", "A.User@email.com", "d.user@email.com"), null));
+
+        int shortParameters = countParameters(clauses.get(clauses.size() - 1));
+
+        Assertions.assertEquals(Collections.singletonList("usera"),
+                findUserIds(createEqualityDisjunction("mail", "a.user@email.com", longValue), null));
+
+        int longParameters = countParameters(clauses.get(clauses.size() - 1));
+
+        // the value list is bound a second time to check the whole values
+        Assertions.assertEquals(shortParameters + 2, longParameters);
+    }
+
+    @Test
+    @Order(6)
+    @DisplayName("it should check the whole values of IN filters with values not shorter than the key columns")
+    public void test006() {
+
+        String prefix = String.join("", Collections.nCopies(KEY_LENGTH, "f"));
+
+        dbService.withTransaction(factory -> {
+
+            addUser(factory, new TrigramIndex.Builder(), "UserF", prefix + "@email.com");
+        });
+
+        Assertions.assertEquals(Collections.singletonList("usera"),
+                findUserIds(createEqualityDisjunction("mail", "a.user@email.com", prefix), null));
+
+        Assertions.assertEquals(Arrays.asList("usera", "userf"),
+                findUserIds(createEqualityDisjunction("mail", "a.user@email.com", prefix + "@Email.com"), null));
+    }
+
+    @Test
+    @Order(7)
+    @DisplayName("it should pad long IN filters to a multiple of the bucket step instead of a power of two")
+    public void test007() {
+
+        findUserIds(createEqualityDisjunction("mail", createValues(300)), null);
+
+        int parameters = countParameters(clauses.get(clauses.size() - 1));
+        long hitCount = planCache.getHitCount();
+
+        Assertions.assertEquals(Collections.singletonList("usera"),
+                findUserIds(createEqualityDisjunction("mail", createValues(500)), null));
+
+        // 300 and 500 values share a bucket of 512 values
+        Assertions.assertEquals(hitCount + 1, planCache.getHitCount());
+        Assertions.assertEquals(parameters, countParameters(clauses.get(clauses.size() - 1)));
+
+        findUserIds(createEqualityDisjunction("mail", createValues(513)), null);
+
+        Assertions.assertEquals(parameters + 256, countParameters(clauses.get(clauses.size() - 1)));
+    }
+
+    @Test
+    @Order(8)
+    @DisplayName("it should not share query plans between shapes which only differ in the suffixes of slots")
+    public void test008() {
+
+        Assertions.assertEquals(Collections.singletonList("userc"), findUserIds(createWildcard("mail", "c.u"), null));
+
+        long missCount = planCache.getMissCount();
+
+        // without trigram index, with a bucket of one candidate and with a bucket of no candidates
+        Assertions.assertEquals(Collections.singletonList("userd"), findUserIds(createWildcard("mail", "d.u"), null));
+        Assertions.assertEquals(Collections.singletonList("userc"),
+                findUserIds(createWildcard("mail", "c.u"), trigramIndex));
+        Assertions.assertEquals(Collections.emptyList(), findUserIds(createWildcard("mail", "xyz"), trigramIndex));
+        Assertions.assertEquals(Collections.singletonList("userd"),
+                findUserIds(createWildcard("mail", "d.u"), trigramIndex));
+
+        Assertions.assertEquals(missCount + 2, planCache.getMissCount());
+
+        // the same number of values bound once or twice
+        Assertions.assertEquals(Collections.singletonList("usera"),
+                findUserIds(createEqualityDisjunction("mail", "a.user@email.com", "x@email.com", "y@email.com"),
+                        null));
+        Assertions.assertEquals(Collections.singletonList("usera"),
+                findUserIds(createEqualityDisjunction("mail", "a.user@email.com", "x@email.com",
+                        String.join("", Collections.nCopies(KEY_LENGTH, "y"))), null));
+
+        Assertions.assertEquals(missCount + 4, planCache.getMissCount());
+    }
+
+    private List<String> findUserIds(QueryExpression expression, TrigramIndex index) {
+
+        QueryGenerator generator =
+                new QueryGenerator(null, "test", false, false, false, planCache, index);
+
+        QueryExpression preparedExpression = generator.prepare(EntityType.USER, expression);
+
+        List<String> ids = dbService.withTransaction(true, factory -> {
+
+            return generator.generate(EntityType.USER, recordClauses(factory), preparedExpression,
+                    Collections.emptySet())
+                    .execute(IndexedSeqResult.class)
+                    .transform(row -> row.apply(ColumnNames.ID, String.class));
+        });
+
+        List<String> result = new ArrayList<>(ids);
+
+        Collections.sort(result);
+
+        return result;
+    }
+
+    private QueryDefFactory recordClauses(QueryDefFactory factory) {
+
+        return new QueryDefFactory() {
+
+            public QueryDef queryById(String clauseId) {
+
+                return factory.queryById(clauseId);
+            }
+
+            public QueryDef query(String clause) {
+
+                clauses.add(clause);
+
+                return factory.query(clause);
+            }
+
+            public BatchQueryDef batchById(String clauseId) {
+
+                return factory.batchById(clauseId);
+            }
+
+            public BatchQueryDef bulkLoad(String table, List<String> columns) {
+
+                return factory.bulkLoad(table, columns);
+            }
+        };
+    }
+
+    private int countParameters(String clause) {
+
+        return (int) clause.chars().filter(x -> x == '?').count();
+    }
+
+    private QueryExpression createEqualityDisjunction(String attribute, String... values) {
+
+        return new OrLogicExpression(Arrays.stream(values)
+                .map(x -> new EqualOperator(attribute, x))
+                .collect(Collectors.toList()));
+    }
+
+    private String[] createValues(int count) {
+
+        String[] values = new String[count];
+
+        values[0] = "a.user@email.com";
+
+        for (int i = 1; i < count; i++)
+            values[i] = "unknown" + i + "@email.com";
+
+        return values;
+    }
+
+    private WildcardOperator createWildcard(String attribute, String initialSegment) {
+
+        return new WildcardOperator(attribute, Pattern.compile(Pattern.quote(initialSegment) + ".*"), initialSegment,
+                null, Collections.emptyList());
+    }
+
+    private WildcardOperator createSuffixWildcard(String attribute, String finalSegment) {
+
+        return new WildcardOperator(attribute, Pattern.compile(".*" + Pattern.quote(finalSegment)), null,
+                finalSegment, Collections.emptyList());
+    }
+
+    private void addUser(QueryDefFactory factory, TrigramIndex.Builder builder, String username, String email) {
+
+        Map<String, String> values = new HashMap<>();
+
+        values.put(ColumnNames.EMAIL, email);
+
+        factory
+                .queryById("create_or_update_user")
+                .on("id", username.toLowerCase())
+                .on("username", username)
+                .on("last_name", Optional.of("LastNameOf" + username))
+                .on("first_name", Optional.of("FirstNameOf" + username))
+                .on("display_name", Optional.of("DisplayNameOf" + username))
+                .on("email", Optional.ofNullable(email))
+                .on("active", true)
+                .execute(IgnoredResult.class);
+
+        builder.add(EntityType.USER, username.toLowerCase(), values);
+    }
+}
@@ -0,0 +1,181 @@
+package de.aservo.ldap.adapter.sql.impl;
+
+import de.aservo.ldap.adapter.api.LdapUtils;
+import de.aservo.ldap.adapter.api.query.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+public class QueryOptimizerTest {
+
+    @TestFactory
+    @DisplayName("it should flatten nested conjunctions and disjunctions")
+    public Stream<DynamicTest> test001() {
+
+        return createTests(
+                new Object[]{"and of nested and",
+                        and(eq("mail", "a"), and(eq("cn", "b"), and(eq("sn", "c")))),
+                        and(eq("mail", "a"), eq("cn", "b"), eq("sn", "c"))},
+                new Object[]{"or of nested or",
+                        or(eq("member", "a"), or(eq("member", "b"), present("sn"))),
+                        or(eq("member", "a"), eq("member", "b"), present("sn"))},
+                new Object[]{"and of nested or",
+                        and(present("sn"), or(eq("cn", "a"), present("mail"))),
+                        and(present("sn"), or(eq("cn", "a"), present("mail")))});
+    }
+
+    @TestFactory
+    @DisplayName("it should fold constants")
+    public Stream<DynamicTest> test002() {
+
+        return createTests(
+                new Object[]{"and with true", and(BooleanValue.trueValue(), eq("cn", "a")), eq("cn", "a")},
+                new Object[]{"and with false", and(BooleanValue.falseValue(), eq("cn", "a")),
+                        BooleanValue.falseValue()},
+                new Object[]{"or with true", or(BooleanValue.trueValue(), eq("cn", "a")), BooleanValue.trueValue()},
+                new Object[]{"or with false", or(BooleanValue.falseValue(), eq("cn", "a")), eq("cn", "a")},
+                new Object[]{"and of true only", and(BooleanValue.trueValue(), BooleanValue.trueValue()),
+                        BooleanValue.trueValue()},
+                new Object[]{"or of false only", or(BooleanValue.falseValue(), BooleanValue.falseValue()),
+                        BooleanValue.falseValue()},
+                new Object[]{"false in nested and", or(present("sn"), and(eq("cn", "a"), BooleanValue.falseValue())),
+                        present("sn")});
+    }
+
+    @TestFactory
+    @DisplayName("it should remove duplicates")
+    public Stream<DynamicTest> test003() {
+
+        return createTests(
+                new Object[]{"equal values ignoring case", or(eq("cn", "Admin"), eq("CN", "admin")), eq("cn", "Admin")},
+                new Object[]{"presence", and(present("mail"), present("mail"), eq("cn", "a")),
+                        and(present("mail"), eq("cn", "a"))},
+                new Object[]{"negated and plain values", or(eq("member", "a"), neq("member", "a")),
+                        or(eq("member", "a"), neq("member", "a"))},
+                new Object[]{"inside negation", not(or(eq("cn", "a"), eq("cn", "A"))), not(eq("cn", "a"))});
+    }
+
+    @TestFactory
+    @DisplayName("it should replace contradictions by false")
+    public Stream<DynamicTest> test004() {
+
+        return createTests(
+                new Object[]{"value and its negation", and(eq("member", "a"), neq("member", "a")),
+                        BooleanValue.falseValue()},
+                new Object[]{"presence and its negation",
+                        and(present("mail"), new PresenceOperator("mail", true, true)),
+                        BooleanValue.falseValue()},
+                new Object[]{"different values of a single valued attribute", and(eq("mail", "a"), eq("mail", "b")),
+                        BooleanValue.falseValue()},
+                new Object[]{"different values of a multi valued attribute", and(eq("member", "a"), eq("member", "b")),
+                        and(eq("member", "a"), eq("member", "b"))},
+                new Object[]{"same value of a single valued attribute", and(eq("mail", "a"), eq("mail", "A")),
+                        eq("mail", "a")});
+    }
+
+    @TestFactory
+    @DisplayName("it should combine equality checks on the same attribute")
+    public Stream<DynamicTest> test005() {
+
+        return createTests(
+                new Object[]{"or of equalities", or(eq("mail", "a"), present("sn"), eq("mail", "b")),
+                        or(in("mail", false, "a", "b"), present("sn"))},
+                new Object[]{"and of negated equalities", and(neq("mail", "a"), neq("mail", "b")),
+                        in("mail", true, "a", "b")},
+                new Object[]{"in and further equalities",
+                        or(in("mail", false, "a", "b"), eq("mail", "c"), eq("mail", "A")),
+                        in("mail", false, "a", "b", "c")},
+                new Object[]{"in and not in", or(in("mail", false, "a", "b"), in("mail", true, "c", "d")),
+                        or(in("mail", false, "a", "b"), in("mail", true, "c", "d"))},
+                new Object[]{"multi valued attribute", or(eq("member", "a"), eq("member", "b")),
+                        or(eq("member", "a"), eq("member", "b"))},
+                new Object[]{"and of equalities", and(eq("cn", "a"), eq("sn", "b")),
+                        and(eq("cn", "a"), eq("sn", "b"))});
+    }
+
+    private Stream<DynamicTest> createTests(Object[]... cases) {
+
+        return Arrays.stream(cases).map(x -> DynamicTest.dynamicTest((String) x[0], () -> {
+
+            Assertions.assertEquals(describe((QueryExpression) x[2]),
+                    describe(QueryOptimizer.optimize((QueryExpression) x[1])));
+        }));
+    }
+
+    private String describe(QueryExpression expression) {
+
+        if (expression instanceof EqualOperator) {
+
+            EqualOperator operator = (EqualOperator) expression;
+
+            return LdapUtils.normalizeAttribute(operator.getAttribute()) + (operator.isNegated() ? "!=" : "=") +
+                    operator.getValue().toLowerCase();
+        }
+
+        if (expression instanceof PresenceOperator) {
+
+            PresenceOperator operator = (PresenceOperator) expression;
+
+            return LdapUtils.normalizeAttribute(operator.getAttribute()) + (operator.isNegated() ? "!=*" : "=*");
+        }
+
+        if (expression instanceof InOperator) {
+
+            InOperator operator = (InOperator) expression;
+
+            return LdapUtils.normalizeAttribute(operator.getAttribute()) +
+                    (operator.isNegated() ? " not in " : " in ") +
+                    operator.getValues().stream().map(String::toLowerCase).collect(Collectors.toList());
+        }
+
+        if (expression instanceof LogicExpression) {
+
+            return expression.getClass().getSimpleName() + ((LogicExpression) expression).getChildren().stream()
+                    .map(this::describe)
+                    .collect(Collectors.toList());
+        }
+
+        return String.valueOf(((BooleanValue) expression).getValue());
+    }
+
+    private QueryExpression and(QueryExpression... children) {
+
+        return new AndLogicExpression(Arrays.asList(children));
+    }
+
+    private QueryExpression or(QueryExpression... children) {
+
+        return new OrLogicExpression(Arrays.asList(children));
+    }
+
+    private QueryExpression not(QueryExpression child) {
+
+        return new NotLogicExpression(Arrays.asList(child));
+    }
+
+    private QueryExpression eq(String attribute, String value) {
+
+        return new EqualOperator(attribute, value);
+    }
+
+    private QueryExpression neq(String attribute, String value) {
+
+        return new EqualOperator(attribute, value, true, true);
+    }
+
+    private QueryExpression present(String attribute) {
+
+        return new PresenceOperator(attribute);
+    }
+
+    private QueryExpression in(String attribute, boolean negated, String... values) {
+
+        return new InOperator(attribute, Arrays.asList(values), negated, true);
+    }
+}
@@ -0,0 +1,275 @@
+package de.aservo.ldap.adapter.sql.impl;
+
+import de.aservo.ldap.adapter.api.cursor.MappableCursor;
+import de.aservo.ldap.adapter.api.database.Row;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+
+public class ResultBufferTest {
+
+    private final List<String> columnNames = Arrays.asList("id", "number");
+
+    @Test
+    @DisplayName("it should release a result which fits into memory with the first row")
+    public void test001()
+            throws Exception {
+
+        for (ResultBuffer.Strategy strategy : ResultBuffer.Strategy.values()) {
+
+            TestCursor rows = new TestCursor(3);
+            MappableCursor<Row> cursor = new ResultBuffer(strategy, 3, 10).buffer(columnNames, rows);
+
+            Assertions.assertEquals(0, rows.fetchCount);
+            Assertions.assertEquals(Collections.singletonList("id0"), readIds(cursor, 1));
+            Assertions.assertTrue(rows.closed);
+            Assertions.assertEquals(4, rows.fetchCount);
+            Assertions.assertEquals(Arrays.asList("id1", "id2"), readIds(cursor, -1));
+
+            cursor.close();
+        }
+    }
+
+    @Test
+    @DisplayName("it should stream the rows exceeding the memory")
+    public void test002()
+            throws Exception {
+
+        TestCursor rows = new TestCursor(5);
+        MappableCursor<Row> cursor = new ResultBuffer(ResultBuffer.Strategy.STREAM, 3, 10).buffer(columnNames, rows);
+
+        // the row after the memory is read ahead to find out if the result is exhausted
+        Assertions.assertEquals(Collections.singletonList("id0"), readIds(cursor, 1));
+        Assertions.assertFalse(rows.closed);
+        Assertions.assertEquals(4, rows.fetchCount);
+        Assertions.assertEquals(Arrays.asList("id1", "id2", "id3"), readIds(cursor, 3));
+        Assertions.assertEquals(4, rows.fetchCount);
+        Assertions.assertEquals(Collections.singletonList("id4"), readIds(cursor, 1));
+        Assertions.assertEquals(5, rows.fetchCount);
+
+        cursor.close();
+
+        Assertions.assertTrue(rows.closed);
+    }
+
+    @Test
+    @DisplayName("it should spool the rows exceeding the memory and delete the file after a partial read")
+    public void test003()
+            throws Exception {
+
+        Set<Path> spoolFiles = findSpoolFiles();
+        TestCursor rows = new TestCursor(5);
+        MappableCursor<Row> cursor = new ResultBuffer(ResultBuffer.Strategy.SPOOL, 3, 10).buffer(columnNames, rows);
+
+        Assertions.assertEquals(Arrays.asList("id0", "id1", "id2", "id3"), readIds(cursor, 4));
+
+        Set<Path> createdSpoolFiles = findSpoolFiles();
+
+        createdSpoolFiles.removeAll(spoolFiles);
+
+        Assertions.assertTrue(rows.closed);
+        Assertions.assertEquals(1, createdSpoolFiles.size());
+
+        cursor.close();
+
+        Assertions.assertFalse(Files.exists(createdSpoolFiles.iterator().next()));
+    }
+
+    @Test
+    @DisplayName("it should restore spooled values of all types")
+    public void test004()
+            throws Exception {
+
+        TestCursor rows = new TestCursor(3);
+        MappableCursor<Row> cursor = new ResultBuffer(ResultBuffer.Strategy.SPOOL, 0, 10).buffer(columnNames, rows);
+        List<Integer> numbers = new ArrayList<>();
+
+        while (cursor.next())
+            numbers.add(cursor.get().apply("number", Integer.class));
+
+        cursor.close();
+
+        Assertions.assertEquals(Arrays.asList(null, 1, 2), numbers);
+    }
+
+    @Test
+    @DisplayName("it should stream the rows exceeding the spool file")
+    public void test005()
+            throws Exception {
+
+        Set<Path> spoolFiles = findSpoolFiles();
+        TestCursor rows = new TestCursor(10);
+        MappableCursor<Row> cursor = new ResultBuffer(ResultBuffer.Strategy.SPOOL, 2, 3).buffer(columnNames, rows);
+
+        Assertions.assertEquals(Collections.singletonList("id0"), readIds(cursor, 1));
+
+        Set<Path> createdSpoolFiles = findSpoolFiles();
+
+        createdSpoolFiles.removeAll(spoolFiles);
+
+        Assertions.assertFalse(rows.closed);
+        Assertions.assertEquals(6, rows.fetchCount);
+        Assertions.assertEquals(1, createdSpoolFiles.size());
+
+        List<String> expected = new ArrayList<>();
+
+        for (int i = 1; i < 10; i++)
+            expected.add("id" + i);
+
+        Assertions.assertEquals(expected, readIds(cursor, -1));
+
+        cursor.close();
+
+        Assertions.assertTrue(rows.closed);
+        Assertions.assertFalse(Files.exists(createdSpoolFiles.iterator().next()));
+    }
+
+    @Test
+    @DisplayName("it should release a result which fits into memory and spool file at once")
+    public void test006()
+            throws Exception {
+
+        TestCursor rows = new TestCursor(5);
+        MappableCursor<Row> cursor = new ResultBuffer(ResultBuffer.Strategy.SPOOL, 2, 3).buffer(columnNames, rows);
+
+        Assertions.assertEquals(Collections.singletonList("id0"), readIds(cursor, 1));
+        Assertions.assertTrue(rows.closed);
+        Assertions.assertEquals(Arrays.asList("id1", "id2", "id3", "id4"), readIds(cursor, -1));
+
+        cursor.close();
+    }
+
+    @Test
+    @DisplayName("it should close the rows of a cursor which is closed before its first access")
+    public void test007()
+            throws Exception {
+
+        TestCursor rows = new TestCursor(5);
+        MappableCursor<Row> cursor = new ResultBuffer(ResultBuffer.Strategy.SPOOL, 2, 3).buffer(columnNames, rows);
+
+        cursor.close();
+
+        Assertions.assertTrue(rows.closed);
+        Assertions.assertEquals(0, rows.fetchCount);
+        Assertions.assertFalse(cursor.next());
+    }
+
+    @Test
+    @DisplayName("it should reject negative row limits")
+    public void test008() {
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new ResultBuffer(ResultBuffer.Strategy.SPOOL, -1, 10));
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new ResultBuffer(ResultBuffer.Strategy.SPOOL, 10, -1));
+    }
+
+    @Test
+    @DisplayName("it should share the column names between buffered rows")
+    public void test009()
+            throws Exception {
+
+        // consumers rebuild column sets only if the list of column names changes between rows
+        MappableCursor<Row> cursor =
+                new ResultBuffer(ResultBuffer.Strategy.SPOOL, 2, 2).buffer(columnNames, new TestCursor(4));
+        Set<List<String>> shapes = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        while (cursor.next())
+            shapes.add(cursor.get().getColumns());
+
+        cursor.close();
+
+        Assertions.assertEquals(1, shapes.size());
+        Assertions.assertEquals(columnNames, shapes.iterator().next());
+    }
+
+    private List<String> readIds(MappableCursor<Row> cursor, int limit) {
+
+        List<String> result = new ArrayList<>();
+
+        while ((limit < 0 || result.size() < limit) && cursor.next())
+            result.add(cursor.get().apply("id", String.class));
+
+        return result;
+    }
+
+    private Set<Path> findSpoolFiles()
+            throws IOException {
+
+        Set<Path> result = new HashSet<>();
+
+        try (DirectoryStream<Path> stream =
+                     Files.newDirectoryStream(Paths.get(System.getProperty("java.io.tmpdir")), "ldap-result-*.spool")) {
+
+            stream.forEach(result::add);
+        }
+
+        return result;
+    }
+
+    private class TestCursor
+            extends MappableCursor<Row> {
+
+        private final int size;
+        private int fetchCount = 0;
+        private boolean closed = false;
+
+        public TestCursor(int size) {
+
+            this.size = size;
+        }
+
+        @Override
+        public boolean next() {
+
+            if (closed)
+                throw new IllegalStateException("Expect an open cursor.");
+
+            fetchCount++;
+
+            return fetchCount <= size;
+        }
+
+        @Override
+        public Row get() {
+
+            int index = fetchCount - 1;
+
+            // the first row has no number to cover null values
+            Object[] values = new Object[]{"id" + index, index == 0 ? null : index};
+
+            return new Row() {
+
+                public <T> T apply(String columnName, Class<T> clazz) {
+
+                    return apply(columnNames.indexOf(columnName), clazz);
+                }
+
+                public List<String> getColumns() {
+
+                    return columnNames;
+                }
+
+                public <T> T apply(int ordinal, Class<T> clazz) {
+
+                    return clazz.cast(values[ordinal]);
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+
+            closed = true;
+        }
+    }
+}
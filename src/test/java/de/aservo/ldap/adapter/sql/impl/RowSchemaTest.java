@@ -0,0 +1,83 @@
+package de.aservo.ldap.adapter.sql.impl;
+
+import de.aservo.ldap.adapter.api.database.exception.UnknownColumnException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.sql.JDBCType;
+import java.util.Arrays;
+import java.util.Collections;
+
+
+public class RowSchemaTest {
+
+    private final RowSchema schema =
+            new RowSchema(Arrays.asList("id", "name", "created_at"),
+                    Arrays.asList(JDBCType.VARCHAR, JDBCType.CLOB, JDBCType.TIMESTAMP));
+
+    @Test
+    @DisplayName("it should find the position of a column by its name")
+    public void test001() {
+
+        Assertions.assertEquals(0, schema.getOrdinal("id"));
+        Assertions.assertEquals(1, schema.getOrdinal("name"));
+        Assertions.assertEquals(2, schema.getOrdinal("created_at"));
+        Assertions.assertEquals(3, schema.size());
+    }
+
+    @Test
+    @DisplayName("it should find the position of a column by its name ignoring case")
+    public void test002() {
+
+        Assertions.assertEquals(1, schema.getOrdinal("NAME"));
+        Assertions.assertEquals(2, schema.getOrdinal("Created_At"));
+    }
+
+    @Test
+    @DisplayName("it should keep the type of a column at its position")
+    public void test003() {
+
+        Assertions.assertEquals(JDBCType.VARCHAR, schema.getColumnType(schema.getOrdinal("id")));
+        Assertions.assertEquals(JDBCType.CLOB, schema.getColumnType(schema.getOrdinal("name")));
+        Assertions.assertEquals(JDBCType.TIMESTAMP, schema.getColumnType(schema.getOrdinal("created_at")));
+    }
+
+    @Test
+    @DisplayName("it should throw an exception for an unknown column")
+    public void test004() {
+
+        Assertions.assertThrows(UnknownColumnException.class, () -> schema.getOrdinal("email"));
+    }
+
+    @Test
+    @DisplayName("it should reject duplicate column names and missing column types")
+    public void test005() {
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+
+            new RowSchema(Arrays.asList("id", "id"), Arrays.asList(JDBCType.VARCHAR, JDBCType.VARCHAR));
+        });
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> {
+
+            new RowSchema(Collections.singletonList("id"), Collections.emptyList());
+        });
+    }
+
+    @Test
+    @DisplayName("it should not change if the given lists change")
+    public void test006() {
+
+        String[] columnNames = {"id"};
+        JDBCType[] columnTypes = {JDBCType.VARCHAR};
+        RowSchema schema = new RowSchema(Arrays.asList(columnNames), Arrays.asList(columnTypes));
+
+        columnNames[0] = "name";
+        columnTypes[0] = JDBCType.CLOB;
+
+        Assertions.assertEquals(Collections.singletonList("id"), schema.getColumnNames());
+        Assertions.assertEquals(JDBCType.VARCHAR, schema.getColumnType(0));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> schema.getColumnNames().add("name"));
+    }
+}
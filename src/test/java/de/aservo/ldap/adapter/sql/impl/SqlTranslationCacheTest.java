@@ -0,0 +1,147 @@
+package de.aservo.ldap.adapter.sql.impl;
+
+import de.aservo.ldap.adapter.api.database.BatchQueryDef;
+import de.aservo.ldap.adapter.api.database.result.IgnoredResult;
+import de.aservo.ldap.adapter.api.database.result.IndexedSeqResult;
+import org.junit.jupiter.api.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class SqlTranslationCacheTest {
+
+    private static final String CLAUSE = "select :value as value";
+
+    private final Logger logger = LoggerFactory.getLogger(SqlTranslationCacheTest.class);
+    private Connection connection;
+
+    @BeforeAll
+    public void setup()
+            throws SQLException {
+
+        connection = DriverManager.getConnection("jdbc:h2:mem:sql-translation-cache-test", "sa", "sa");
+    }
+
+    @AfterAll
+    public void shutdown()
+            throws SQLException {
+
+        connection.close();
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("it should keep translations of a clause apart for different types of parameters")
+    public void test001() {
+
+        SqlTranslationCache cache = new SqlTranslationCache(10);
+        Executor executor = createExecutor(connection, cache);
+
+        Assertions.assertEquals(Collections.singletonList(1), findValues(executor, 1));
+        Assertions.assertEquals(Collections.singletonList("1"), findValues(executor, "1"));
+        Assertions.assertEquals(Collections.singletonList(2), findValues(executor, 2));
+
+        Assertions.assertEquals(2, cache.getMissCount());
+        Assertions.assertEquals(1, cache.getHitCount());
+
+        // an empty optional is bound like null
+        findValues(executor, Optional.empty());
+        findValues(executor, null);
+
+        Assertions.assertEquals(3, cache.getMissCount());
+        Assertions.assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("it should keep translations of a clause apart for different dialects")
+    public void test002() {
+
+        SqlTranslationCache cache = new SqlTranslationCache(10);
+
+        findValues(createExecutor(connection, cache), 1);
+        findValues(createExecutor(withUrl(connection, "jdbc:postgresql://localhost/test"), cache), 1);
+        findValues(createExecutor(connection, cache), 1);
+
+        Assertions.assertEquals(2, cache.getMissCount());
+        Assertions.assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    @Order(3)
+    @DisplayName("it should look up the translation of a batch only if the types of parameters change")
+    public void test003() {
+
+        SqlTranslationCache cache = new SqlTranslationCache(10);
+        Executor executor = createExecutor(connection, cache);
+
+        createExecutor(connection, new SqlTranslationCache(10)).newQueryDefFactory()
+                .query("create table batch_values (id int, value varchar(10))")
+                .execute(IgnoredResult.class);
+
+        BatchQueryDef batch = executor.newQueryDefFactory()
+                .batchById("insert_batch_value");
+
+        for (int i = 0; i < 10; i++)
+            batch.on("id", i).on("value", Optional.of("value" + i)).addBatch();
+
+        Assertions.assertEquals(1, cache.getMissCount());
+        Assertions.assertEquals(0, cache.getHitCount());
+
+        batch.on("id", 10).on("value", Optional.empty()).addBatch();
+        batch.on("id", 11).on("value", "value11").addBatch();
+
+        Assertions.assertEquals(12, batch.execute());
+        Assertions.assertEquals(2, cache.getMissCount());
+        Assertions.assertEquals(1, cache.getHitCount());
+    }
+
+    private Executor createExecutor(Connection connection, SqlTranslationCache cache) {
+
+        Map<String, String> clauses = Collections.singletonMap("insert_batch_value",
+                "insert into batch_values (id, value) values (:id, :value)");
+
+        return new Executor(logger, connection, clauses, cache, new StatementPoolStatistics(), 1000);
+    }
+
+    private List<Object> findValues(Executor executor, Object value) {
+
+        return executor.newQueryDefFactory()
+                .query(CLAUSE)
+                .on("value", value)
+                .execute(IndexedSeqResult.class)
+                .transform(row -> row.apply("value", Object.class));
+    }
+
+    private Connection withUrl(Connection connection, String url) {
+
+        // the dialect is derived from the URL of the connection
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class},
+                (proxy, method, args) -> {
+
+                    if (method.getName().equals("getMetaData")) {
+
+                        DatabaseMetaData metaData = connection.getMetaData();
+
+                        return Proxy.newProxyInstance(getClass().getClassLoader(),
+                                new Class[]{DatabaseMetaData.class},
+                                (proxy2, method2, args2) -> method2.getName().equals("getURL") ? url :
+                                        method2.invoke(metaData, args2));
+                    }
+
+                    return method.invoke(connection, args);
+                });
+    }
+}
@@ -0,0 +1,129 @@
+package de.aservo.ldap.adapter.sql.impl;
+
+import de.aservo.ldap.adapter.api.entity.ColumnNames;
+import de.aservo.ldap.adapter.api.entity.EntityType;
+import de.aservo.ldap.adapter.api.query.WildcardOperator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+
+public class TrigramIndexTest {
+
+    private final TrigramIndex index =
+            new TrigramIndex.Builder()
+                    .add(EntityType.USER, "usera", Collections.singletonMap(ColumnNames.EMAIL, "Alice.Smith@Email.com"))
+                    .add(EntityType.USER, "userb", Collections.singletonMap(ColumnNames.EMAIL, null))
+                    .add(EntityType.USER, "userc", Collections.singletonMap(ColumnNames.EMAIL, "bob.smith@other.org"))
+                    .add(EntityType.USER, "userd", Collections.singletonMap(ColumnNames.EMAIL, "al@email.com"))
+                    .add(EntityType.GROUP, "groupa", Collections.singletonMap(ColumnNames.NAME, "Smiths"))
+                    .add(EntityType.GROUP, "groupb", Collections.singletonMap(ColumnNames.NAME, "Nana.Ana"))
+                    .build();
+
+    @Test
+    @DisplayName("it should find candidates by initial, middle and final segments")
+    public void test001() {
+
+        Assertions.assertEquals(Arrays.asList("usera", "userd"),
+                findCandidates(EntityType.USER, ColumnNames.EMAIL, "al", null));
+
+        Assertions.assertEquals(Arrays.asList("usera", "userc"),
+                findCandidates(EntityType.USER, ColumnNames.EMAIL, null, null, "smith"));
+
+        Assertions.assertEquals(Collections.singletonList("userc"),
+                findCandidates(EntityType.USER, ColumnNames.EMAIL, null, ".org"));
+
+        Assertions.assertEquals(Collections.singletonList("usera"),
+                findCandidates(EntityType.USER, ColumnNames.EMAIL, "ALICE", "COM", "smith"));
+    }
+
+    @Test
+    @DisplayName("it should return candidates which are checked by the database afterwards")
+    public void test002() {
+
+        // the value contains all trigrams of the pattern but not the pattern itself
+        Assertions.assertEquals(Collections.singletonList("groupb"),
+                findCandidates(EntityType.GROUP, ColumnNames.NAME, null, null, "anan"));
+    }
+
+    @Test
+    @DisplayName("it should return no candidates for an unknown trigram")
+    public void test003() {
+
+        Assertions.assertEquals(Collections.emptyList(),
+                findCandidates(EntityType.USER, ColumnNames.EMAIL, "xyz", null));
+    }
+
+    @Test
+    @DisplayName("it should not answer patterns without trigrams or for columns which are not indexed")
+    public void test004() {
+
+        Assertions.assertNull(findCandidates(EntityType.USER, ColumnNames.EMAIL, null, null, "al"));
+        Assertions.assertNull(findCandidates(EntityType.USER, ColumnNames.USERNAME, "al", null));
+        Assertions.assertNull(findCandidates(EntityType.GROUP, ColumnNames.EMAIL, "al", null));
+    }
+
+    @Test
+    @DisplayName("it should separate entity types")
+    public void test005() {
+
+        Assertions.assertEquals(Collections.singletonList("groupa"),
+                findCandidates(EntityType.GROUP, ColumnNames.NAME, null, null, "smith"));
+    }
+
+    @Test
+    @DisplayName("it should not publish an index which was rebuilt during a write transaction")
+    public void test006() {
+
+        TrigramIndex.Holder holder = new TrigramIndex.Holder();
+
+        long generation = holder.startRebuild();
+
+        holder.beginWrite();
+        holder.endWrite();
+
+        Assertions.assertFalse(holder.publish(generation, index));
+        Assertions.assertNull(holder.get());
+
+        generation = holder.startRebuild();
+
+        holder.beginWrite();
+
+        Assertions.assertEquals(-1, holder.startRebuild());
+        Assertions.assertFalse(holder.publish(generation, index));
+
+        holder.endWrite();
+
+        generation = holder.startRebuild();
+
+        Assertions.assertTrue(holder.publish(generation, index));
+        Assertions.assertSame(index, holder.get());
+        Assertions.assertEquals(-1, holder.startRebuild());
+
+        holder.beginWrite();
+
+        Assertions.assertNull(holder.get());
+    }
+
+    private List<String> findCandidates(EntityType entityType, String column, String initialSegment,
+                                        String finalSegment, String... middleSegments) {
+
+        WildcardOperator operator =
+                new WildcardOperator("attribute", Pattern.compile(".*"), initialSegment, finalSegment,
+                        Arrays.asList(middleSegments));
+
+        List<String> candidates = index.findCandidates(entityType, column, operator);
+
+        if (candidates == null)
+            return null;
+
+        List<String> result = new ArrayList<>(candidates);
+
+        Collections.sort(result);
+
+        return result;
+    }
+}
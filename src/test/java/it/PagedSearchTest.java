@@ -0,0 +1,94 @@
+package it;
+
+import org.junit.jupiter.api.*;
+import test.api.AbstractServerTest;
+import test.configuration.server.JsonWithGroupNesting;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.directory.InitialDirContext;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.InitialLdapContext;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class PagedSearchTest
+        extends AbstractServerTest {
+
+    public PagedSearchTest() {
+
+        super(new JsonWithGroupNesting(10937));
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("it should return the same entries with paged searches as without")
+    public void test001()
+            throws Exception {
+
+        List<String> baseList = Arrays.asList("dc=json", "ou=groups,dc=json", "ou=users,dc=json");
+        List<String> filterList = Arrays.asList("(objectClass=*)", "(cn=*user*)", "(!(cn=GroupA))");
+
+        for (String base : baseList) {
+
+            for (String filter : filterList) {
+
+                List<String> expected = search(base, filter, 0);
+
+                for (int pageSize : Arrays.asList(1, 2, 3, 1000))
+                    Assertions.assertEquals(expected, search(base, filter, pageSize));
+            }
+        }
+    }
+
+    private List<String> search(String base, String filter, int pageSize)
+            throws Exception {
+
+        InitialDirContext dirContext = createContext("UserA", "pw-user-a");
+        InitialLdapContext context = new InitialLdapContext(dirContext.getEnvironment(), null);
+        SearchControls searchControls = new SearchControls();
+        List<String> names = new ArrayList<>();
+        byte[] cookie = null;
+
+        searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+
+        do {
+
+            if (pageSize > 0)
+                context.setRequestControls(new Control[]{
+                        new PagedResultsControl(pageSize, cookie, Control.CRITICAL)});
+
+            NamingEnumeration<SearchResult> results = context.search(base, filter, searchControls);
+            int count = 0;
+
+            while (results.hasMore()) {
+
+                names.add(results.next().getNameInNamespace().toLowerCase());
+                count++;
+            }
+
+            if (pageSize > 0)
+                Assertions.assertTrue(count <= pageSize);
+
+            cookie = null;
+
+            if (context.getResponseControls() != null)
+                for (Control control : context.getResponseControls())
+                    if (control instanceof PagedResultsResponseControl)
+                        cookie = ((PagedResultsResponseControl) control).getCookie();
+
+        } while (cookie != null && cookie.length > 0);
+
+        context.close();
+        dirContext.close();
+
+        return names;
+    }
+}
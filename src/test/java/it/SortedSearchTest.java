@@ -0,0 +1,130 @@
+package it;
+
+import org.junit.jupiter.api.*;
+import test.api.AbstractServerTest;
+import test.configuration.server.JsonWithGroupNesting;
+
+import javax.naming.NamingEnumeration;
+import javax.naming.SizeLimitExceededException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.InitialDirContext;
+import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.InitialLdapContext;
+import javax.naming.ldap.SortControl;
+import javax.naming.ldap.SortKey;
+import javax.naming.ldap.SortResponseControl;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class SortedSearchTest
+        extends AbstractServerTest {
+
+    public SortedSearchTest() {
+
+        super(new JsonWithGroupNesting(10938));
+    }
+
+    @Test
+    @Order(1)
+    @DisplayName("it should return entries ordered by the sort control")
+    public void test001()
+            throws Exception {
+
+        List<String> baseList = Arrays.asList("dc=json", "ou=groups,dc=json", "ou=users,dc=json");
+        List<String> attributeList = Arrays.asList("cn", "sn", "description");
+
+        for (String base : baseList) {
+
+            for (String attribute : attributeList) {
+
+                for (boolean reversed : Arrays.asList(false, true)) {
+
+                    List<String> expected = search(base, attribute, null);
+                    Comparator<String> comparator = Comparator.nullsLast(Comparator.naturalOrder());
+
+                    expected.sort(reversed ? comparator.reversed() : comparator);
+
+                    Assertions.assertEquals(expected, search(base, attribute, reversed));
+                }
+            }
+        }
+    }
+
+    @Test
+    @Order(2)
+    @DisplayName("it should return the first entries in order if the size limit is exceeded")
+    public void test002()
+            throws Exception {
+
+        List<String> expected = search("ou=users,dc=json", "cn", false);
+
+        for (int sizeLimit : Arrays.asList(1, 2, 3)) {
+
+            InitialDirContext dirContext = createContext("UserA", "pw-user-a");
+            InitialLdapContext context = new InitialLdapContext(dirContext.getEnvironment(), null);
+            SearchControls searchControls = new SearchControls();
+            List<String> values = new ArrayList<>();
+
+            searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+            searchControls.setCountLimit(sizeLimit);
+            context.setRequestControls(new Control[]{new SortControl("cn", Control.CRITICAL)});
+
+            NamingEnumeration<SearchResult> results =
+                    context.search("ou=users,dc=json", "(objectClass=*)", searchControls);
+
+            Assertions.assertThrows(SizeLimitExceededException.class, () -> {
+
+                while (results.hasMore())
+                    values.add(results.next().getAttributes().get("cn").get().toString().toLowerCase());
+            });
+
+            Assertions.assertEquals(expected.subList(0, sizeLimit), values);
+
+            context.close();
+            dirContext.close();
+        }
+    }
+
+    private List<String> search(String base, String attribute, Boolean reversed)
+            throws Exception {
+
+        InitialDirContext dirContext = createContext("UserA", "pw-user-a");
+        InitialLdapContext context = new InitialLdapContext(dirContext.getEnvironment(), null);
+        SearchControls searchControls = new SearchControls();
+        List<String> values = new ArrayList<>();
+
+        searchControls.setSearchScope(SearchControls.SUBTREE_SCOPE);
+
+        if (reversed != null)
+            context.setRequestControls(new Control[]{
+                    new SortControl(new SortKey[]{new SortKey(attribute, !reversed, null)}, Control.CRITICAL)});
+
+        NamingEnumeration<SearchResult> results = context.search(base, "(objectClass=*)", searchControls);
+
+        while (results.hasMore()) {
+
+            Attribute value = results.next().getAttributes().get(attribute);
+
+            values.add(value == null ? null : value.get().toString().toLowerCase());
+        }
+
+        if (reversed != null) {
+
+            Assertions.assertNotNull(context.getResponseControls());
+            Assertions.assertTrue(Arrays.stream(context.getResponseControls())
+                    .anyMatch(x -> x instanceof SortResponseControl && ((SortResponseControl) x).isSorted()));
+        }
+
+        context.close();
+        dirContext.close();
+
+        return values;
+    }
+}
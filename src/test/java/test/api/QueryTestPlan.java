@@ -13,6 +13,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -111,6 +112,14 @@ public interface QueryTestPlan {
 
                     expectations.add(new Row() {
 
+                        public List<String> getColumns() {
+
+                            if (entityType == EntityType.GROUP)
+                                return Arrays.asList(ColumnNames.TYPE, ColumnNames.ID, ColumnNames.NAME);
+
+                            return Arrays.asList(ColumnNames.TYPE, ColumnNames.ID, ColumnNames.USERNAME);
+                        }
+
                         public <T> T apply(String columnName, Class<T> clazz) {
 
                             if (columnName.equals(ColumnNames.TYPE))
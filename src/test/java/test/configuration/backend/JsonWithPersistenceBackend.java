@@ -0,0 +1,34 @@
+package test.configuration.backend;
+
+import test.api.BackendSetup;
+
+import java.util.Properties;
+
+
+public class JsonWithPersistenceBackend
+        implements BackendSetup {
+
+    private final String databaseName;
+
+    public JsonWithPersistenceBackend(String databaseName) {
+
+        this.databaseName = databaseName;
+    }
+
+    public Properties getProperties() {
+
+        Properties properties = new Properties();
+
+        properties.put("directory-backend.permanent",
+                "de.aservo.ldap.adapter.backend.JsonDirectoryBackend," +
+                        "de.aservo.ldap.adapter.backend.CachedWithPersistenceDirectoryBackend");
+
+        properties.put("directory-backend.session", "");
+
+        properties.put("db-uri", "file:./src/test/resources/de/aservo/ldap/adapter/db.json");
+
+        properties.put("database.jdbc.connection.url", "jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1");
+
+        return properties;
+    }
+}